@@ -0,0 +1,77 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: App.java
+*/
+
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+
+/**
+ * Method handles for the application classes used by the benchmarks. The application lives in the default
+ * package, which cannot be imported from a named package, and JMH does not accept benchmarks in the default
+ * package, so the benchmarks reach it through these (constant, JIT-inlined) handles instead.
+ */
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    // ColumnBatch.read(ResultSet, int, QueryTask) and new ColumnarTableModel(ColumnBatch)
+    static final MethodHandle COLUMN_BATCH_READ = method("ColumnBatch", "read", 3);
+    static final MethodHandle NEW_COLUMNAR_MODEL = constructor("ColumnarTableModel", type("ColumnBatch"));
+
+    // new OperationsLogWriter(url, user, password), record(user, type) and close()
+    static final MethodHandle NEW_OPERATIONS_LOG = constructor("OperationsLogWriter", String.class, String.class, String.class);
+    static final MethodHandle OPERATIONS_LOG_RECORD = method("OperationsLogWriter", "record", 2);
+
+    // SqlText.firstKeyword(String) and SqlLexer.classify(CharSequence)
+    static final MethodHandle FIRST_KEYWORD = method("SqlText", "firstKeyword", 1);
+    static final MethodHandle CLASSIFY = method("SqlLexer", "classify", 1);
+
+    // SqlFingerprint.of(String), getSql() and bind(PreparedStatement)
+    static final MethodHandle FINGERPRINT_OF = method("SqlFingerprint", "of", 1);
+    static final MethodHandle FINGERPRINT_SQL = method("SqlFingerprint", "getSql", 0);
+    static final MethodHandle FINGERPRINT_BIND = method("SqlFingerprint", "bind", 1);
+
+    // new StatementCache(Connection, int), checkout(String) and checkin(String, PreparedStatement)
+    static final MethodHandle NEW_STATEMENT_CACHE = constructor("StatementCache", Connection.class, int.class);
+    static final MethodHandle STATEMENT_CACHE_CHECKOUT = method("StatementCache", "checkout", 1);
+    static final MethodHandle STATEMENT_CACHE_CHECKIN = method("StatementCache", "checkin", 2);
+
+    private App() {
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Application class not on the benchmark classpath: " + name, ex);
+        }
+    }
+
+    private static MethodHandle method(String className, String name, int arity) {
+        for (Method m : type(className).getMethods()) {
+            if (m.getName().equals(name) && m.getParameterCount() == arity) {
+                try {
+                    return LOOKUP.unreflect(m);
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+        throw new IllegalStateException("No method " + className + "." + name + " taking " + arity + " arguments");
+    }
+
+    private static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.unreflectConstructor(type(className).getConstructor(parameterTypes));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: AuditLogBenchmark.java
+*/
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-statement cost of recording an operation in operationscount: the original logOperation (a new
+ * connection and an UPDATE, plus an INSERT for a new user, on every statement) against the coalescing
+ * OperationsLogWriter, whose record() only appends to a memory-mapped journal. An embedded database makes the
+ * original look far cheaper than it is against a real MySQL server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditLogBenchmark {
+    private static final String USER = "client1@localhost";
+
+    private Connection keepAlive;
+    private Object operationsLog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        keepAlive = BenchmarkDatabase.open();
+        BenchmarkDatabase.createOperationsCount(keepAlive);
+        operationsLog = App.NEW_OPERATIONS_LOG.invoke(BenchmarkDatabase.URL, BenchmarkDatabase.USER, BenchmarkDatabase.PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((AutoCloseable) operationsLog).close();
+        keepAlive.close();
+    }
+
+    /**
+     * The original logOperation, minus re-reading the properties file.
+     */
+    @Benchmark
+    public int connectionPerStatement() throws SQLException {
+        try (Connection opConn = DriverManager.getConnection(BenchmarkDatabase.URL, BenchmarkDatabase.USER,
+                BenchmarkDatabase.PASSWORD);
+             PreparedStatement pstmt = opConn.prepareStatement(
+                     "UPDATE operationscount SET num_queries = num_queries + 1 WHERE login_username = ?")) {
+            pstmt.setString(1, USER);
+            int rows = pstmt.executeUpdate();
+            if (rows == 0) {
+                try (PreparedStatement ipstmt = opConn.prepareStatement(
+                        "INSERT INTO operationscount (login_username, num_queries, num_updates) VALUES (?, ?, ?)")) {
+                    ipstmt.setString(1, USER);
+                    ipstmt.setInt(2, 1);
+                    ipstmt.setInt(3, 0);
+                    rows = ipstmt.executeUpdate();
+                }
+            }
+            return rows;
+        }
+    }
+
+    @Benchmark
+    public void coalescedWriter() throws Throwable {
+        App.OPERATIONS_LOG_RECORD.invoke(operationsLog, "client1", "query");
+    }
+}
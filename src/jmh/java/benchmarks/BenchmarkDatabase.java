@@ -0,0 +1,64 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: BenchmarkDatabase.java
+*/
+
+package benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Embedded stand-in for the MySQL databases: an in-memory H2 database in MySQL mode with a
+ * bikedb-shaped bikes table and the operationslog operationscount table.
+ */
+final class BenchmarkDatabase {
+    static final String URL = "jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String USER = "sa";
+    static final String PASSWORD = "";
+
+    private BenchmarkDatabase() {
+    }
+
+    static Connection open() throws SQLException {
+        return DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+
+    /**
+     * Makes sure the bikes table holds at least the given number of rows (bike-1 .. bike-N).
+     */
+    static void seedBikes(Connection conn, int rows) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS bikes ("
+                    + "bikename VARCHAR(40) PRIMARY KEY, make VARCHAR(20), model VARCHAR(20), "
+                    + "bikeyear INT, cost DECIMAL(10,2), color VARCHAR(15), purchased DATE)");
+            int existing;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM bikes")) {
+                rs.next();
+                existing = rs.getInt(1);
+            }
+            if (existing < rows) {
+                stmt.execute("INSERT INTO bikes SELECT 'bike-' || x, "
+                        + "CASE MOD(x, 5) WHEN 0 THEN 'Trek' WHEN 1 THEN 'Giant' WHEN 2 THEN 'Specialized' "
+                        + "WHEN 3 THEN 'Cannondale' ELSE 'Bianchi' END, "
+                        + "'model-' || MOD(x, 40), 1990 + MOD(x, 35), 250 + MOD(x, 4000) + 0.99, "
+                        + "CASE MOD(x, 3) WHEN 0 THEN 'red' WHEN 1 THEN 'black' ELSE NULL END, "
+                        + "DATEADD(DAY, MOD(x, 9000), DATE '2000-01-01') "
+                        + "FROM SYSTEM_RANGE(" + (existing + 1) + ", " + rows + ")");
+            }
+        }
+    }
+
+    static void createOperationsCount(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS operationscount ("
+                    + "login_username VARCHAR(25) PRIMARY KEY, num_queries INT, num_updates INT)");
+        }
+    }
+}
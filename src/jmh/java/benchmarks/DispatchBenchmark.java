@@ -0,0 +1,149 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: DispatchBenchmark.java
+*/
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SELECT-vs-update dispatch: classifying the command text, then executing a point SELECT or UPDATE
+ * either with a freshly prepared statement per command (the original path) or through
+ * SqlFingerprint and the per-connection StatementCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+    private static final int KEYS = 1000;
+
+    private static final String[] COMMANDS = {
+            "select * from bikes where cost > 1000",
+            "  SELECT bikename, color FROM bikes WHERE make = 'Trek'",
+            "update bikes set cost = cost * 1.1 where bikeyear < 2000",
+            "/* seed */ insert into bikes values ('x', 'y', 'z', 2020, 1.00, 'red', '2020-01-01')",
+            "-- cleanup\ndelete from bikes where bikename = 'x'",
+            "(select make from bikes) union (select model from bikes)",
+            "with recent as (select * from bikes where bikeyear > 2015) select make, count(*) from recent group by make",
+    };
+
+    private Connection conn;
+    private Object statementCache;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        conn = BenchmarkDatabase.open();
+        BenchmarkDatabase.seedBikes(conn, KEYS);
+        statementCache = App.NEW_STATEMENT_CACHE.invoke(conn, 64);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((AutoCloseable) statementCache).close();
+        conn.close();
+    }
+
+    private String nextKey() {
+        next = next % KEYS + 1;
+        return "'bike-" + next + "'";
+    }
+
+    /**
+     * The original check: sql.toLowerCase().startsWith("select").
+     */
+    @Benchmark
+    public void classifyLowerCase(Blackhole bh) {
+        for (String sql : COMMANDS) {
+            bh.consume(sql.trim().toLowerCase().startsWith("select"));
+        }
+    }
+
+    /**
+     * SqlText.firstKeyword, which also skips leading comments and parentheses.
+     */
+    @Benchmark
+    public void classifyFirstKeyword(Blackhole bh) throws Throwable {
+        for (String sql : COMMANDS) {
+            bh.consume("select".equals(App.FIRST_KEYWORD.invoke(sql)));
+        }
+    }
+
+    /**
+     * SqlLexer.classify, which tokenizes in place and also sees through WITH clauses.
+     */
+    @Benchmark
+    public void classifySqlLexer(Blackhole bh) throws Throwable {
+        for (String sql : COMMANDS) {
+            bh.consume(App.CLASSIFY.invoke(sql));
+        }
+    }
+
+    @Benchmark
+    public int selectFreshPrepare() throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM bikes WHERE bikename = " + nextKey());
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt("bikeyear") : 0;
+        }
+    }
+
+    @Benchmark
+    public int selectStatementCache() throws Throwable {
+        Object fp = App.FINGERPRINT_OF.invoke("SELECT * FROM bikes WHERE bikename = " + nextKey());
+        String sql = (String) App.FINGERPRINT_SQL.invoke(fp);
+        PreparedStatement pstmt = (PreparedStatement) App.STATEMENT_CACHE_CHECKOUT.invoke(statementCache, sql);
+        try {
+            App.FINGERPRINT_BIND.invoke(fp, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("bikeyear") : 0;
+            }
+        } finally {
+            App.STATEMENT_CACHE_CHECKIN.invoke(statementCache, sql, pstmt);
+        }
+    }
+
+    @Benchmark
+    public int updateFreshPrepare() throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE bikes SET cost = cost + 1 WHERE bikename = " + nextKey())) {
+            return pstmt.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public int updateStatementCache() throws Throwable {
+        Object fp = App.FINGERPRINT_OF.invoke("UPDATE bikes SET cost = cost + 1 WHERE bikename = " + nextKey());
+        String sql = (String) App.FINGERPRINT_SQL.invoke(fp);
+        PreparedStatement pstmt = (PreparedStatement) App.STATEMENT_CACHE_CHECKOUT.invoke(statementCache, sql);
+        try {
+            App.FINGERPRINT_BIND.invoke(fp, pstmt);
+            return pstmt.executeUpdate();
+        } finally {
+            App.STATEMENT_CACHE_CHECKIN.invoke(statementCache, sql, pstmt);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ResultSetConversionBenchmark.java
+*/
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a SELECT result into a TableModel: the original row-by-row DefaultTableModel
+ * (buildTableModel) against the columnar ColumnBatch / ColumnarTableModel path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ResultSetConversionBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private Connection conn;
+    private PreparedStatement select;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        conn = BenchmarkDatabase.open();
+        BenchmarkDatabase.seedBikes(conn, rows);
+        select = conn.prepareStatement("SELECT * FROM bikes LIMIT ?");
+        select.setInt(1, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        select.close();
+        conn.close();
+    }
+
+    /**
+     * The original buildTableModel: one Object[] of boxed values per row, added to a DefaultTableModel.
+     */
+    @Benchmark
+    public TableModel defaultTableModel() throws SQLException {
+        try (ResultSet rs = select.executeQuery()) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int colCount = meta.getColumnCount();
+            DefaultTableModel model = new DefaultTableModel();
+            for (int i = 1; i <= colCount; i++) {
+                model.addColumn(meta.getColumnLabel(i));
+            }
+            while (rs.next()) {
+                Object[] rowData = new Object[colCount];
+                for (int i = 1; i <= colCount; i++) {
+                    rowData[i - 1] = rs.getObject(i);
+                }
+                model.addRow(rowData);
+            }
+            return model;
+        }
+    }
+
+    @Benchmark
+    public TableModel columnarTableModel() throws Throwable {
+        try (ResultSet rs = select.executeQuery()) {
+            Object batch = App.COLUMN_BATCH_READ.invoke(rs, Integer.MAX_VALUE, null);
+            return (TableModel) App.NEW_COLUMNAR_MODEL.invoke(batch);
+        }
+    }
+}
@@ -7,14 +7,19 @@
 */
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class AccountantGUI extends JFrame implements ActionListener {
     // Connection Panel components
@@ -27,20 +32,42 @@ public class AccountantGUI extends JFrame implements ActionListener {
     private final JTextArea sqlCommandArea;
     private final JButton executeButton;
     private final JButton clearButton;
+    private final JButton cancelButton;
+    private final JButton saveSnapshotButton; // Saves the result shown to a snapshot file
+    private final JButton openSnapshotButton; // Shows a saved snapshot, no connection needed
+    private final JSpinner timeoutSpinner; // Per-statement query timeout in seconds
+    private final JLabel statusLabel;      // Elapsed time / rows fetched for the running statement
+    private final JCheckBox autoRefreshCheckBox;  // Re-runs the query on an interval and updates changed rows only
+    private final JSpinner refreshSpinner;        // Auto-refresh interval in seconds
+    private final Timer refreshTimer;
 
     // Results Panel components (non-editable JTable)
     private final JTable resultTable;
     private final JScrollPane resultScrollPane;
     private final JButton exitButton; // Exit button
 
+    // SQL of the result shown in resultTable (null if unknown), saved with a snapshot
+    private String resultSql;
+
     // Panel for connection info (above results)
     private final JLabel connectionInfoLabel;
 
     // JDBC connection
     public Connection c;
 
-    // Fixed accountant properties file (all properties in one file)
-    private final String accountantPropertiesFile = "config/ops/theaccountant.properties";
+    // Table and column names of the operations log for completion in the command area (null if not connected)
+    private SchemaCache schemaCache;
+
+    // Fixed accountant properties file in config/ops (all properties in one file)
+    private static final String accountantPropertiesFile = "theaccountant.properties";
+
+    // Per-phase latency histograms and fetch throughput, shown in the metrics panel and over JMX
+    private final StatementMetrics metrics = new StatementMetrics();
+
+    // Background execution of SQL statements (keeps the EDT responsive)
+    private final QueryExecutor queryExecutor = new QueryExecutor(metrics);
+    private QueryExecutor.QueryTask runningTask;
+    private final Timer progressTimer;
 
     public AccountantGUI() {
         // Updated window title
@@ -97,6 +124,7 @@ public class AccountantGUI extends JFrame implements ActionListener {
         sqlCommandArea.setLineWrap(true);
         sqlCommandArea.setWrapStyleWord(true);
         commandPanel.add(new JScrollPane(sqlCommandArea), BorderLayout.CENTER);
+        SqlCompletion.install(sqlCommandArea, () -> schemaCache);
 
         JPanel cmdButtonPanel = new JPanel();
         executeButton = new JButton("Execute");
@@ -105,8 +133,43 @@ public class AccountantGUI extends JFrame implements ActionListener {
         clearButton = new JButton("Clear");
         clearButton.addActionListener(this);
         cmdButtonPanel.add(clearButton);
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(this);
+        cancelButton.setEnabled(false);
+        cmdButtonPanel.add(cancelButton);
+        saveSnapshotButton = new JButton("Save Snapshot");
+        saveSnapshotButton.addActionListener(this);
+        cmdButtonPanel.add(saveSnapshotButton);
+        openSnapshotButton = new JButton("Open Snapshot");
+        openSnapshotButton.addActionListener(this);
+        cmdButtonPanel.add(openSnapshotButton);
+        cmdButtonPanel.add(new JLabel("Timeout (s):"));
+        timeoutSpinner = new JSpinner(new SpinnerNumberModel(60, 0, 3600, 5));
+        cmdButtonPanel.add(timeoutSpinner);
+        autoRefreshCheckBox = new JCheckBox("Auto-refresh every (s):");
+        autoRefreshCheckBox.addActionListener(e -> setAutoRefresh(autoRefreshCheckBox.isSelected()));
+        cmdButtonPanel.add(autoRefreshCheckBox);
+        refreshSpinner = new JSpinner(new SpinnerNumberModel(5, 1, 3600, 1));
+        cmdButtonPanel.add(refreshSpinner);
+        statusLabel = new JLabel(" ");
+        cmdButtonPanel.add(statusLabel);
         commandPanel.add(cmdButtonPanel, BorderLayout.SOUTH);
 
+        // Refreshes the elapsed time / rows fetched while a statement is running
+        progressTimer = new Timer(200, e -> {
+            if (runningTask != null) {
+                statusLabel.setText(runningTask.describeProgress());
+            }
+        });
+
+        // Polls the query while auto-refresh is on; a tick is skipped while the previous poll is still running
+        refreshTimer = new Timer(5000, e -> {
+            if (runningTask == null) {
+                executeSQLCommand();
+            }
+        });
+        refreshSpinner.addChangeListener(e -> refreshTimer.setDelay((Integer) refreshSpinner.getValue() * 1000));
+
         add(commandPanel, BorderLayout.CENTER);
 
         // Build Results Panel with Exit Button (in the south)
@@ -128,9 +191,14 @@ public class AccountantGUI extends JFrame implements ActionListener {
         connectionInfoPanel.add(new JLabel("Current Connection URL: "));
         connectionInfoPanel.add(connectionInfoLabel);
 
+        // Connection info with the collapsible metrics panel beside it
+        JPanel infoRow = new JPanel(new BorderLayout());
+        infoRow.add(connectionInfoPanel, BorderLayout.CENTER);
+        infoRow.add(new MetricsPanel(metrics), BorderLayout.EAST);
+
         // Bottom panel to hold connection info, results, and exit button.
         JPanel bottomPanel = new JPanel(new BorderLayout());
-        bottomPanel.add(connectionInfoPanel, BorderLayout.NORTH);
+        bottomPanel.add(infoRow, BorderLayout.NORTH);
         bottomPanel.add(resultsContainer, BorderLayout.CENTER);
 
         exitButton = new JButton("Exit");
@@ -141,7 +209,11 @@ public class AccountantGUI extends JFrame implements ActionListener {
 
         add(bottomPanel, BorderLayout.SOUTH);
 
+        // Loading JMX takes hundreds of milliseconds on a cold start; the window need not wait for it
+        Thread.ofVirtual().name("register-mbeans").start(() -> metrics.registerMBeans("AccountantGUI"));
+
         setVisible(true);
+        StartupWarmup.milestone("window shown");
     }
 
     /**
@@ -160,11 +232,64 @@ public class AccountantGUI extends JFrame implements ActionListener {
             case "Connect" -> connectToDatabase();
             case "Disconnect" -> disconnectFromDatabase();
             case "Execute" -> executeSQLCommand();
+            case "Cancel" -> cancelSQLCommand();
+            case "Save Snapshot" -> saveSnapshot();
+            case "Open Snapshot" -> openSnapshot();
             case "Clear" -> {
                 sqlCommandArea.setText("");
-                ((DefaultTableModel) resultTable.getModel()).setRowCount(0);
+                resultTable.setModel(new DefaultTableModel());
+                resultSql = null;
+            }
+            case "Exit" -> {
+                cancelSQLCommand();
+                queryExecutor.shutdown();
+                ConnectionPool.closeAll();
+                System.exit(0);
             }
-            case "Exit" -> System.exit(0);
+        }
+    }
+
+    /**
+     * Switches the command panel between the idle and running states.
+     */
+    private void setRunning(QueryExecutor.QueryTask task) {
+        runningTask = task;
+        executeButton.setEnabled(task == null);
+        saveSnapshotButton.setEnabled(task == null);
+        openSnapshotButton.setEnabled(task == null);
+        cancelButton.setEnabled(task != null);
+        if (task != null) {
+            statusLabel.setText(task.describeProgress());
+            progressTimer.start();
+        } else {
+            progressTimer.stop();
+        }
+    }
+
+    /**
+     * Cancels the running query, if any, using Statement.cancel().
+     */
+    private void cancelSQLCommand() {
+        if (runningTask != null) {
+            runningTask.cancel();
+        }
+    }
+
+    /**
+     * Reports a failed background query, distinguishing cancellation and timeouts from SQL errors.
+     */
+    private void handleSQLFailure(Exception ex) {
+        QueryExecutor.QueryTask task = runningTask;
+        setRunning(null);
+        if (task.isCancelled()) {
+            statusLabel.setText(String.format("Cancelled after %.1f s", task.getElapsedMillis() / 1000.0));
+        } else if (ex instanceof SQLTimeoutException) {
+            statusLabel.setText(String.format("Timed out after %.1f s", task.getElapsedMillis() / 1000.0));
+            JOptionPane.showMessageDialog(this, "Query timed out: " + ex.getMessage(), "SQL Error", JOptionPane.ERROR_MESSAGE);
+        } else {
+            statusLabel.setText(" ");
+            JOptionPane.showMessageDialog(this, "SQL Error: " + ex.getMessage(), "SQL Error", JOptionPane.ERROR_MESSAGE);
+            System.err.println("SQL Error: " + ex.getMessage());
         }
     }
 
@@ -173,18 +298,11 @@ public class AccountantGUI extends JFrame implements ActionListener {
      * Verifies that the entered username and password match the properties.
      */
     public void connectToDatabase() {
-        Properties accProps = new Properties();
-        File accPropFile = new File(accountantPropertiesFile);
-        if (!accPropFile.exists()) {
+        ConfigRegistry.Settings accProps = ConfigRegistry.shared().get(ConfigRegistry.OPS, accountantPropertiesFile);
+        if (accProps == null) {
             updateConnectionStatus("Accountant properties file not found", Color.RED);
             return;
         }
-        try (FileInputStream fis = new FileInputStream(accPropFile)) {
-            accProps.load(fis);
-        } catch (IOException ex) {
-            updateConnectionStatus("Failed to load accountant properties", Color.RED);
-            return;
-        }
 
         String driver = accProps.getProperty("driver", "com.mysql.cj.jdbc.Driver");
         String urlFromProps = accProps.getProperty("url", "jdbc:mysql://localhost:3306/operationslog");
@@ -208,7 +326,12 @@ public class AccountantGUI extends JFrame implements ActionListener {
                 updateConnectionStatus("Already connected", Color.ORANGE);
                 return;
             }
-            c = DriverManager.getConnection(urlFromProps, propUsername, propPassword);
+            long start = System.nanoTime();
+            ConnectionPool pool = ConnectionPool.forCredentials(urlFromProps, propUsername, propPassword);
+            c = pool.borrow();
+            metrics.record(StatementMetrics.Phase.CONNECT, start);
+            schemaCache = SchemaCache.forConnection(urlFromProps, propUsername);
+            schemaCache.loadAsync(pool);
             updateConnectionStatus("Connected: " + urlFromProps, Color.GREEN);
             System.out.println("Connected as " + propUsername + " to " + urlFromProps + "\n");
         } catch (ClassNotFoundException e) {
@@ -221,11 +344,17 @@ public class AccountantGUI extends JFrame implements ActionListener {
     }
 
     public void disconnectFromDatabase() {
+        setAutoRefresh(false);
+        cancelSQLCommand();
+        if (runningTask != null) {
+            runningTask.awaitDone(); // Its worker may still be using the connection
+        }
         try {
             if (c != null && !c.isClosed()) {
-                c.close();
+                c.close(); // Returns the connection to its pool
                 updateConnectionStatus("Not connected", Color.LIGHT_GRAY);
                 c = null;
+                schemaCache = null;
             } else {
                 JOptionPane.showMessageDialog(this, "No active connection to disconnect.", "Info", JOptionPane.INFORMATION_MESSAGE);
             }
@@ -238,58 +367,221 @@ public class AccountantGUI extends JFrame implements ActionListener {
     /**
      * Executes an SQL command.
      * For the accountant application, only SELECT queries are allowed.
+     * With auto-refresh on, the result is diffed into the table currently shown instead of replacing it.
      */
     public void executeSQLCommand() {
         String sql = sqlCommandArea.getText().trim();
         if (sql.isEmpty()) {
+            setAutoRefresh(false);
             JOptionPane.showMessageDialog(this, "Please enter an SQL command.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        // Enforce that only SELECT queries are allowed
-        if (!sql.toLowerCase().startsWith("select")) {
+        // Enforce that only read-only queries are allowed (SELECT, WITH ... SELECT, SHOW, DESCRIBE, EXPLAIN),
+        // not EXPLAIN ANALYZE of DML, which runs it
+        if (!SqlLexer.isRead(sql) || SqlLexer.writes(sql)) {
+            setAutoRefresh(false);
             JOptionPane.showMessageDialog(this, "Only SELECT queries are allowed in the accountant application.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
         if (c == null) {
+            setAutoRefresh(false);
             JOptionPane.showMessageDialog(this, "No active connection. Please connect to the database first.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        try (PreparedStatement pstmt = c.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            DefaultTableModel model = buildTableModel(rs);
-            resultTable.setModel(model);
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "SQL Error: " + ex.getMessage(), "SQL Error", JOptionPane.ERROR_MESSAGE);
-            System.err.println("SQL Error: " + ex.getMessage());
+        if (runningTask != null) {
+            return;
+        }
+
+        // Capture everything the worker needs while still on the EDT
+        Connection conn = c;
+        int timeoutSeconds = (Integer) timeoutSpinner.getValue();
+        if (autoRefreshCheckBox.isSelected()) {
+            refresh(conn, sql, timeoutSeconds);
+            return;
         }
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> new ColumnarTableModel(fetch(conn, sql, timeoutSeconds, t)),
+                model -> {
+                    statusLabel.setText(runningTask.describeProgress());
+                    setRunning(null);
+                    long start = System.nanoTime();
+                    resultTable.setModel(model);
+                    resultSql = sql;
+                    metrics.record(StatementMetrics.Phase.MODEL, start);
+                    StartupWarmup.milestone("first result shown");
+                }, this::handleSQLFailure);
+        setRunning(task);
     }
 
     /**
-     * Builds a non-editable DefaultTableModel from the given ResultSet.
+     * Result of one auto-refresh poll; keyColumns is null when the table already has a DiffTableModel.
      */
-    private DefaultTableModel buildTableModel(ResultSet rs) throws SQLException {
-        ResultSetMetaData meta = rs.getMetaData();
-        int colCount = meta.getColumnCount();
-        DefaultTableModel model = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+    private record Poll(ColumnBatch batch, int[] keyColumns) {
+    }
+
+    /**
+     * Starts or stops auto-refresh. Starting runs the query right away.
+     */
+    private void setAutoRefresh(boolean on) {
+        autoRefreshCheckBox.setSelected(on);
+        if (on) {
+            refreshTimer.setDelay((Integer) refreshSpinner.getValue() * 1000);
+            refreshTimer.start();
+            executeSQLCommand();
+        } else {
+            refreshTimer.stop();
+        }
+    }
+
+    /**
+     * Positions of the primary key columns of the query's table in the result, so rows can be matched across
+     * polls. Empty (rows matched by position) for joins, or when the result does not include the whole key.
+     */
+    private static int[] keyColumns(Connection conn, String sql, ColumnBatch batch) throws SQLException {
+        Set<String> tables = SqlLexer.tables(sql);
+        if (tables.size() != 1) {
+            return new int[0];
+        }
+        String table = tables.iterator().next();
+        List<String> keys = new ArrayList<>();
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getPrimaryKeys(conn.getCatalog(), null, name)) {
+                while (rs.next()) {
+                    keys.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+            if (!keys.isEmpty()) {
+                break; // Found under this spelling; some drivers store unquoted names in upper case
+            }
+        }
+        int[] positions = new int[keys.size()];
+        for (int k = 0; k < positions.length; k++) {
+            positions[k] = -1;
+            for (int c = 0; c < batch.getColumnCount(); c++) {
+                if (batch.getColumnName(c).equalsIgnoreCase(keys.get(k))) {
+                    positions[k] = c;
+                    break;
+                }
+            }
+            if (positions[k] < 0) {
+                return new int[0];
             }
-        };
-        for (int i = 1; i <= colCount; i++) {
-            model.addColumn(meta.getColumnLabel(i));
         }
-        while (rs.next()) {
-            Object[] rowData = new Object[colCount];
-            for (int i = 1; i <= colCount; i++) {
-                rowData[i - 1] = rs.getObject(i);
+        return positions;
+    }
+
+    /**
+     * Runs the query and reads its whole result. Called from the background worker.
+     */
+    private ColumnBatch fetch(Connection conn, String sql, int timeoutSeconds, QueryExecutor.QueryTask t) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            t.setStatement(pstmt);
+            pstmt.setQueryTimeout(timeoutSeconds);
+            long start = System.nanoTime();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                metrics.record(StatementMetrics.Phase.EXECUTE, start);
+                start = System.nanoTime();
+                ColumnBatch batch = ColumnBatch.read(rs, Integer.MAX_VALUE, t);
+                metrics.recordFetch(start, batch.getRowCount(), batch.estimatedBytes());
+                return batch;
+            }
+        }
+    }
+
+    /**
+     * One auto-refresh poll: re-runs the query and applies only the changed rows to the table. The first poll of a
+     * query (or of a query whose text changed) installs a new DiffTableModel keyed by the table's primary key.
+     */
+    private void refresh(Connection conn, String sql, int timeoutSeconds) {
+        DiffTableModel current = resultTable.getModel() instanceof DiffTableModel dm && dm.getSql().equals(sql) ? dm : null;
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> {
+            ColumnBatch batch = fetch(conn, sql, timeoutSeconds, t);
+            // The key is looked up once, when the query is first polled
+            return new Poll(batch, current != null ? null : keyColumns(conn, sql, batch));
+        }, poll -> {
+            setRunning(null);
+            DiffTableModel model = current != null ? current : new DiffTableModel(sql, poll.keyColumns());
+            long start = System.nanoTime();
+            DiffTableModel.Changes changes = model.update(poll.batch());
+            if (model != resultTable.getModel()) {
+                resultTable.setModel(model);
+                resultSql = sql;
             }
-            model.addRow(rowData);
+            metrics.record(StatementMetrics.Phase.MODEL, start);
+            StartupWarmup.milestone("first result shown");
+            statusLabel.setText(String.format("Refreshed at %tT: %s", System.currentTimeMillis(), changes.describe()));
+        }, ex -> {
+            setAutoRefresh(false);
+            handleSQLFailure(ex);
+        });
+        setRunning(task);
+    }
+
+    /**
+     * Saves the result shown in the table to a snapshot file that Open Snapshot shows again without a connection.
+     */
+    private void saveSnapshot() {
+        if (runningTask != null) {
+            return;
+        }
+        TableModel model = resultTable.getModel();
+        if (model.getColumnCount() == 0) {
+            JOptionPane.showMessageDialog(this, "There is no result to save.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Result snapshots", ResultSnapshot.EXTENSION));
+        chooser.setSelectedFile(new File("result." + ResultSnapshot.EXTENSION));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        Path file = chooser.getSelectedFile().toPath();
+        String sql = resultSql;
+        // Read from the model here on the EDT; encoding and writing happen in the background
+        List<ColumnBatch> batches = ResultSnapshot.batchesOf(model);
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> ResultSnapshot.write(file, batches, sql, t), size -> {
+            statusLabel.setText(String.format("%s | %s, %,d KB", runningTask.describeProgress(), file.getFileName(),
+                    size / 1024));
+            setRunning(null);
+        }, this::handleSQLFailure);
+        setRunning(task);
+    }
+
+    /**
+     * Shows a saved snapshot (stopping auto-refresh). Works offline; rows are decoded as they scroll into view.
+     */
+    private void openSnapshot() {
+        if (runningTask != null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Result snapshots", ResultSnapshot.EXTENSION));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        SnapshotTableModel model;
+        try {
+            model = SnapshotTableModel.open(chooser.getSelectedFile().toPath());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Failed to open snapshot: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
-        return model;
+        setAutoRefresh(false);
+        long start = System.nanoTime();
+        resultTable.setModel(model);
+        metrics.record(StatementMetrics.Phase.MODEL, start);
+        StartupWarmup.milestone("first result shown");
+        resultSql = model.getSnapshot().getSql();
+        statusLabel.setText("Snapshot " + model.getSnapshot().describe());
+        statusLabel.setToolTipText(resultSql);
     }
 
     public static void main(String[] args) {
+        // Config, drivers and the accountant's connection warm up while the window is built, so Connect does not
+        // pay for connect/auth
+        StartupWarmup.start(() -> new StartupWarmup.Target(ConfigRegistry.OPS, accountantPropertiesFile,
+                ConfigRegistry.OPS, accountantPropertiesFile, "jdbc:mysql://localhost:3306/operationslog"));
         SwingUtilities.invokeLater(AccountantGUI::new);
     }
 }
@@ -0,0 +1,315 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: BulkImporter.java
+*/
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads a CSV file with a header row into a table. CSV columns are matched to table columns by name through
+ * DatabaseMetaData; columns the table does not have are skipped. When the server allows it the file is sent
+ * with LOAD DATA LOCAL INFILE, otherwise it is stream-parsed and inserted in batches by parallel workers,
+ * each on its own pooled connection and committing after every batch.
+ */
+public class BulkImporter {
+    private static final int BATCH_ROWS = 1000;
+    private static final int WORKERS = 4;
+    private static final List<String[]> POISON = new ArrayList<>(); // End-of-input marker, compared by identity
+
+    private final ConnectionPool pool;
+    private final Path file;
+    private final String table;
+
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private String method;
+    private long elapsedNanos;
+
+    private record Target(String name, int sqlType) {
+        boolean isCharacter() {
+            return switch (sqlType) {
+                case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR,
+                     Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB -> true;
+                default -> false;
+            };
+        }
+    }
+
+    public BulkImporter(ConnectionPool pool, Path file, String table) {
+        this.pool = pool;
+        this.file = file;
+        this.table = table;
+    }
+
+    /**
+     * Runs the import. Rows are committed as they are loaded, so after a failure the rows already reported
+     * by getRowsImported() stay in the table.
+     */
+    public void run(QueryExecutor.QueryTask task) throws SQLException, IOException {
+        long start = System.nanoTime();
+        task.setRowsVerb("imported");
+        try (CsvReader csv = open()) {
+            String[] header = csv.next();
+            if (header == null) {
+                throw new IOException(file.getFileName() + " is empty");
+            }
+            Target[] targets;
+            String quote;
+            boolean loadData;
+            try (Connection conn = pool.borrow()) {
+                DatabaseMetaData meta = conn.getMetaData();
+                targets = mapColumns(meta, conn.getCatalog(), header);
+                quote = meta.getIdentifierQuoteString().trim();
+                loadData = localInfileEnabled(conn);
+            }
+            if (loadData) {
+                method = "LOAD DATA LOCAL INFILE";
+                loadData(task, targets, quote, csv.sawCarriageReturn());
+            } else {
+                method = WORKERS + " parallel insert workers";
+                insertParallel(task, csv, targets, quote);
+            }
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private CsvReader open() throws IOException {
+        return new CsvReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Matches header names to table columns, ignoring case. Unmatched CSV columns map to null.
+     */
+    private Target[] mapColumns(DatabaseMetaData meta, String catalog, String[] header) throws SQLException {
+        Map<String, Target> columns = new HashMap<>();
+        try (ResultSet rs = meta.getColumns(catalog, null, table, "%")) {
+            while (rs.next()) {
+                String name = rs.getString("COLUMN_NAME");
+                columns.put(name.toLowerCase(Locale.ROOT), new Target(name, rs.getInt("DATA_TYPE")));
+            }
+        }
+        if (columns.isEmpty()) {
+            throw new SQLException("Table " + table + " not found");
+        }
+        Target[] targets = new Target[header.length];
+        boolean any = false;
+        for (int i = 0; i < header.length; i++) {
+            targets[i] = columns.get(header[i].trim().toLowerCase(Locale.ROOT));
+            any |= targets[i] != null;
+        }
+        if (!any) {
+            throw new SQLException("None of the CSV columns match a column of " + table);
+        }
+        return targets;
+    }
+
+    private static boolean localInfileEnabled(Connection conn) throws SQLException {
+        if (!conn.getMetaData().getDatabaseProductName().equals("MySQL")) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT @@GLOBAL.local_infile")) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    /**
+     * Sends the whole file with LOAD DATA LOCAL INFILE. Unmatched columns are read into a throwaway variable,
+     * and empty fields become NULL for non-character columns, as in the batched path.
+     */
+    private void loadData(QueryExecutor.QueryTask task, Target[] targets, String quote, boolean crlf) throws SQLException {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder assignments = new StringBuilder();
+        for (int i = 0; i < targets.length; i++) {
+            if (i > 0) {
+                columns.append(", ");
+            }
+            if (targets[i] == null) {
+                columns.append("@skip");
+            } else if (targets[i].isCharacter()) {
+                columns.append(quote(quote, targets[i].name()));
+            } else {
+                columns.append("@c").append(i);
+                assignments.append(assignments.isEmpty() ? " SET " : ", ")
+                        .append(quote(quote, targets[i].name())).append(" = NULLIF(@c").append(i).append(", '')");
+            }
+        }
+        String sql = "LOAD DATA LOCAL INFILE '" + file.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'")
+                + "' INTO TABLE " + quote(quote, table) + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''"
+                + " LINES TERMINATED BY '" + (crlf ? "\\r\\n" : "\\n") + "' IGNORE 1 LINES"
+                + " (" + columns + ")" + assignments;
+        try (Connection conn = pool.withLocalInfilePath(file.toAbsolutePath().getParent()).borrow();
+             Statement stmt = conn.createStatement()) {
+            task.setStatement(stmt);
+            long rows = stmt.executeLargeUpdate(sql);
+            rowsImported.addAndGet(rows);
+            task.addRows(rows);
+        }
+    }
+
+    /**
+     * Parses on the calling thread and hands batches of rows to insert workers through a bounded queue,
+     * so memory use stays constant however large the file is.
+     */
+    private void insertParallel(QueryExecutor.QueryTask task, CsvReader csv, Target[] targets, String quote)
+            throws SQLException, IOException {
+        List<Integer> mapped = new ArrayList<>();
+        StringBuilder columns = new StringBuilder();
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] != null) {
+                columns.append(mapped.isEmpty() ? "" : ", ").append(quote(quote, targets[i].name()));
+                params.append(mapped.isEmpty() ? "?" : ", ?");
+                mapped.add(i);
+            }
+        }
+        String sql = "INSERT INTO " + quote(quote, table) + " (" + columns + ") VALUES (" + params + ")";
+        Target[] mappedTargets = mapped.stream().map(i -> targets[i]).toArray(Target[]::new);
+
+        BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<>(WORKERS * 2);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < WORKERS; w++) {
+                workers.execute(() -> {
+                    try {
+                        insertBatches(task, queue, sql, mappedTargets);
+                    } catch (Exception ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                });
+            }
+            try {
+                List<String[]> batch = new ArrayList<>(BATCH_ROWS);
+                String[] record;
+                while (failure.get() == null && !task.isCancelled() && (record = csv.next()) != null) {
+                    if (record.length > targets.length) {
+                        throw new IOException("Line " + csv.getRecordNumber() + " has " + record.length
+                                + " fields, the header has " + targets.length);
+                    }
+                    String[] row = new String[mapped.size()];
+                    for (int j = 0; j < row.length; j++) {
+                        int i = mapped.get(j);
+                        row[j] = i < record.length ? record[i] : "";
+                    }
+                    batch.add(row);
+                    if (batch.size() == BATCH_ROWS) {
+                        hand(queue, batch, task);
+                        batch = new ArrayList<>(BATCH_ROWS);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    hand(queue, batch, task);
+                }
+            } catch (IOException ex) {
+                failure.compareAndSet(null, ex);
+            } finally {
+                for (int w = 0; w < WORKERS; w++) {
+                    hand(queue, POISON, task);
+                }
+            }
+        }
+        Exception ex = failure.get();
+        if (ex instanceof SQLException sqlEx) {
+            throw sqlEx;
+        } else if (ex instanceof IOException ioEx) {
+            throw ioEx;
+        } else if (ex != null) {
+            throw new SQLException(ex);
+        } else if (task.isCancelled()) {
+            throw new SQLException("Import cancelled");
+        }
+    }
+
+    /**
+     * Queues a batch, giving up once a worker has failed or the import was cancelled (the workers stop taking).
+     */
+    private void hand(BlockingQueue<List<String[]>> queue, List<String[]> batch, QueryExecutor.QueryTask task) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null || task.isCancelled()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, ex);
+        }
+    }
+
+    private void insertBatches(QueryExecutor.QueryTask task, BlockingQueue<List<String[]>> queue, String sql,
+                               Target[] targets) throws SQLException, InterruptedException {
+        try (Connection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                while (failure.get() == null && !task.isCancelled()) {
+                    List<String[]> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        continue;
+                    }
+                    if (batch == POISON) {
+                        break;
+                    }
+                    for (String[] row : batch) {
+                        for (int j = 0; j < targets.length; j++) {
+                            // Empty fields are NULL except in character columns
+                            if (row[j].isEmpty() && !targets[j].isCharacter()) {
+                                pstmt.setNull(j + 1, targets[j].sqlType());
+                            } else {
+                                pstmt.setString(j + 1, row[j]);
+                            }
+                        }
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    conn.commit();
+                    rowsImported.addAndGet(batch.size());
+                    task.addRows(batch.size());
+                }
+            }
+        }
+    }
+
+    private static String quote(String quote, String identifier) {
+        return quote.isEmpty() ? identifier : quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    public long getRowsImported() {
+        return rowsImported.get();
+    }
+
+    /**
+     * One-line summary of rows loaded and throughput.
+     */
+    public String describe() {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        return String.format("Imported %,d rows into %s in %.2f s (%,.0f rows/s) using %s",
+                rowsImported.get(), table, seconds, rowsImported.get() / seconds, method);
+    }
+}
@@ -0,0 +1,954 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ColumnBatch.java
+*/
+
+import javax.swing.table.TableModel;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column-oriented storage for a block of fetched rows.
+ * Each column is read with a strategy chosen from ResultSetMetaData.getColumnType and kept in a primitive array
+ * (int[], long[], double[]) with a null bitmap; strings are dictionary-encoded so repeated values are stored once.
+ * Values are only boxed when a cell is actually rendered.
+ */
+public final class ColumnBatch {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Physical representation of a column.
+     */
+    public enum Kind { INT, LONG, DOUBLE, FLOAT, DECIMAL, DATE, TIMESTAMP, STRING, OBJECT }
+
+    private final String[] columnNames;
+    private final Column[] columns;
+    private int rowCount;
+
+    private ColumnBatch(String[] columnNames, Column[] columns) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates an empty batch with one column per result column, using a reader chosen from its SQL type.
+     */
+    public static ColumnBatch forMetaData(ResultSetMetaData meta) throws SQLException {
+        int colCount = meta.getColumnCount();
+        String[] names = new String[colCount];
+        Column[] columns = new Column[colCount];
+        for (int i = 1; i <= colCount; i++) {
+            names[i - 1] = meta.getColumnLabel(i);
+            columns[i - 1] = Column.forType(meta.getColumnType(i), meta.isSigned(i), meta.getScale(i));
+        }
+        return new ColumnBatch(names, columns);
+    }
+
+    /**
+     * Reads up to maxRows rows from the ResultSet into a new batch, reporting each row to the task (may be null)
+     * and stopping early if the task is cancelled.
+     */
+    public static ColumnBatch read(ResultSet rs, int maxRows, QueryExecutor.QueryTask task) throws SQLException {
+        ColumnBatch batch = forMetaData(rs.getMetaData());
+        batch.readRows(rs, maxRows, task);
+        return batch;
+    }
+
+    /**
+     * Appends up to maxRows rows from the ResultSet and returns how many were read.
+     */
+    public int readRows(ResultSet rs, int maxRows, QueryExecutor.QueryTask task) throws SQLException {
+        int n = 0;
+        while (n < maxRows && rs.next()) {
+            if (task != null && task.isCancelled()) {
+                throw new SQLException("Statement cancelled");
+            }
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].append(rs, i + 1);
+            }
+            rowCount++;
+            n++;
+            if (task != null) {
+                task.rowFetched();
+            }
+        }
+        for (Column column : columns) {
+            column.trim();
+        }
+        return n;
+    }
+
+    /**
+     * Creates an empty batch for merging rows of several results: a leading string column (for example the
+     * source of each row) followed by empty columns of the same types and names as shape's.
+     */
+    public static ColumnBatch withLeadingColumn(String name, ColumnBatch shape) {
+        String[] names = new String[shape.columns.length + 1];
+        Column[] columns = new Column[names.length];
+        names[0] = name;
+        columns[0] = new StringColumn();
+        for (int i = 0; i < shape.columns.length; i++) {
+            names[i + 1] = shape.columnNames[i];
+            columns[i + 1] = shape.columns[i].emptyCopy();
+        }
+        return new ColumnBatch(names, columns);
+    }
+
+    /**
+     * Copies the rows of any TableModel into a batch, choosing each column's storage from the Java type of its
+     * values (a column whose values have different types is kept as objects). Call on the EDT.
+     */
+    public static ColumnBatch fromTableModel(TableModel model) {
+        int rows = model.getRowCount();
+        String[] names = new String[model.getColumnCount()];
+        Column[] columns = new Column[names.length];
+        for (int c = 0; c < names.length; c++) {
+            names[c] = model.getColumnName(c);
+            Column column = null;
+            for (int r = 0; r < rows; r++) {
+                Object v = model.getValueAt(r, c);
+                if (column == null && v != null) {
+                    // Leading NULLs are appended once the column's type is known
+                    column = Column.forValue(v);
+                    for (int i = 0; i < r; i++) {
+                        column.appendValue(null);
+                    }
+                } else if (column != null && v != null && column.kind() != Column.kindOf(v)) {
+                    column = column.toObjects();
+                }
+                if (column != null) {
+                    column.appendValue(v);
+                }
+            }
+            if (column == null) {
+                column = new ObjectColumn(); // No values at all
+                for (int i = 0; i < rows; i++) {
+                    column.appendValue(null);
+                }
+            }
+            column.trim();
+            columns[c] = column;
+        }
+        ColumnBatch batch = new ColumnBatch(names, columns);
+        batch.rowCount = rows;
+        return batch;
+    }
+
+    /**
+     * Decodes a page spilled by SpillFile back into a batch stored the same way as shape, the batch the page
+     * was written from or one of the same result.
+     */
+    public static ColumnBatch fromPage(ColumnBatch shape, SpillFile.Page page) {
+        Column[] columns = new Column[shape.columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = shape.columns[c].emptyCopy();
+            for (int r = 0; r < page.getRowCount(); r++) {
+                columns[c].appendValue(page.getValue(r, c));
+            }
+            columns[c].trim();
+        }
+        ColumnBatch batch = new ColumnBatch(shape.columnNames, columns);
+        batch.rowCount = page.getRowCount();
+        return batch;
+    }
+
+    /**
+     * True if other has the same column names (ignoring case) stored the same way, so its rows can be
+     * appended to a batch created from this one.
+     */
+    public boolean hasSameColumns(ColumnBatch other) {
+        if (other.columns.length != columns.length) {
+            return false;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (!other.columnNames[i].equalsIgnoreCase(columnNames[i]) || other.columns[i].getClass() != columns[i].getClass()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the leading value and one row of from to a batch created by withLeadingColumn.
+     */
+    public void appendRow(String leading, ColumnBatch from, int row) {
+        ((StringColumn) columns[0]).append(leading);
+        for (int i = 1; i < columns.length; i++) {
+            columns[i].appendFrom(from.columns[i - 1], row);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Releases spare capacity once no more rows will be appended.
+     */
+    public void trim() {
+        for (Column column : columns) {
+            column.trim();
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    public Column getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Boxed value of a cell (null for SQL NULL), as rendered by the result table.
+     */
+    public Object getValue(int row, int column) {
+        Column c = columns[column];
+        return c.isNull(row) ? null : c.getValue(row);
+    }
+
+    /**
+     * Rough heap footprint of the stored values, used for cache and spill budgets.
+     */
+    public long estimatedBytes() {
+        long bytes = 64;
+        for (Column column : columns) {
+            bytes += column.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Base class for a typed column: a value array plus a null bitmap, growing as rows are appended.
+     */
+    public abstract static class Column {
+        protected long[] nulls = new long[1];
+        protected int size;
+        protected int capacity;
+
+        static Column forType(int sqlType, boolean signed, int scale) {
+            return switch (sqlType) {
+                case Types.TINYINT, Types.SMALLINT -> new IntColumn();
+                case Types.INTEGER -> signed ? new IntColumn() : new LongColumn();
+                case Types.BIGINT -> signed ? new LongColumn() : new ObjectColumn();
+                case Types.REAL -> new FloatColumn();
+                case Types.FLOAT, Types.DOUBLE -> new DoubleColumn();
+                case Types.DECIMAL, Types.NUMERIC -> new DecimalColumn(scale);
+                case Types.DATE -> new DateColumn();
+                case Types.TIMESTAMP -> new TimestampColumn();
+                case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR,
+                     Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR -> new StringColumn();
+                default -> new ObjectColumn();
+            };
+        }
+
+        /**
+         * Storage for values of the Java type of v, as returned by getValue.
+         */
+        static Column forValue(Object v) {
+            return switch (kindOf(v)) {
+                case INT -> new IntColumn();
+                case LONG -> new LongColumn();
+                case DOUBLE -> new DoubleColumn();
+                case FLOAT -> new FloatColumn();
+                case DECIMAL -> new DecimalColumn(((BigDecimal) v).scale());
+                case DATE -> new DateColumn();
+                case TIMESTAMP -> new TimestampColumn();
+                case STRING -> new StringColumn();
+                case OBJECT -> new ObjectColumn();
+            };
+        }
+
+        static Kind kindOf(Object v) {
+            if (v instanceof Integer) {
+                return Kind.INT;
+            } else if (v instanceof Long) {
+                return Kind.LONG;
+            } else if (v instanceof Double) {
+                return Kind.DOUBLE;
+            } else if (v instanceof Float) {
+                return Kind.FLOAT;
+            } else if (v instanceof BigDecimal) {
+                return Kind.DECIMAL;
+            } else if (v instanceof LocalDate) {
+                return Kind.DATE;
+            } else if (v instanceof Timestamp) {
+                return Kind.TIMESTAMP;
+            } else if (v instanceof String) {
+                return Kind.STRING;
+            }
+            return Kind.OBJECT;
+        }
+
+        public abstract Kind kind();
+
+        /**
+         * Boxed value of a non-null cell.
+         */
+        public abstract Object getValue(int row);
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        abstract void append(ResultSet rs, int columnIndex) throws SQLException;
+
+        /**
+         * New empty column of the same type.
+         */
+        abstract Column emptyCopy();
+
+        /**
+         * Appends one row of a column of the same type.
+         */
+        void appendFrom(Column source, int row) {
+            ensureCapacity();
+            if (source.isNull(row)) {
+                markNull();
+            } else {
+                copyValue(source, row);
+            }
+            size++;
+        }
+
+        abstract void copyValue(Column source, int row);
+
+        /**
+         * Appends a boxed value of the type getValue returns, or null.
+         */
+        void appendValue(Object v) {
+            ensureCapacity();
+            if (v == null) {
+                markNull();
+            } else {
+                setObject(v);
+            }
+            size++;
+        }
+
+        abstract void setObject(Object v);
+
+        /**
+         * The same values kept as objects.
+         */
+        Column toObjects() {
+            ObjectColumn objects = new ObjectColumn();
+            for (int r = 0; r < size; r++) {
+                objects.appendValue(isNull(r) ? null : getValue(r));
+            }
+            return objects;
+        }
+
+        abstract void resize(int newCapacity);
+
+        abstract long valueBytes();
+
+        protected void ensureCapacity() {
+            if (size == capacity) {
+                setCapacity(Math.max(INITIAL_CAPACITY, capacity * 2));
+            }
+        }
+
+        protected void markNull() {
+            nulls[size >>> 6] |= 1L << size;
+        }
+
+        private void setCapacity(int newCapacity) {
+            resize(newCapacity);
+            nulls = Arrays.copyOf(nulls, (newCapacity + 63) >>> 6);
+            capacity = newCapacity;
+        }
+
+        void trim() {
+            if (capacity > size) {
+                setCapacity(size);
+            }
+        }
+
+        long estimatedBytes() {
+            return 32 + nulls.length * 8L + valueBytes();
+        }
+    }
+
+    public static class IntColumn extends Column {
+        protected int[] values = new int[0];
+
+        @Override
+        public Kind kind() {
+            return Kind.INT;
+        }
+
+        public int getInt(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            int v = rs.getInt(columnIndex);
+            if (rs.wasNull()) {
+                markNull();
+            } else {
+                values[size] = v;
+            }
+            size++;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new IntColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            values[size] = (Integer) v;
+        }
+
+        @Override
+        void copyValue(Column source, int row) {
+            values[size] = ((IntColumn) source).values[row];
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+
+        @Override
+        long valueBytes() {
+            return values.length * 4L;
+        }
+    }
+
+    public static class LongColumn extends Column {
+        protected long[] values = new long[0];
+
+        @Override
+        public Kind kind() {
+            return Kind.LONG;
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            long v = rs.getLong(columnIndex);
+            if (rs.wasNull()) {
+                markNull();
+            } else {
+                values[size] = v;
+            }
+            size++;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new LongColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            values[size] = (Long) v;
+        }
+
+        @Override
+        void copyValue(Column source, int row) {
+            values[size] = ((LongColumn) source).values[row];
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+
+        @Override
+        long valueBytes() {
+            return values.length * 8L;
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+        protected double[] values = new double[0];
+
+        @Override
+        public Kind kind() {
+            return Kind.DOUBLE;
+        }
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            double v = rs.getDouble(columnIndex);
+            if (rs.wasNull()) {
+                markNull();
+            } else {
+                values[size] = v;
+            }
+            size++;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new DoubleColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            values[size] = (Double) v;
+        }
+
+        @Override
+        void copyValue(Column source, int row) {
+            values[size] = ((DoubleColumn) source).values[row];
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+
+        @Override
+        long valueBytes() {
+            return values.length * 8L;
+        }
+    }
+
+    /**
+     * REAL (MySQL FLOAT) read with getFloat and shown as a Float, so 1.1 stays 1.1 rather than the nearest
+     * double. Values are kept widened to double, which is exact, so doubles code can sort and spill them.
+     */
+    public static class FloatColumn extends DoubleColumn {
+        @Override
+        public Kind kind() {
+            return Kind.FLOAT;
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return (float) values[row];
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            float v = rs.getFloat(columnIndex);
+            if (rs.wasNull()) {
+                markNull();
+            } else {
+                values[size] = v;
+            }
+            size++;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new FloatColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            values[size] = (Float) v;
+        }
+    }
+
+    /**
+     * DECIMAL/NUMERIC stored as an unscaled long with the column's scale; values that do not fit
+     * are kept as BigDecimal in a sparse overflow array.
+     */
+    public static class DecimalColumn extends Column {
+        private final int scale;
+        private long[] unscaled = new long[0];
+        private BigDecimal[] overflow;
+
+        DecimalColumn(int scale) {
+            this.scale = scale;
+        }
+
+        @Override
+        public Kind kind() {
+            return Kind.DECIMAL;
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+        /**
+         * True if the value is held in the primitive array (use getUnscaled); otherwise use getValue.
+         */
+        public boolean isCompact(int row) {
+            return overflow == null || overflow[row] == null;
+        }
+
+        public long getUnscaled(int row) {
+            return unscaled[row];
+        }
+
+        @Override
+        public Object getValue(int row) {
+            if (!isCompact(row)) {
+                return overflow[row];
+            }
+            return BigDecimal.valueOf(unscaled[row], scale);
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            BigDecimal v = rs.getBigDecimal(columnIndex);
+            if (v == null) {
+                markNull();
+            } else {
+                setValue(v);
+            }
+            size++;
+        }
+
+        private void setValue(BigDecimal v) {
+            if (v.scale() == scale && v.unscaledValue().bitLength() < 64) {
+                unscaled[size] = v.unscaledValue().longValue();
+            } else {
+                if (overflow == null) {
+                    overflow = new BigDecimal[capacity];
+                }
+                overflow[size] = v;
+            }
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new DecimalColumn(scale);
+        }
+
+        @Override
+        void setObject(Object v) {
+            setValue((BigDecimal) v);
+        }
+
+        @Override
+        void copyValue(Column source, int row) {
+            DecimalColumn decimals = (DecimalColumn) source;
+            if (decimals.scale == scale && decimals.isCompact(row)) {
+                unscaled[size] = decimals.unscaled[row];
+            } else {
+                setValue((BigDecimal) decimals.getValue(row));
+            }
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            unscaled = Arrays.copyOf(unscaled, newCapacity);
+            if (overflow != null) {
+                overflow = Arrays.copyOf(overflow, newCapacity);
+            }
+        }
+
+        @Override
+        long valueBytes() {
+            return unscaled.length * 8L + (overflow == null ? 0 : overflow.length * 40L);
+        }
+    }
+
+    /**
+     * DATE stored as epoch day.
+     */
+    public static class DateColumn extends IntColumn {
+        @Override
+        public Kind kind() {
+            return Kind.DATE;
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return LocalDate.ofEpochDay(values[row]);
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            LocalDate v = rs.getObject(columnIndex, LocalDate.class);
+            if (v == null) {
+                markNull();
+            } else {
+                values[size] = (int) v.toEpochDay();
+            }
+            size++;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new DateColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            values[size] = (int) ((LocalDate) v).toEpochDay();
+        }
+    }
+
+    /**
+     * DATETIME/TIMESTAMP stored as microseconds since the epoch (local date-time, no zone conversion). Cells
+     * are shown as java.sql.Timestamp, as getObject returns them (2025-03-14 10:00:00.0).
+     */
+    public static class TimestampColumn extends LongColumn {
+        @Override
+        public Kind kind() {
+            return Kind.TIMESTAMP;
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return toTimestamp(values[row]);
+        }
+
+        /**
+         * Converts a stored value to the Timestamp a cell shows.
+         */
+        static Timestamp toTimestamp(long micros) {
+            return Timestamp.valueOf(toLocalDateTime(micros));
+        }
+
+        /**
+         * Converts a stored value (microseconds since the epoch) back to the local date-time.
+         */
+        static LocalDateTime toLocalDateTime(long micros) {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+        }
+
+        static long toMicros(LocalDateTime v) {
+            return v.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + v.getNano() / 1000;
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            LocalDateTime v = rs.getObject(columnIndex, LocalDateTime.class);
+            if (v == null) {
+                markNull();
+            } else {
+                values[size] = toMicros(v);
+            }
+            size++;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new TimestampColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            values[size] = toMicros(((Timestamp) v).toLocalDateTime());
+        }
+    }
+
+    /**
+     * Dictionary-encoded strings: each row holds an int code into a table of distinct values.
+     */
+    public static class StringColumn extends Column {
+        private int[] codes = new int[0];
+        private String[] dictionary = new String[16];
+        private int dictionarySize;
+        private Map<String, Integer> lookup = new HashMap<>();
+
+        @Override
+        public Kind kind() {
+            return Kind.STRING;
+        }
+
+        public int getCode(int row) {
+            return codes[row];
+        }
+
+        public String getString(int row) {
+            return dictionary[codes[row]];
+        }
+
+        public int getDictionarySize() {
+            return dictionarySize;
+        }
+
+        public String getDictionaryValue(int code) {
+            return dictionary[code];
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return dictionary[codes[row]];
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            append(rs.getString(columnIndex));
+        }
+
+        void append(String v) {
+            ensureCapacity();
+            if (v == null) {
+                markNull();
+            } else {
+                setValue(v);
+            }
+            size++;
+        }
+
+        private void setValue(String v) {
+            if (lookup == null) {
+                rebuildLookup();
+            }
+            Integer code = lookup.get(v);
+            if (code == null) {
+                code = dictionarySize;
+                if (dictionarySize == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+                }
+                dictionary[dictionarySize++] = v;
+                lookup.put(v, code);
+            }
+            codes[size] = code;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new StringColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            setValue((String) v);
+        }
+
+        @Override
+        void copyValue(Column source, int row) {
+            setValue(((StringColumn) source).getString(row));
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            codes = Arrays.copyOf(codes, newCapacity);
+        }
+
+        @Override
+        void trim() {
+            super.trim();
+            // The lookup map is only needed while appending; drop it once the batch is complete
+            lookup = null;
+            dictionary = Arrays.copyOf(dictionary, Math.max(dictionarySize, 1));
+        }
+
+        private void rebuildLookup() {
+            lookup = new HashMap<>();
+            for (int i = 0; i < dictionarySize; i++) {
+                lookup.put(dictionary[i], i);
+            }
+        }
+
+        @Override
+        long valueBytes() {
+            long bytes = codes.length * 4L + dictionary.length * 8L;
+            for (int i = 0; i < dictionarySize; i++) {
+                bytes += 40 + dictionary[i].length() * 2L;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Fallback for types without a primitive representation (BLOB, TIME, BIT, unsigned BIGINT, ...).
+     */
+    public static class ObjectColumn extends Column {
+        private Object[] values = new Object[0];
+
+        @Override
+        public Kind kind() {
+            return Kind.OBJECT;
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        void append(ResultSet rs, int columnIndex) throws SQLException {
+            ensureCapacity();
+            Object v = rs.getObject(columnIndex);
+            if (v == null) {
+                markNull();
+            } else {
+                values[size] = v;
+            }
+            size++;
+        }
+
+        @Override
+        Column emptyCopy() {
+            return new ObjectColumn();
+        }
+
+        @Override
+        void setObject(Object v) {
+            values[size] = v;
+        }
+
+        @Override
+        void copyValue(Column source, int row) {
+            values[size] = source.getValue(row);
+        }
+
+        @Override
+        void resize(int newCapacity) {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+
+        @Override
+        long valueBytes() {
+            return values.length * 40L;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ColumnarTableModel.java
+*/
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only TableModel adapter over one or more fully fetched ColumnBatch pages.
+ */
+public class ColumnarTableModel extends AbstractTableModel {
+    private final List<ColumnBatch> batches;
+    private final int[] firstRows; // Row index at which each batch starts
+    private final int rowCount;
+
+    public ColumnarTableModel(ColumnBatch batch) {
+        this(List.of(batch));
+    }
+
+    public ColumnarTableModel(List<ColumnBatch> batches) {
+        this.batches = batches;
+        firstRows = new int[batches.size()];
+        int rows = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            firstRows[i] = rows;
+            rows += batches.get(i).getRowCount();
+        }
+        rowCount = rows;
+    }
+
+    public List<ColumnBatch> getBatches() {
+        return batches;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return batches.get(0).getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return batches.get(0).getColumnName(column);
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int b = Arrays.binarySearch(firstRows, rowIndex);
+        if (b < 0) {
+            b = -b - 2;
+        } else {
+            // Skip over empty batches that start at the same row
+            while (b + 1 < firstRows.length && firstRows[b + 1] == rowIndex) {
+                b++;
+            }
+        }
+        return batches.get(b).getValue(rowIndex - firstRows[b], columnIndex);
+    }
+}
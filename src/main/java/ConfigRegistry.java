@@ -0,0 +1,200 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ConfigRegistry.java
+*/
+
+import javax.swing.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * All *.properties files under config/db, config/user and config/ops, parsed once into immutable snapshots.
+ * A WatchService thread re-parses files as they are created, changed or deleted and tells listeners which
+ * directory changed, so lookups on the connect and query paths never touch the disk.
+ */
+public class ConfigRegistry {
+    public static final String DB = "db";
+    public static final String USER = "user";
+    public static final String OPS = "ops";
+
+    private static final ConfigRegistry SHARED = new ConfigRegistry(Path.of("config"));
+
+    private final Path root;
+    // Directory -> file name -> settings; replaced as a whole on every change
+    private volatile Map<String, Map<String, Settings>> snapshot;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Immutable key/value view of one properties file.
+     */
+    public static final class Settings {
+        private final Map<String, String> values;
+
+        private Settings(Properties properties) {
+            Map<String, String> copy = new HashMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                copy.put(key, properties.getProperty(key));
+            }
+            values = Map.copyOf(copy);
+        }
+
+        public String getProperty(String key, String defaultValue) {
+            return values.getOrDefault(key, defaultValue);
+        }
+    }
+
+    private ConfigRegistry(Path root) {
+        this.root = root;
+        Map<String, Map<String, Settings>> initial = new HashMap<>();
+        for (String dir : List.of(DB, USER, OPS)) {
+            initial.put(dir, Collections.unmodifiableMap(scan(root.resolve(dir))));
+        }
+        snapshot = Map.copyOf(initial);
+        startWatching();
+    }
+
+    /**
+     * The registry for the application's config directory.
+     */
+    public static ConfigRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Settings parsed from config/dir/name, or null if there is no such (readable) file.
+     */
+    public Settings get(String dir, String name) {
+        return name == null ? null : snapshot.getOrDefault(dir, Map.of()).get(name);
+    }
+
+    /**
+     * Names of the properties files in config/dir, sorted.
+     */
+    public List<String> list(String dir) {
+        return List.copyOf(snapshot.getOrDefault(dir, Map.of()).keySet());
+    }
+
+    /**
+     * Registers a listener called on the EDT with the directory (DB, USER or OPS) whose files changed.
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    private static Map<String, Settings> scan(Path dir) {
+        Map<String, Settings> files = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.properties")) {
+            for (Path file : stream) {
+                Settings settings = parse(file);
+                if (settings != null) {
+                    files.put(file.getFileName().toString(), settings);
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Failed to read config directory " + dir + ": " + ex.getMessage());
+        }
+        return files;
+    }
+
+    private static Settings parse(Path file) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            properties.load(reader);
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println("Failed to load " + file + ": " + ex.getMessage());
+            return null;
+        }
+        return new Settings(properties);
+    }
+
+    private void startWatching() {
+        WatchService watcher;
+        Map<WatchKey, String> keys = new HashMap<>();
+        try {
+            watcher = root.getFileSystem().newWatchService();
+            for (String dir : List.of(DB, USER, OPS)) {
+                Path path = root.resolve(dir);
+                if (Files.isDirectory(path)) {
+                    keys.put(path.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Config hot reload disabled: " + ex.getMessage());
+            return;
+        }
+        Thread thread = new Thread(() -> watch(watcher, keys), "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(WatchService watcher, Map<WatchKey, String> keys) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                String dir = keys.get(key);
+                Map<String, Settings> files = new TreeMap<>(snapshot.get(dir));
+                boolean rescan = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        rescan = true;
+                        continue;
+                    }
+                    String name = event.context().toString();
+                    if (!name.endsWith(".properties")) {
+                        continue;
+                    }
+                    Settings settings = event.kind() == ENTRY_DELETE ? null : parse(root.resolve(dir).resolve(name));
+                    if (settings != null) {
+                        files.put(name, settings);
+                    } else if (event.kind() == ENTRY_DELETE || !Files.exists(root.resolve(dir).resolve(name))) {
+                        files.remove(name);
+                    } // Otherwise unparseable: keep the previous snapshot of the file
+                }
+                if (rescan) {
+                    files = scan(root.resolve(dir));
+                }
+                Map<String, Map<String, Settings>> next = new HashMap<>(snapshot);
+                next.put(dir, Collections.unmodifiableMap(files));
+                snapshot = Map.copyOf(next);
+                if (!key.reset()) {
+                    System.err.println("Stopped watching config/" + dir);
+                }
+                for (Consumer<String> listener : listeners) {
+                    SwingUtilities.invokeLater(() -> listener.accept(dir));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Shutting down
+        }
+    }
+}
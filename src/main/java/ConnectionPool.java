@@ -0,0 +1,395 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ConnectionPool.java
+*/
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small JDBC connection pool keyed by (database URL, user credentials).
+ * Connections handed out are proxies: close() returns the physical connection to the pool.
+ * Idle connections are validated with isValid() before reuse and pinged by a keepalive task,
+ * and dead connections are replaced transparently.
+ */
+public class ConnectionPool {
+    private static final int MAX_SIZE = 8;
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+    private static final long VALIDATION_INTERVAL_MILLIS = 5_000;  // Idle time after which a connection is re-validated
+    private static final long KEEPALIVE_INTERVAL_SECONDS = 30;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    // One daemon thread pings idle connections of every pool
+    private static final ScheduledExecutorService KEEPALIVE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "connection-pool-keepalive");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        KEEPALIVE.scheduleWithFixedDelay(() -> POOLS.values().forEach(ConnectionPool::keepAlive),
+                KEEPALIVE_INTERVAL_SECONDS, KEEPALIVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final BlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits = new Semaphore(MAX_SIZE, true);
+
+    // Statistics
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private record IdleConnection(Connection connection, long idleSince) {
+    }
+
+    /**
+     * Snapshot of pool statistics.
+     */
+    public record Stats(String url, String username, long borrows, long hits, long misses, long reconnects,
+                        int idle, int inUse, double avgWaitMillis, double maxWaitMillis) {
+        public double hitRate() {
+            return borrows == 0 ? 0.0 : (double) hits / borrows;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%s: %d borrows, %.0f%% hits, %d reconnects, %d idle, %d in use, wait avg %.2f ms / max %.2f ms",
+                    username, url, borrows, hitRate() * 100, reconnects, idle, inUse, avgWaitMillis, maxWaitMillis);
+        }
+    }
+
+    private ConnectionPool(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Returns the shared pool for the given URL and credentials, creating it on first use.
+     */
+    public static ConnectionPool forCredentials(String url, String username, String password) {
+        String key = url + '\u0000' + username + '\u0000' + password;
+        return POOLS.computeIfAbsent(key, k -> new ConnectionPool(url, username, password));
+    }
+
+    /**
+     * Returns the pool for the same database and credentials whose connections may send files from the
+     * given directory for LOAD DATA LOCAL INFILE. The driver refuses local files anywhere else.
+     */
+    public ConnectionPool withLocalInfilePath(Path directory) {
+        String param = "allowLoadLocalInfileInPath=" + URLEncoder.encode(directory.toAbsolutePath().toString(), StandardCharsets.UTF_8);
+        return forCredentials(url + (url.contains("?") ? "&" : "?") + param, username, password);
+    }
+
+    /**
+     * Closes the idle connections of every pool (used on application exit).
+     */
+    public static void closeAll() {
+        POOLS.values().forEach(ConnectionPool::closeIdle);
+    }
+
+    /**
+     * Marks a connection from borrow() as lost after a statement on it failed with a connection error, so that
+     * its next prepare reconnects (or fails inside a transaction) and it is not handed out again.
+     */
+    public static void markBroken(Connection connection) {
+        if (Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof PooledHandler handler) {
+            handler.markBroken();
+        }
+    }
+
+    /**
+     * Opens connections in the background until the pool holds the given number of idle connections.
+     */
+    public void prewarm(int count) {
+        Thread.ofVirtual().name("connection-pool-prewarm").start(() -> {
+            while (idle.size() < Math.min(count, MAX_SIZE)) {
+                try {
+                    idle.offerLast(new IdleConnection(open(), System.currentTimeMillis()));
+                } catch (SQLException ex) {
+                    System.err.println("Failed to pre-warm connection to " + url + ": " + ex.getMessage());
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Borrows a connection, reusing a validated idle one when possible.
+     * Closing the returned connection gives it back to the pool.
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for a pooled connection to " + url);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", ex);
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        borrows.increment();
+
+        try {
+            IdleConnection candidate;
+            while ((candidate = idle.pollFirst()) != null) {
+                if (isUsable(candidate.connection(), candidate.idleSince())) {
+                    hits.increment();
+                    return wrap(candidate.connection());
+                }
+                closeQuietly(candidate.connection());
+                reconnects.increment();
+            }
+            misses.increment();
+            return wrap(open());
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens a physical connection outside the pool, configured like pooled ones and not counted against the
+     * pool size. For callers standing in for separate clients, each with a session connection of its own.
+     */
+    public Connection openDedicated() throws SQLException {
+        return open();
+    }
+
+    public Stats getStats() {
+        long n = borrows.sum();
+        return new Stats(url, username, n, hits.sum(), misses.sum(), reconnects.sum(), idle.size(),
+                MAX_SIZE - permits.availablePermits(),
+                n == 0 ? 0.0 : totalWaitNanos.sum() / 1e6 / n, maxWaitNanos.get() / 1e6);
+    }
+
+    private Connection open() throws SQLException {
+        Properties info = new Properties();
+        info.setProperty("user", username);
+        info.setProperty("password", password);
+        if (url.startsWith("jdbc:mysql:")) {
+            // Server-side cursors for statements with a fetch size (see CursorTableModel)
+            info.setProperty("useCursorFetch", "true");
+            // Lets the driver collapse batched INSERTs into multi-row statements (see ScriptRunner)
+            info.setProperty("rewriteBatchedStatements", "true");
+        }
+        return DriverManager.getConnection(url, info);
+    }
+
+    /**
+     * A connection idle for less than the validation interval is trusted; anything older is checked with isValid().
+     */
+    private boolean isUsable(Connection connection, long idleSince) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - idleSince < VALIDATION_INTERVAL_MILLIS) {
+                return true;
+            }
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a physical connection to the idle list, resetting session state first.
+     */
+    private void release(Connection connection, boolean broken) {
+        try {
+            if (!broken && !connection.isClosed()) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                if (idle.size() < MAX_SIZE) {
+                    idle.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+                    return;
+                }
+            }
+            closeQuietly(connection);
+        } catch (SQLException ex) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Pings connections that have been idle for a while and replaces the ones that died.
+     */
+    private void keepAlive() {
+        List<IdleConnection> checked = new ArrayList<>();
+        int replaced = 0;
+        IdleConnection candidate;
+        while ((candidate = idle.pollLast()) != null) {
+            if (System.currentTimeMillis() - candidate.idleSince() < VALIDATION_INTERVAL_MILLIS) {
+                checked.add(candidate);
+                continue;
+            }
+            try {
+                if (candidate.connection().isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    checked.add(new IdleConnection(candidate.connection(), System.currentTimeMillis()));
+                    continue;
+                }
+            } catch (SQLException ignored) {
+                // Treated as dead below
+            }
+            closeQuietly(candidate.connection());
+            replaced++;
+        }
+        idle.addAll(checked);
+        for (int i = 0; i < replaced; i++) {
+            try {
+                idle.offerLast(new IdleConnection(open(), System.currentTimeMillis()));
+                reconnects.increment();
+            } catch (SQLException ex) {
+                System.err.println("Failed to reconnect to " + url + ": " + ex.getMessage());
+                break;
+            }
+        }
+    }
+
+    private void closeIdle() {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            closeQuietly(candidate.connection());
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Nothing useful to do with a connection that will not close
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PooledHandler(physical));
+    }
+
+    /**
+     * Proxy behaviour for a borrowed connection. close() returns the connection to the pool; a connection
+     * left idle inside a long-lived session is re-validated and swapped for a fresh one before new statements.
+     */
+    private class PooledHandler implements InvocationHandler {
+        private Connection physical;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean closed;
+        private boolean broken;
+        private boolean manualCommit;  // setAutoCommit(false) is in effect
+
+        PooledHandler(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        release(physical, broken);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + physical + "]";
+                }
+            }
+            if (closed) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                reconnectIfStale();
+            } else if (method.getName().equals("setAutoCommit")) {
+                manualCommit = !(Boolean) args[0];
+            }
+            try {
+                lastUsed = System.currentTimeMillis();
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof SQLException sqlEx && sqlEx.getSQLState() != null
+                        && sqlEx.getSQLState().startsWith("08")) {
+                    broken = true;  // Connection-class error: do not hand this one out again
+                }
+                throw cause;
+            }
+        }
+
+        synchronized void markBroken() {
+            broken = true;
+        }
+
+        /**
+         * Transparently replaces a dead physical connection, but only outside a transaction: inside one the
+         * server has rolled the work back, so the caller gets an error rather than a fresh auto-commit connection.
+         */
+        private void reconnectIfStale() throws SQLException {
+            if (!broken && System.currentTimeMillis() - lastUsed < VALIDATION_INTERVAL_MILLIS) {
+                return;
+            }
+            if (!broken && physical.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return;
+            }
+            if (manualCommit) {
+                broken = true;
+                throw new SQLException("Connection to " + url + " lost during a transaction; its uncommitted "
+                        + "work was rolled back", "08003");
+            }
+            closeQuietly(physical);
+            physical = open();
+            broken = false;
+            reconnects.increment();
+        }
+    }
+}
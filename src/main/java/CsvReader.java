@@ -0,0 +1,145 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: CsvReader.java
+*/
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV parser over a fixed-size character buffer, so files of any size are read
+ * with constant memory. Quoted fields may contain commas, doubled quotes and line breaks;
+ * LF, CRLF and CR line endings are accepted and blank lines are skipped.
+ */
+public class CsvReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private long recordNumber;
+    private boolean sawCarriageReturn;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Returns the next record, or null at end of input.
+     */
+    public String[] next() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;      // Inside a quoted field
+        boolean wasQuoted = false;   // Current field started with a quote
+        boolean any = false;         // Anything read for this record
+        int ch;
+        while ((ch = read()) >= 0) {
+            if (quoted) {
+                if (ch == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) ch);
+                }
+            } else if (ch == ',') {
+                endField();
+                wasQuoted = false;
+                any = true;
+            } else if (ch == '\n' || ch == '\r') {
+                if (ch == '\r') {
+                    sawCarriageReturn = true;
+                    if (peek() == '\n') {
+                        read();
+                    }
+                }
+                if (any || field.length() > 0 || wasQuoted) {
+                    break;
+                }
+                // Blank line
+            } else if (ch == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+                any = true;
+            } else {
+                field.append((char) ch);
+                any = true;
+            }
+        }
+        if (!any && field.length() == 0 && !wasQuoted) {
+            return null;
+        }
+        endField();
+        recordNumber++;
+        if (recordNumber == 1 && !fields.isEmpty() && fields.get(0).startsWith("\uFEFF")) {
+            fields.set(0, fields.get(0).substring(1)); // Byte order mark
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    /**
+     * 1-based number of the record most recently returned by next().
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * True once a carriage return has been seen as a line terminator (Windows line endings).
+     */
+    public boolean sawCarriageReturn() {
+        return sawCarriageReturn;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            eof = true;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: CursorTableModel.java
+*/
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A read-only TableModel that streams a SELECT from a server-side cursor (useCursorFetch with a fetch size)
+ * one page at a time, each page held as a columnar ColumnBatch. Only the first page is read up front; further pages are fetched as the JTable asks for
+ * rows near the end of what has been read. Pages are kept on the heap up to a byte budget; beyond it the least
+ * recently used pages are spilled to a memory-mapped SpillFile and read from there when they scroll back into
+ * view. If spilling fails (no temp space), an evicted page is re-read with LIMIT/OFFSET instead, provided the
+ * query ends in an ORDER BY that fixes which rows a page holds; otherwise its cells show UNAVAILABLE. Heap use
+ * therefore does not grow with result size. The budget comes from the DB properties:
+ * <pre>
+ * results.heapBudgetMB=64
+ * </pre>
+ */
+public class CursorTableModel extends AbstractTableModel implements AutoCloseable {
+    public static final int PAGE_SIZE = 500;
+    public static final String UNAVAILABLE = "(unavailable)";  // Cells of an evicted page that cannot be re-read
+    public static final long DEFAULT_HEAP_BUDGET_BYTES = 64L * 1024 * 1024;
+    private static final int PREFETCH_ROWS = PAGE_SIZE / 2;  // Fetch the next page when this close to the end
+
+    private final StatementCache statementCache;
+    private final SqlFingerprint query;
+    private final String pageSql;  // The query with LIMIT/OFFSET, or null if it cannot be paged
+    private final int timeoutSeconds;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final ResultSetMetaData metaData;
+    private final String[] columnNames;
+    private final StatementMetrics metrics;
+    private final long heapBudgetBytes;
+    private final ExecutorService fetcher =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("cursor-fetch").factory());
+
+    // Page cache and cursor position; only touched on the EDT once the model is published
+    private final Map<Integer, ColumnBatch> pages = new LinkedHashMap<>(16, 0.75f, true);  // LRU order
+    private final Map<Integer, ColumnBatch> spilling = new HashMap<>();  // Evicted, still being written out
+    private final Map<Integer, SpillFile.Page> spilled = new HashMap<>();
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private final Set<Integer> unavailablePages = new HashSet<>();
+    private long heapBytes;
+    private volatile SpillFile spillFile;  // Created by the fetcher on the first spill
+    private int rowCount;
+    private boolean exhausted;
+    private boolean fetchingMore;
+    private volatile boolean closed;
+    private boolean cursorClosed;
+    private boolean evictedAny;
+    private Consumer<List<ColumnBatch>> completionListener;
+
+    private CursorTableModel(StatementCache statementCache, SqlFingerprint query, int timeoutSeconds,
+                             long heapBudgetBytes, PreparedStatement statement, ResultSet resultSet,
+                             StatementMetrics metrics) throws SQLException {
+        this.statementCache = statementCache;
+        this.query = query;
+        pageSql = pagedSql(query.getSql());
+        this.timeoutSeconds = timeoutSeconds;
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.metrics = metrics;
+        metaData = resultSet.getMetaData();
+        columnNames = new String[metaData.getColumnCount()];
+        for (int i = 1; i <= columnNames.length; i++) {
+            columnNames[i - 1] = metaData.getColumnLabel(i);
+        }
+    }
+
+    /**
+     * Executes the query with a cursor and reads the first page, so the table can show rows immediately.
+     * Called from a background worker; the task receives the statement for cancellation and the row progress.
+     * The statement comes from the session's statement cache and is checked back in when the cursor is closed.
+     * Pages beyond heapBudgetBytes are spilled to disk.
+     */
+    public static CursorTableModel open(StatementCache statementCache, SqlFingerprint query, int timeoutSeconds,
+                                        long heapBudgetBytes, QueryExecutor.QueryTask task) throws SQLException {
+        PreparedStatement pstmt = statementCache.checkout(query.getSql());
+        try {
+            task.setStatement(pstmt);
+            pstmt.setQueryTimeout(timeoutSeconds);
+            pstmt.setFetchSize(PAGE_SIZE);
+            query.bind(pstmt);
+            StatementMetrics metrics = task.getMetrics();
+            long start = System.nanoTime();
+            ResultSet rs = pstmt.executeQuery();
+            metrics.record(StatementMetrics.Phase.EXECUTE, start);
+            CursorTableModel model = new CursorTableModel(statementCache, query, timeoutSeconds, heapBudgetBytes,
+                    pstmt, rs, metrics);
+            ColumnBatch first = model.readPage(task);
+            model.pages.put(0, first);
+            model.heapBytes = first.estimatedBytes();
+            model.rowCount = first.getRowCount();
+            if (first.getRowCount() < PAGE_SIZE) {
+                model.exhausted = true;
+                model.closeCursor();
+            }
+            return model;
+        } catch (SQLException ex) {
+            statementCache.checkin(query.getSql(), pstmt);
+            throw statementCache.failed(ex);
+        } catch (RuntimeException ex) {
+            statementCache.checkin(query.getSql(), pstmt);
+            throw ex;
+        }
+    }
+
+    /**
+     * Calls the listener on the EDT with every page of the result once the cursor has been read to the end,
+     * provided no page had to be evicted on the way (immediately if that is already the case).
+     */
+    public void whenComplete(Consumer<List<ColumnBatch>> listener) {
+        completionListener = listener;
+        notifyIfComplete();
+    }
+
+    private void notifyIfComplete() {
+        if (completionListener == null || !exhausted || evictedAny || closed) {
+            return;
+        }
+        int pageCount = (rowCount + PAGE_SIZE - 1) / PAGE_SIZE;
+        List<ColumnBatch> all = new ArrayList<>(Math.max(pageCount, 1));
+        for (int i = 0; i < pageCount; i++) {
+            all.add(pages.get(i));
+        }
+        if (all.isEmpty()) {
+            all.add(pages.get(0)); // Empty result: keep the page that carries the column names
+        }
+        Consumer<List<ColumnBatch>> listener = completionListener;
+        completionListener = null;
+        listener.accept(all);
+    }
+
+    /**
+     * True while more rows remain on the server cursor.
+     */
+    public boolean hasMoreRows() {
+        return !exhausted;
+    }
+
+    /**
+     * Bytes of the result spilled to disk so far (0 if it fits in the heap budget).
+     */
+    public long getSpilledBytes() {
+        SpillFile file = spillFile;
+        return file == null ? 0 : file.size();
+    }
+
+    /**
+     * The rows read so far as one batch per page, for copying the result without going through getValueAt.
+     * Call on the EDT; call get() on each element in the background: pages on the heap are returned as they are
+     * and spilled pages are decoded then. Throws IllegalStateException if a page is in neither place (it
+     * could not be spilled and has not been read again), rather than let its rows be copied as NULLs.
+     */
+    public List<Supplier<ColumnBatch>> pageBatches() {
+        if (closed) {
+            throw new IllegalStateException("The result has been closed");
+        }
+        ColumnBatch shape = pages.values().iterator().next();
+        int pageCount = (rowCount + PAGE_SIZE - 1) / PAGE_SIZE;
+        List<Supplier<ColumnBatch>> batches = new ArrayList<>(Math.max(pageCount, 1));
+        for (int i = 0; i < pageCount; i++) {
+            ColumnBatch page = pages.containsKey(i) ? pages.get(i) : spilling.get(i);
+            SpillFile.Page mapped = spilled.get(i);
+            if (page != null) {
+                batches.add(() -> page);
+            } else if (mapped != null) {
+                batches.add(() -> ColumnBatch.fromPage(shape, mapped));
+            } else {
+                throw new IllegalStateException(String.format("Rows %,d to %,d are not available; scroll to them "
+                        + "and try again", i * PAGE_SIZE + 1, Math.min(rowCount, (i + 1) * PAGE_SIZE)));
+            }
+        }
+        if (batches.isEmpty()) {
+            batches.add(() -> shape); // Empty result: keep the page that carries the column names
+        }
+        return batches;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (!exhausted && rowIndex >= rowCount - PREFETCH_ROWS) {
+            fetchMore();
+        }
+        int pageIndex = rowIndex / PAGE_SIZE;
+        ColumnBatch page = pages.get(pageIndex);
+        if (page == null) {
+            page = spilling.get(pageIndex);
+        }
+        if (page != null) {
+            return page.getValue(rowIndex % PAGE_SIZE, columnIndex);
+        }
+        SpillFile.Page mapped = spilled.get(pageIndex);
+        if (mapped != null) {
+            return mapped.getValue(rowIndex % PAGE_SIZE, columnIndex);
+        }
+        if (pageSql == null || unavailablePages.contains(pageIndex)) {
+            return UNAVAILABLE;
+        }
+        reloadPage(pageIndex);
+        return null;
+    }
+
+    /**
+     * Caches a page on the heap, then moves least recently used pages out until the heap budget is met again.
+     * The most recent page always stays.
+     */
+    private void putPage(int pageIndex, ColumnBatch page) {
+        ColumnBatch previous = pages.put(pageIndex, page);
+        heapBytes += page.estimatedBytes() - (previous == null ? 0 : previous.estimatedBytes());
+        Iterator<Map.Entry<Integer, ColumnBatch>> eldest = pages.entrySet().iterator();
+        while (heapBytes > heapBudgetBytes && pages.size() > 1) {
+            Map.Entry<Integer, ColumnBatch> entry = eldest.next();
+            eldest.remove();
+            heapBytes -= entry.getValue().estimatedBytes();
+            evictedAny = true;
+            spill(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes an evicted page to the spill file in the background. The page stays readable from the heap until
+     * it has been written; if writing fails it is dropped and re-read with LIMIT/OFFSET when needed.
+     */
+    private void spill(int pageIndex, ColumnBatch page) {
+        spilling.put(pageIndex, page);
+        fetcher.execute(() -> {
+            SpillFile.Page mapped = null;
+            try {
+                mapped = writeSpill(page);
+            } catch (IOException | RuntimeException ex) {
+                if (!closed) {
+                    System.err.println("Failed to spill rows to disk: " + ex.getMessage());
+                }
+            }
+            SpillFile.Page result = mapped;
+            SwingUtilities.invokeLater(() -> {
+                spilling.remove(pageIndex);
+                if (result != null && !closed) {
+                    spilled.put(pageIndex, result);
+                }
+            });
+        });
+    }
+
+    private synchronized SpillFile.Page writeSpill(ColumnBatch page) throws IOException {
+        if (closed) {
+            return null;
+        }
+        if (spillFile == null) {
+            spillFile = SpillFile.create();
+        }
+        return spillFile.write(page);
+    }
+
+    /**
+     * Reads the next page from the cursor in the background and appends it to the table.
+     */
+    private void fetchMore() {
+        if (fetchingMore || exhausted || closed) {
+            return;
+        }
+        fetchingMore = true;
+        fetcher.execute(() -> {
+            if (closed) {
+                return;
+            }
+            try {
+                ColumnBatch page = readPage(null);
+                SwingUtilities.invokeLater(() -> appendPage(page));
+            } catch (SQLException ex) {
+                statementCache.failed(ex);
+                if (!closed) {
+                    System.err.println("Failed to fetch more rows: " + ex.getMessage());
+                }
+                SwingUtilities.invokeLater(() -> {
+                    exhausted = true;
+                    fetchingMore = false;
+                });
+            }
+        });
+    }
+
+    private void appendPage(ColumnBatch page) {
+        fetchingMore = false;
+        if (closed) {
+            return;
+        }
+        int firstRow = rowCount;
+        putPage(rowCount / PAGE_SIZE, page);
+        rowCount += page.getRowCount();
+        if (page.getRowCount() < PAGE_SIZE) {
+            exhausted = true;
+            fetcher.execute(this::closeCursor);
+        }
+        if (page.getRowCount() > 0) {
+            fireTableRowsInserted(firstRow, rowCount - 1);
+        }
+        notifyIfComplete();
+    }
+
+    /**
+     * Re-reads a page that was evicted from the LRU with the paged form of the query.
+     */
+    private void reloadPage(int pageIndex) {
+        if (closed || !loadingPages.add(pageIndex)) {
+            return;
+        }
+        int firstPageParam = query.getParameters().size() + 1;
+        fetcher.execute(() -> {
+            if (closed) {
+                return;
+            }
+            PreparedStatement pstmt = null;
+            try {
+                pstmt = statementCache.checkout(pageSql);
+                pstmt.setQueryTimeout(timeoutSeconds);
+                query.bind(pstmt);
+                pstmt.setInt(firstPageParam, PAGE_SIZE);
+                pstmt.setLong(firstPageParam + 1, (long) pageIndex * PAGE_SIZE);
+                ColumnBatch page;
+                long start = System.nanoTime();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    metrics.record(StatementMetrics.Phase.EXECUTE, start);
+                    start = System.nanoTime();
+                    page = ColumnBatch.read(rs, PAGE_SIZE, null);
+                }
+                metrics.recordFetch(start, page.getRowCount(), page.estimatedBytes());
+                SwingUtilities.invokeLater(() -> {
+                    loadingPages.remove(pageIndex);
+                    if (closed) {
+                        return;
+                    }
+                    putPage(pageIndex, page);
+                    int firstRow = pageIndex * PAGE_SIZE;
+                    fireTableRowsUpdated(firstRow, Math.min(rowCount, firstRow + PAGE_SIZE) - 1);
+                });
+            } catch (SQLException ex) {
+                statementCache.failed(ex);
+                if (!closed) {
+                    System.err.println("Failed to reload rows: " + ex.getMessage());
+                }
+                // Shown as unavailable rather than retried, so the renderer does not retry in a loop
+                SwingUtilities.invokeLater(() -> {
+                    loadingPages.remove(pageIndex);
+                    if (closed) {
+                        return;
+                    }
+                    unavailablePages.add(pageIndex);
+                    int firstRow = pageIndex * PAGE_SIZE;
+                    fireTableRowsUpdated(firstRow, Math.min(rowCount, firstRow + PAGE_SIZE) - 1);
+                });
+            } finally {
+                if (pstmt != null) {
+                    statementCache.checkin(pageSql, pstmt);
+                }
+            }
+        });
+    }
+
+    // Cursor access: by open() before the model is published, then only on the fetcher thread
+    private synchronized ColumnBatch readPage(QueryExecutor.QueryTask task) throws SQLException {
+        ColumnBatch page = ColumnBatch.forMetaData(metaData);
+        if (!cursorClosed) {
+            long start = System.nanoTime();
+            page.readRows(resultSet, PAGE_SIZE, task);
+            metrics.recordFetch(start, page.getRowCount(), page.estimatedBytes());
+        }
+        return page;
+    }
+
+    private synchronized void closeCursor() {
+        if (cursorClosed) {
+            return;
+        }
+        cursorClosed = true;
+        try {
+            resultSet.close();
+        } catch (SQLException ex) {
+            System.err.println("Failed to close cursor: " + ex.getMessage());
+        }
+        statementCache.checkin(query.getSql(), statement);
+    }
+
+    /**
+     * The query with LIMIT ? OFFSET ? appended, or null unless it is a SELECT whose outermost ORDER BY is its
+     * last clause: without one the server may put different rows in a page the second time, and SHOW, EXPLAIN
+     * or a query with its own LIMIT or locking clause cannot be paged this way.
+     */
+    static String pagedSql(String sql) {
+        String query = stripTrailingSemicolons(sql);
+        SqlLexer lx = new SqlLexer(query);
+        SqlLexer.Token t = lx.next();
+        if (SqlLexer.classify(query) != SqlLexer.Kind.READ || !(lx.is("select") || lx.is("with") || lx.isSymbol('('))) {
+            return null;
+        }
+        boolean ordered = false;
+        boolean order = false;  // The previous token was a top-level ORDER
+        for (; t != SqlLexer.Token.END; t = lx.next()) {
+            boolean top = t == SqlLexer.Token.WORD && lx.depth() == 0;
+            if (top && order && lx.is("by")) {
+                ordered = true;
+            } else if (top && (lx.is("union") || lx.is("except") || lx.is("intersect"))) {
+                ordered = false;
+            } else if (top && (lx.is("limit") || lx.is("for") || lx.is("lock") || lx.is("into")
+                    || lx.is("procedure"))) {
+                return null;
+            }
+            order = top && lx.is("order");
+        }
+        // On a line of its own, in case the query ends in a -- comment
+        return ordered ? query + "\nLIMIT ? OFFSET ?" : null;
+    }
+
+    private static String stripTrailingSemicolons(String sql) {
+        int end = sql.length();
+        while (end > 0 && (sql.charAt(end - 1) == ';' || Character.isWhitespace(sql.charAt(end - 1)))) {
+            end--;
+        }
+        return sql.substring(0, end);
+    }
+
+    /**
+     * Stops background fetching and hands closing the server cursor and deleting the spill file to the fetcher
+     * thread, behind any page fetch in progress, so the caller (the EDT) does not wait on network I/O.
+     * Call awaitClosed() before the connection is released.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        fetcher.execute(() -> {
+            closeCursor();
+            deleteSpillFile();
+        });
+        fetcher.shutdown(); // Not shutdownNow(): interrupting a virtual thread in socket I/O would close the connection
+        pages.clear();
+        spilling.clear();
+        spilled.clear();
+    }
+
+    /**
+     * Waits until the cursor closed by close() has been released.
+     */
+    public void awaitClosed() {
+        try {
+            fetcher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void deleteSpillFile() {
+        if (spillFile != null) {
+            spillFile.close();
+        }
+    }
+}
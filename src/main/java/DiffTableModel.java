@@ -0,0 +1,164 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: DiffTableModel.java
+*/
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table model for a query that is polled repeatedly. Each new result is diffed against the rows on screen by key
+ * (the table's primary key columns, or the row position when there is none), and only the rows that changed are
+ * fired as updated, inserted or deleted, so the table keeps its scroll position, selection and column widths.
+ */
+public class DiffTableModel extends AbstractTableModel {
+    private final String sql;
+    private final int[] keyColumns;   // Result columns forming the row key; empty to key rows by position
+    private String[] columnNames = new String[0];
+    private final List<Object[]> rows = new ArrayList<>();
+
+    /**
+     * Counts of the row events fired by one update.
+     */
+    public record Changes(int updated, int inserted, int deleted, boolean replaced) {
+        public String describe() {
+            return replaced ? "all rows reloaded"
+                    : String.format("%d updated, %d inserted, %d deleted", updated, inserted, deleted);
+        }
+    }
+
+    public DiffTableModel(String sql, int[] keyColumns) {
+        this.sql = sql;
+        this.keyColumns = keyColumns;
+    }
+
+    /**
+     * The query this model shows the result of.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public boolean isKeyed() {
+        return keyColumns.length > 0;
+    }
+
+    /**
+     * Applies a freshly fetched result. Must be called on the EDT.
+     */
+    public Changes update(ColumnBatch batch) {
+        String[] names = new String[batch.getColumnCount()];
+        for (int c = 0; c < names.length; c++) {
+            names[c] = batch.getColumnName(c);
+        }
+        List<Object[]> fresh = new ArrayList<>(batch.getRowCount());
+        for (int r = 0; r < batch.getRowCount(); r++) {
+            Object[] row = new Object[names.length];
+            for (int c = 0; c < names.length; c++) {
+                row[c] = batch.getValue(r, c);
+            }
+            fresh.add(row);
+        }
+        if (!Arrays.equals(names, columnNames)) {
+            columnNames = names;
+            rows.clear();
+            rows.addAll(fresh);
+            fireTableStructureChanged();
+            return new Changes(0, fresh.size(), 0, true);
+        }
+
+        Map<Object, Integer> freshIndex = new HashMap<>();
+        for (int i = 0; i < fresh.size(); i++) {
+            if (freshIndex.put(key(fresh.get(i), i), i) != null) {
+                return replaceAll(fresh); // Duplicate keys: the key does not identify rows in this result
+            }
+        }
+
+        // Drop rows whose key is gone, from the bottom up so indexes stay valid
+        int deleted = 0;
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (!freshIndex.containsKey(key(rows.get(i), i))) {
+                rows.remove(i);
+                fireTableRowsDeleted(i, i);
+                deleted++;
+            }
+        }
+
+        // The surviving rows must still be in result order, otherwise the result was re-sorted
+        int last = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            int at = freshIndex.get(key(rows.get(i), i));
+            if (at < last) {
+                return replaceAll(fresh);
+            }
+            last = at;
+        }
+
+        // Merge: update rows in place and insert new ones where they appear in the result
+        int updated = 0;
+        int inserted = 0;
+        for (int i = 0; i < fresh.size(); i++) {
+            Object[] row = fresh.get(i);
+            if (i < rows.size() && key(rows.get(i), i).equals(key(row, i))) {
+                if (!Arrays.deepEquals(rows.get(i), row)) {
+                    rows.set(i, row);
+                    fireTableRowsUpdated(i, i);
+                    updated++;
+                }
+            } else {
+                rows.add(i, row);
+                fireTableRowsInserted(i, i);
+                inserted++;
+            }
+        }
+        return new Changes(updated, inserted, deleted, false);
+    }
+
+    private Changes replaceAll(List<Object[]> fresh) {
+        rows.clear();
+        rows.addAll(fresh);
+        fireTableDataChanged();
+        return new Changes(0, 0, 0, true);
+    }
+
+    private Object key(Object[] row, int position) {
+        if (keyColumns.length == 0) {
+            return position;
+        }
+        if (keyColumns.length == 1) {
+            return Arrays.asList(row[keyColumns[0]]);
+        }
+        Object[] key = new Object[keyColumns.length];
+        for (int k = 0; k < keyColumns.length; k++) {
+            key[k] = row[keyColumns[k]];
+        }
+        return Arrays.asList(key);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return rows.get(rowIndex)[columnIndex];
+    }
+}
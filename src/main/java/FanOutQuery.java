@@ -0,0 +1,474 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: FanOutQuery.java
+*/
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one SELECT against several identically-shaped databases at once and merges the rows into one result
+ * with a leading "source" column. Each database is read on its own virtual thread and connection, a page at a
+ * time into a small bounded queue. If the query ends in ORDER BY over result columns, the already sorted
+ * streams are combined with a k-way merge, so the merged result is sorted without sorting it again; otherwise
+ * pages are taken in the order they arrive. The merge compares values with SortIndex, which can disagree with a
+ * server collation; a source whose rows are out of order by that comparison makes the result unsorted. A database that fails is reported in its Outcome and left out.
+ */
+public final class FanOutQuery {
+    public static final String SOURCE_COLUMN = "source";
+    private static final int QUEUED_PAGES = 4;       // Per source: bounds memory when one source is slow
+    private static final int OUTPUT_BATCH_ROWS = 4096;
+
+    /**
+     * One database to query: a display name (its DB properties file) and its connection pool.
+     */
+    public record Source(String name, ConnectionPool pool) {
+    }
+
+    /**
+     * How the query went on one source. error is null on success.
+     */
+    public record Outcome(String source, long rows, long millis, String error) {
+        public boolean failed() {
+            return error != null;
+        }
+
+        public String describe() {
+            return failed() ? source + ": " + error : String.format("%s: %,d rows in %d ms", source, rows, millis);
+        }
+    }
+
+    /**
+     * The merged rows, one Outcome per source, and whether the rows are in ORDER BY order.
+     * note explains why an ORDER BY could not be merged (null otherwise).
+     */
+    public record Result(List<ColumnBatch> batches, List<Outcome> outcomes, boolean sorted, String note) {
+        public long failures() {
+            return outcomes.stream().filter(Outcome::failed).count();
+        }
+    }
+
+    // A page from a source, or its end (page == null) with the error that ended it, if any
+    private record Chunk(ColumnBatch page, Exception error, long millis) {
+    }
+
+    // One ORDER BY item: a result column name or a 1-based position
+    private record SortKey(String column, int position, boolean descending) {
+    }
+
+    // A source's position in the merge
+    private static final class Cursor {
+        final int source;
+        ColumnBatch page;
+        int row;
+
+        Cursor(int source, ColumnBatch page) {
+            this.source = source;
+            this.page = page;
+        }
+    }
+
+    private final List<Source> sources;
+    private final String sql;
+    private final int timeoutSeconds;
+    private final QueryExecutor.QueryTask task;
+    private final List<BlockingQueue<Chunk>> queues = new ArrayList<>();
+    private final Semaphore chunksReady = new Semaphore(0);  // One permit per queued chunk, for arrival order
+    private final Set<Integer> abandoned = ConcurrentHashMap.newKeySet();  // Sources left out of the merge
+    private volatile boolean stopped;
+
+    private FanOutQuery(List<Source> sources, String sql, int timeoutSeconds, QueryExecutor.QueryTask task) {
+        this.sources = sources;
+        this.sql = sql;
+        this.timeoutSeconds = timeoutSeconds;
+        this.task = task;
+        for (int i = 0; i < sources.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(QUEUED_PAGES));
+        }
+    }
+
+    /**
+     * Runs the query on every source and waits for the merged result. Called from a background worker; cancelling
+     * the task cancels the statement on every source. Fails only if the task is cancelled or every source fails.
+     */
+    public static Result run(List<Source> sources, String sql, int timeoutSeconds, QueryExecutor.QueryTask task)
+            throws SQLException, InterruptedException {
+        FanOutQuery query = new FanOutQuery(sources, sql, timeoutSeconds, task);
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (int i = 0; i < sources.size(); i++) {
+                int index = i;
+                readers.execute(() -> query.read(index));
+            }
+            return query.merge();
+        } finally {
+            query.stopped = true;
+            readers.shutdown(); // Not shutdownNow(): interrupting a virtual thread in socket I/O would close the connection
+        }
+    }
+
+    /**
+     * Reads one source into its queue until the result ends, the source fails or the merge stops.
+     */
+    private void read(int index) {
+        long start = System.nanoTime();
+        Exception error = null;
+        try (Connection conn = sources.get(index).pool().borrow();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            task.addStatement(pstmt);
+            try {
+                pstmt.setQueryTimeout(timeoutSeconds);
+                pstmt.setFetchSize(CursorTableModel.PAGE_SIZE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    ColumnBatch page;
+                    do {
+                        page = ColumnBatch.forMetaData(rs.getMetaData());
+                        page.readRows(rs, CursorTableModel.PAGE_SIZE, task);
+                        if (!put(index, new Chunk(page, null, 0))) {
+                            pstmt.cancel(); // Merge is done: do not drain the rest of the result
+                            return;
+                        }
+                    } while (page.getRowCount() == CursorTableModel.PAGE_SIZE);
+                }
+            } finally {
+                task.removeStatement(pstmt);
+            }
+        } catch (SQLException | RuntimeException ex) {
+            error = ex;
+        }
+        put(index, new Chunk(null, error, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    // Blocks while the source's queue is full; false once the merge has stopped or left the source out
+    private boolean put(int index, Chunk chunk) {
+        try {
+            while (!stopped && !abandoned.contains(index)) {
+                if (queues.get(index).offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    chunksReady.release();
+                    return true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private Chunk take(int index) throws InterruptedException {
+        Chunk chunk = queues.get(index).take();
+        chunksReady.acquire(); // Keeps the permit count equal to the number of queued chunks
+        return chunk;
+    }
+
+    private Result merge() throws SQLException, InterruptedException {
+        int n = sources.size();
+        Outcome[] outcomes = new Outcome[n];
+        long[] rows = new long[n];
+        List<ColumnBatch> output = new ArrayList<>();
+        ColumnBatch shape = null;
+        String shapeSource = null;
+        Exception firstError = null;
+
+        // The first chunk of every source fixes the column layout (and shows which sources failed outright)
+        List<Cursor> cursors = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Chunk first = take(i);
+            if (first.page() != null) {
+                rows[i] += first.page().getRowCount();
+            }
+            if (first.page() == null) {
+                outcomes[i] = outcome(i, 0, first);
+                if (first.error() != null && firstError == null) {
+                    firstError = first.error();
+                }
+            } else if (shape == null || shape.hasSameColumns(first.page())) {
+                if (shape == null) {
+                    shape = first.page();
+                    shapeSource = sources.get(i).name();
+                }
+                cursors.add(new Cursor(i, first.page()));
+            } else {
+                outcomes[i] = new Outcome(sources.get(i).name(), 0, 0, "result columns differ from " + shapeSource);
+                abandoned.add(i); // Its reader stops at the next page
+            }
+        }
+        if (task.isCancelled()) {
+            throw new SQLException("Statement cancelled");
+        }
+        if (shape == null) {
+            if (firstError instanceof SQLException sqlError) {
+                throw sqlError;
+            }
+            throw new SQLException("The query failed on every database", firstError);
+        }
+
+        ColumnBatch out = ColumnBatch.withLeadingColumn(SOURCE_COLUMN, shape);
+        long limit = topLevelLimit(sql);
+        long emitted = 0;
+        String note = null;
+        List<SortKey> keys = orderBy(sql);
+        int[] keyColumns = keyColumns(keys, shape);
+        if (!keys.isEmpty() && keyColumns == null) {
+            note = "ORDER BY is not on result columns, so rows are in arrival order";
+        }
+
+        boolean sorted = keyColumns != null && !keys.isEmpty();
+        if (sorted) {
+            // k-way merge: the cursor with the smallest current row goes next
+            PriorityQueue<Cursor> heap = new PriorityQueue<>(rowOrder(keys, keyColumns));
+            for (Cursor cursor : cursors) {
+                if (advanceToRow(cursor, outcomes, rows)) {
+                    heap.add(cursor);
+                }
+            }
+            while (!heap.isEmpty() && emitted < limit) {
+                Cursor cursor = heap.poll();
+                ColumnBatch page = cursor.page;
+                int row = cursor.row;
+                out = append(output, out, sources.get(cursor.source).name(), page, row);
+                emitted++;
+                cursor.row++;
+                if (advanceToRow(cursor, outcomes, rows)) {
+                    if (sorted && compareRows(keys, keyColumns, cursor.page, cursor.row, page, row) < 0) {
+                        // The server sorted by rules SortIndex does not follow, so the merge cannot be trusted
+                        sorted = false;
+                        note = "Rows from " + sources.get(cursor.source).name() + " are not in the order the client "
+                                + "compares values (a server collation?), so the merged rows are not fully sorted";
+                    }
+                    heap.add(cursor);
+                }
+            }
+        } else {
+            // Arrival order: take whichever source has a page ready
+            int active = 0;
+            for (Cursor cursor : cursors) {
+                active++;
+                for (int r = 0; r < cursor.page.getRowCount() && emitted < limit; r++, emitted++) {
+                    out = append(output, out, sources.get(cursor.source).name(), cursor.page, r);
+                }
+            }
+            boolean[] done = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                done[i] = outcomes[i] != null;
+            }
+            int next = 0;
+            while (active > 0 && emitted < limit) {
+                chunksReady.acquire();
+                chunksReady.release();
+                for (int k = 0; k < n; k++, next = (next + 1) % n) {
+                    Chunk chunk = queues.get(next).poll();
+                    if (chunk == null) {
+                        continue;
+                    }
+                    chunksReady.acquire();
+                    if (done[next]) {
+                        continue; // Left over from a source whose columns differ
+                    }
+                    if (chunk.page() == null) {
+                        outcomes[next] = outcome(next, rows[next], chunk);
+                        done[next] = true;
+                        active--;
+                    } else {
+                        rows[next] += chunk.page().getRowCount();
+                        for (int r = 0; r < chunk.page().getRowCount() && emitted < limit; r++, emitted++) {
+                            out = append(output, out, sources.get(next).name(), chunk.page(), r);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        if (task.isCancelled()) {
+            throw new SQLException("Statement cancelled");
+        }
+        out.trim();
+        output.add(out);
+
+        List<Outcome> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // Sources still streaming when a LIMIT was reached
+            result.add(outcomes[i] != null ? outcomes[i] : new Outcome(sources.get(i).name(), rows[i], 0, null));
+        }
+        return new Result(output, result, sorted, note);
+    }
+
+    private Outcome outcome(int index, long rows, Chunk end) {
+        String error = end.error() == null ? null
+                : end.error().getMessage() != null ? end.error().getMessage() : end.error().toString();
+        return new Outcome(sources.get(index).name(), rows, end.millis(), error);
+    }
+
+    /**
+     * Moves the cursor to a row that exists, taking the source's next page when the current one is used up.
+     * Returns false once the source has ended (recording its outcome).
+     */
+    private boolean advanceToRow(Cursor cursor, Outcome[] outcomes, long[] rows) throws InterruptedException {
+        while (cursor.row >= cursor.page.getRowCount()) {
+            Chunk chunk = take(cursor.source);
+            if (chunk.page() == null) {
+                outcomes[cursor.source] = outcome(cursor.source, rows[cursor.source], chunk);
+                return false;
+            }
+            rows[cursor.source] += chunk.page().getRowCount();
+            cursor.page = chunk.page();
+            cursor.row = 0;
+        }
+        return true;
+    }
+
+    private static ColumnBatch append(List<ColumnBatch> output, ColumnBatch out, String source, ColumnBatch page, int row) {
+        out.appendRow(source, page, row);
+        if (out.getRowCount() < OUTPUT_BATCH_ROWS) {
+            return out;
+        }
+        out.trim();
+        output.add(out);
+        return ColumnBatch.withLeadingColumn(SOURCE_COLUMN, page);
+    }
+
+    private static Comparator<Cursor> rowOrder(List<SortKey> keys, int[] keyColumns) {
+        return (a, b) -> {
+            int c = compareRows(keys, keyColumns, a.page, a.row, b.page, b.row);
+            return c != 0 ? c : Integer.compare(a.source, b.source); // Ties keep the order of the sources
+        };
+    }
+
+    private static int compareRows(List<SortKey> keys, int[] keyColumns, ColumnBatch a, int aRow, ColumnBatch b,
+                                   int bRow) {
+        for (int k = 0; k < keyColumns.length; k++) {
+            int c = SortIndex.compareValues(a.getValue(aRow, keyColumns[k]), b.getValue(bRow, keyColumns[k]));
+            if (c != 0) {
+                return keys.get(k).descending() ? -c : c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Result column index of every ORDER BY item, or null if any item is an expression or names no result column.
+     */
+    private static int[] keyColumns(List<SortKey> keys, ColumnBatch shape) {
+        int[] columns = new int[keys.size()];
+        for (int k = 0; k < keys.size(); k++) {
+            SortKey key = keys.get(k);
+            columns[k] = -1;
+            if (key.column() == null) {
+                if (key.position() >= 1 && key.position() <= shape.getColumnCount()) {
+                    columns[k] = key.position() - 1;
+                }
+            } else {
+                for (int c = 0; c < shape.getColumnCount(); c++) {
+                    if (shape.getColumnName(c).equalsIgnoreCase(key.column())) {
+                        columns[k] = c;
+                        break;
+                    }
+                }
+            }
+            if (columns[k] < 0) {
+                return null;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Items of the statement's outermost ORDER BY (empty if it has none). An item that is not a plain column
+     * name (optionally qualified) or position comes back with neither set.
+     */
+    private static List<SortKey> orderBy(String sql) {
+        SqlLexer lx = new SqlLexer(sql);
+        List<SortKey> keys = List.of();
+        while (lx.next() != SqlLexer.Token.END) {
+            if (lx.depth() == 0 && lx.is("order") && lx.next() == SqlLexer.Token.WORD && lx.is("by")) {
+                keys = orderItems(lx);
+            }
+            // Any earlier ORDER BY belonged to one branch of a UNION
+            if (lx.depth() == 0 && lx.is("union")) {
+                keys = List.of();
+            }
+        }
+        return keys;
+    }
+
+    // Reads ORDER BY items up to LIMIT, FOR, LOCK, INTO, UNION, ';' or the end, leaving the lexer on that token
+    private static List<SortKey> orderItems(SqlLexer lx) {
+        List<SortKey> keys = new ArrayList<>();
+        String column = null;
+        int position = 0;
+        boolean descending = false;
+        boolean plain = true;
+        boolean expectName = true;  // At the start of an item or after the '.' of a qualified name
+        while (true) {
+            SqlLexer.Token t = lx.next();
+            boolean atEnd = t == SqlLexer.Token.END || (lx.depth() == 0 && (lx.isSymbol(';') || lx.is("limit")
+                    || lx.is("for") || lx.is("lock") || lx.is("into") || lx.is("union")));
+            if (atEnd || (lx.depth() == 0 && lx.isSymbol(','))) {
+                boolean valid = plain && (position > 0 || (column != null && !expectName));
+                keys.add(valid ? new SortKey(column, position, descending) : new SortKey(null, 0, descending));
+                if (atEnd) {
+                    return keys;
+                }
+                column = null;
+                position = 0;
+                descending = false;
+                plain = true;
+                expectName = true;
+            } else if ((lx.is("asc") || lx.is("desc")) && !expectName) {
+                descending = lx.is("desc");
+            } else if ((t == SqlLexer.Token.WORD || t == SqlLexer.Token.QUOTED_IDENTIFIER) && expectName && position == 0) {
+                column = lx.text(); // t.col: only the last name counts
+                expectName = false;
+            } else if (lx.isSymbol('.') && column != null && !expectName) {
+                expectName = true;
+            } else if (t == SqlLexer.Token.NUMBER && column == null && position == 0 && expectName) {
+                try {
+                    position = Integer.parseInt(lx.text());
+                    expectName = false;
+                } catch (NumberFormatException ex) {
+                    plain = false;
+                }
+            } else {
+                plain = false; // An expression, COLLATE, a function call, ...
+            }
+        }
+    }
+
+    /**
+     * Row count of a trailing "LIMIT n" at the outer level, which then applies to the merged rows as well.
+     * Long.MAX_VALUE when there is none (or it has an offset, which each database already applied on its own).
+     */
+    private static long topLevelLimit(String sql) {
+        SqlLexer lx = new SqlLexer(sql);
+        long limit = Long.MAX_VALUE;
+        while (lx.next() != SqlLexer.Token.END) {
+            if (lx.depth() == 0 && lx.is("limit")) {
+                limit = Long.MAX_VALUE;
+                if (lx.next() == SqlLexer.Token.NUMBER && lx.text().chars().allMatch(Character::isDigit)) {
+                    long count = Long.parseLong(lx.text());
+                    SqlLexer.Token after = lx.next();
+                    if (after == SqlLexer.Token.END || lx.isSymbol(';')) {
+                        limit = count; // Not LIMIT n, m / LIMIT n OFFSET m / LIMIT n FOR UPDATE
+                    }
+                }
+            }
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: FilterIndex.java
+*/
+
+import javax.swing.table.TableModel;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index for the result table's filter box: a row matches when any cell contains the filter text, ignoring case.
+ * Text columns are dictionary-encoded (one code per row into the distinct values), so a filter is tested once per
+ * distinct value and rows are then selected by a scan over int codes; a trigram index over the distinct values
+ * narrows the candidates for filters of three characters or more. Other columns are rendered to lower-cased text
+ * the first time a filter could match them, and only when it could (letters never match a number). Typing more
+ * characters refines the previous match instead of starting over, and recent
+ * filters are remembered so deleting characters is just as fast. Rows appended to the model are indexed
+ * incrementally.
+ */
+public final class FilterIndex {
+    private static final int REMEMBERED_FILTERS = 16;
+
+    private final TableModel model;
+    private final TextColumn[] textColumns;  // null for columns that are not (or no longer) all strings
+    private final Class<?>[] renderedTypes;  // Type of the first non-string value of the other columns
+    private final String[][] rendered;       // Lower-cased text of the other columns, rendered on demand
+    private int indexedRows;
+    // Filter text -> matching model rows (ascending) for the rows indexed so far
+    private final Map<String, int[]> recent = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > REMEMBERED_FILTERS;
+        }
+    };
+    private String lastFilter;
+
+    // Distinct lower-cased values of a string column, each row's code, and trigram postings built on demand
+    private static final class TextColumn {
+        final Map<String, Integer> ids = new HashMap<>();
+        String[] values = new String[16];
+        int[] codes = new int[64];   // -1 for NULL
+        int size;
+        Map<Long, int[]> trigrams;   // Trigram -> ids of the values containing it (count in element 0)
+        int trigramValues;           // Values already in the trigram index
+
+        void add(int row, String value) {
+            if (row == codes.length) {
+                codes = Arrays.copyOf(codes, codes.length * 2);
+            }
+            if (value == null) {
+                codes[row] = -1;
+                return;
+            }
+            String lower = value.toLowerCase(Locale.ROOT);
+            Integer id = ids.get(lower);
+            if (id == null) {
+                id = size;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = lower;
+                ids.put(lower, id);
+            }
+            codes[row] = id;
+        }
+
+        /**
+         * Marks the distinct values that contain the filter.
+         */
+        boolean[] matchingValues(String filter) {
+            boolean[] matches = new boolean[size];
+            if (filter.length() < 3) {
+                for (int id = 0; id < size; id++) {
+                    matches[id] = values[id].contains(filter);
+                }
+                return matches;
+            }
+            indexTrigrams();
+            // Only values containing the filter's rarest trigram can contain the filter
+            int[] best = null;
+            for (int i = 0; i + 3 <= filter.length(); i++) {
+                int[] postings = trigrams.get(trigram(filter, i));
+                if (postings == null) {
+                    return matches;
+                }
+                if (best == null || postings[0] < best[0]) {
+                    best = postings;
+                }
+            }
+            for (int p = 1; p <= best[0]; p++) {
+                matches[best[p]] = values[best[p]].contains(filter);
+            }
+            return matches;
+        }
+
+        private void indexTrigrams() {
+            if (trigrams == null) {
+                trigrams = new HashMap<>();
+            }
+            for (; trigramValues < size; trigramValues++) {
+                String value = values[trigramValues];
+                for (int i = 0; i + 3 <= value.length(); i++) {
+                    long key = trigram(value, i);
+                    int[] postings = trigrams.get(key);
+                    if (postings == null) {
+                        postings = new int[4];
+                    } else if (postings[postings[0]] == trigramValues) {
+                        continue; // Trigram occurs twice in this value
+                    } else if (postings[0] + 1 == postings.length) {
+                        postings = Arrays.copyOf(postings, postings.length * 2);
+                    }
+                    postings[++postings[0]] = trigramValues;
+                    trigrams.put(key, postings);
+                }
+            }
+        }
+
+        private static long trigram(String s, int i) {
+            return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+        }
+    }
+
+    public FilterIndex(TableModel model) {
+        this.model = model;
+        textColumns = new TextColumn[model.getColumnCount()];
+        Arrays.setAll(textColumns, c -> new TextColumn());
+        renderedTypes = new Class<?>[textColumns.length];
+        rendered = new String[textColumns.length][];
+    }
+
+    /**
+     * Indexes rows appended to the model since the last call.
+     */
+    public void update() {
+        int rows = model.getRowCount();
+        if (rows == indexedRows) {
+            return;
+        }
+        for (int c = 0; c < textColumns.length; c++) {
+            TextColumn column = textColumns[c];
+            if (column == null) {
+                continue;
+            }
+            for (int r = indexedRows; r < rows; r++) {
+                Object value = model.getValueAt(r, c);
+                if (value != null && !(value instanceof String)) {
+                    textColumns[c] = null; // Not a text column: rendered as text instead
+                    renderedTypes[c] = value.getClass();
+                    break;
+                }
+                column.add(r, (String) value);
+            }
+        }
+        indexedRows = rows;
+        recent.clear();
+        lastFilter = null;
+    }
+
+    /**
+     * Model rows (ascending) with a cell containing the filter text, ignoring case.
+     */
+    public int[] match(String filter) {
+        update();
+        String lower = filter.toLowerCase(Locale.ROOT);
+        int[] rows = recent.get(lower);
+        if (rows != null) {
+            lastFilter = lower;
+            return rows;
+        }
+        // A longer filter can only match rows the shorter one matched
+        int[] candidates = lastFilter != null && lower.contains(lastFilter) ? recent.get(lastFilter) : null;
+        if (candidates == null) {
+            candidates = new int[indexedRows];
+            Arrays.setAll(candidates, i -> i);
+        }
+
+        boolean[] matched = new boolean[indexedRows];
+        for (int c = 0; c < textColumns.length; c++) {
+            TextColumn column = textColumns[c];
+            if (column != null) {
+                boolean[] values = column.matchingValues(lower);
+                for (int row : candidates) {
+                    int code = column.codes[row];
+                    if (code >= 0 && values[code]) {
+                        matched[row] = true;
+                    }
+                }
+            } else if (couldContain(renderedTypes[c], lower)) {
+                String[] text = render(c);
+                for (int row : candidates) {
+                    if (!matched[row]) {
+                        matched[row] = text[row] != null && text[row].contains(lower);
+                    }
+                }
+            }
+        }
+        int count = 0;
+        rows = new int[candidates.length];
+        for (int row : candidates) {
+            if (matched[row]) {
+                rows[count++] = row;
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        recent.put(lower, rows);
+        lastFilter = lower;
+        return rows;
+    }
+
+    // Lower-cased text of a non-text column for the indexed rows, rendering only rows not rendered before
+    private String[] render(int column) {
+        String[] text = rendered[column];
+        int from = text == null ? 0 : text.length;
+        if (from == indexedRows) {
+            return text;
+        }
+        text = text == null ? new String[indexedRows] : Arrays.copyOf(text, indexedRows);
+        for (int r = from; r < indexedRows; r++) {
+            Object value = model.getValueAt(r, column);
+            text[r] = value == null ? null : value.toString().toLowerCase(Locale.ROOT);
+        }
+        rendered[column] = text;
+        return text;
+    }
+
+    // False when the filter has characters that never appear in how numbers or dates are displayed
+    private static boolean couldContain(Class<?> type, String filter) {
+        String alphabet;
+        if (type != null && Number.class.isAssignableFrom(type)) {
+            alphabet = "0123456789.-+e";
+        } else if (type == LocalDate.class || type == LocalDateTime.class) {
+            alphabet = "0123456789-:.t";
+        } else if (type == Timestamp.class) {
+            alphabet = "0123456789-:. ";
+        } else {
+            return true;
+        }
+        return filter.chars().allMatch(ch -> alphabet.indexOf(ch) >= 0);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: LatencyHistogram.java
+*/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram: values in nanoseconds are counted in log-linear
+ * buckets (128 sub-buckets per power of two), so any percentile is reported within 1% of the true value
+ * with a fixed footprint, however many values are recorded.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value in nanoseconds; negative values are counted as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> shift) - SUB_COUNT;
+        return SUB_COUNT + shift * SUB_COUNT + sub;
+    }
+
+    /**
+     * Largest value that falls into the bucket.
+     */
+    private static long bucketHighValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_COUNT) / SUB_COUNT;
+        int sub = (index - SUB_COUNT) % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Value in nanoseconds at or below which the given percentage of recorded values fall.
+     */
+    public long percentile(double percent) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percent / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(bucketHighValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : sum.sum() / 1e6 / n;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentile(50) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentile(99) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return max.get() / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
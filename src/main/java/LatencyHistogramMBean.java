@@ -0,0 +1,24 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: LatencyHistogramMBean.java
+*/
+
+/**
+ * JMX view of one latency distribution.
+ */
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
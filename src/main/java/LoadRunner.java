@@ -0,0 +1,625 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: LoadRunner.java
+*/
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Headless load generator: N concurrent clients, one virtual thread and one connection each, run statements the
+ * way Project3GUI does (config files from config/, literals lifted by SqlFingerprint, reads through a server
+ * cursor's first page, writes through the statement cache, every statement counted in the operations log) and
+ * report throughput, latency percentiles and errors every few seconds.
+ * Statements come from a weighted query mix (built in for bikedb and project3, or a file of "weight SQL" lines
+ * whose SQL may contain {int:LO:HI} and {pick:a|b|c}) or from a recorded trace (a SQL script, or the JSON lines
+ * of the slow query log), which each client replays in order from its own starting point.
+ * With --embedded it runs against an in-memory H2 database in MySQL mode, seeded with both schemas; run it that
+ * way with "mvn -P loadtest verify -Dload.args=...".
+ */
+public class LoadRunner {
+    private static final String EMBEDDED_URL = "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(int|pick):([^}]*)}");
+
+    private static final String BIKEDB_MIX = """
+            40 SELECT * FROM bikes WHERE bikename = 'bike-{int:1:5000}'
+            15 SELECT make, COUNT(*), AVG(cost) FROM bikes GROUP BY make
+            15 SELECT bikename, cost FROM bikes WHERE make = '{pick:Trek|Giant|Specialized|Cannondale|Bianchi}' AND cost > {int:250:4000} ORDER BY cost
+            10 SELECT * FROM bikes WHERE bikeyear BETWEEN {int:1990:2005} AND {int:2005:2024}
+            15 UPDATE bikes SET cost = cost + 1 WHERE bikename = 'bike-{int:1:5000}'
+            5 UPDATE bikes SET color = '{pick:red|black|blue}' WHERE bikename = 'bike-{int:1:5000}'
+            """;
+
+    private static final String PROJECT3_MIX = """
+            30 SELECT * FROM suppliers WHERE snum = 'S{int:1:100}'
+            20 SELECT * FROM parts WHERE color = '{pick:red|blue|green|black|white}'
+            15 SELECT j.jname, SUM(s.quantity) FROM shipments s JOIN jobs j ON j.jnum = s.jnum GROUP BY j.jname
+            10 SELECT sname FROM suppliers WHERE snum IN (SELECT snum FROM shipments WHERE quantity > {int:100:900})
+            15 UPDATE shipments SET quantity = quantity + 1 WHERE snum = 'S{int:1:100}'
+            10 UPDATE jobs SET numworkers = numworkers + 1 WHERE jnum = 'J{int:1:50}'
+            """;
+
+    /**
+     * Supplies the statements a client runs.
+     */
+    private interface Workload {
+        String next(int client, long sequence, SplittableRandom random);
+    }
+
+    private record MixEntry(int weight, String template) {
+    }
+
+    // Options (see usage())
+    private String dbFile = "project3.properties";
+    private String userFile = "client1.properties";
+    private String opsFile = "operationslog.properties";
+    private boolean embedded;
+    private boolean logOperations = true;
+    private int clients = 50;
+    private int durationSeconds = 60;
+    private int reportSeconds = 5;
+    private int rampSeconds;
+    private long thinkMillis;
+    private int timeoutSeconds = 30;
+    private int seedRows = 5000;
+    private Path tracePath;
+    private String mixName;  // bikedb, project3 or a file; chosen from the database when null
+
+    private final StatementMetrics metrics = new StatementMetrics();
+    private final QueryExecutor executor = new QueryExecutor(metrics);
+    private final LongAdder activeClients = new LongAdder();
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+    private final LongAdder intervalErrors = new LongAdder();
+    private final Map<SqlLexer.Kind, LatencyHistogram> totals = new ConcurrentHashMap<>();
+    private final Map<SqlLexer.Kind, LongAdder> totalErrors = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errorMessages = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    private String url;
+    private String username;
+    private ConnectionPool pool;
+    private OperationsLogWriter operationsLog;
+    private Workload workload;
+
+    public static void main(String[] args) {
+        LoadRunner runner = new LoadRunner();
+        try {
+            runner.parse(args);
+            runner.setUp();
+        } catch (IllegalArgumentException | IOException | SQLException ex) {
+            System.err.println(ex.getMessage());
+            usage();
+            System.exit(2);
+        }
+        runner.run();
+        ConnectionPool.closeAll();
+    }
+
+    private static void usage() {
+        System.err.println("""
+                Usage: LoadRunner [options]
+                  --db FILE          DB properties in config/db (default project3.properties)
+                  --user FILE        User properties in config/user (default client1.properties)
+                  --ops FILE         Operations log properties in config/ops (default operationslog.properties)
+                  --embedded         Use an in-memory H2 database in MySQL mode instead of the configured server
+                  --seed N           Rows seeded into the embedded database (default 5000)
+                  --no-log           Do not count statements in the operations log
+                  --clients N        Concurrent clients (default 50)
+                  --duration S       Seconds to run (default 60)
+                  --ramp S           Seconds over which clients are started (default 0)
+                  --think MS         Pause after each statement, per client (default 0)
+                  --timeout S        Query timeout per statement (default 30)
+                  --report S         Seconds between report lines (default 5)
+                  --mix NAME|FILE    bikedb, project3, or a file of "weight SQL" lines
+                  --trace FILE       Replay a SQL script or a slow query log instead of a mix""");
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--embedded")) {
+                embedded = true;
+                continue;
+            } else if (option.equals("--no-log")) {
+                logOperations = false;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--db" -> dbFile = value;
+                    case "--user" -> userFile = value;
+                    case "--ops" -> opsFile = value;
+                    case "--seed" -> seedRows = Integer.parseInt(value);
+                    case "--clients" -> clients = Integer.parseInt(value);
+                    case "--duration" -> durationSeconds = Integer.parseInt(value);
+                    case "--ramp" -> rampSeconds = Integer.parseInt(value);
+                    case "--think" -> thinkMillis = Long.parseLong(value);
+                    case "--timeout" -> timeoutSeconds = Integer.parseInt(value);
+                    case "--report" -> reportSeconds = Math.max(1, Integer.parseInt(value));
+                    case "--mix" -> mixName = value;
+                    case "--trace" -> tracePath = Path.of(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+            }
+        }
+        if (clients < 1 || durationSeconds < 1) {
+            throw new IllegalArgumentException("--clients and --duration must be at least 1");
+        }
+    }
+
+    /**
+     * Resolves the database and credentials, seeds the embedded database, and loads the workload.
+     */
+    private void setUp() throws IOException, SQLException {
+        String password;
+        if (embedded) {
+            url = EMBEDDED_URL;
+            username = "sa";
+            password = "";
+            try (Connection conn = DriverManager.getConnection(url, username, password)) {
+                seed(conn, seedRows);
+            } catch (SQLException ex) {
+                throw new SQLException("Cannot open the embedded database (is H2 on the classpath? "
+                        + "Run with mvn -P loadtest): " + ex.getMessage(), ex);
+            }
+        } else {
+            ConfigRegistry.Settings dbProps = ConfigRegistry.shared().get(ConfigRegistry.DB, dbFile);
+            ConfigRegistry.Settings userProps = ConfigRegistry.shared().get(ConfigRegistry.USER, userFile);
+            if (dbProps == null || userProps == null) {
+                throw new IllegalArgumentException("Properties file not found: config/db/" + dbFile
+                        + " or config/user/" + userFile);
+            }
+            try {
+                Class.forName(dbProps.getProperty("driver", "com.mysql.cj.jdbc.Driver"));
+            } catch (ClassNotFoundException ex) {
+                throw new IllegalArgumentException("JDBC driver not found: " + ex.getMessage());
+            }
+            url = dbProps.getProperty("url", "jdbc:mysql://localhost:3306/project3");
+            username = userProps.getProperty("username", "");
+            password = userProps.getProperty("password", "");
+        }
+        pool = ConnectionPool.forCredentials(url, username, password);
+
+        if (logOperations) {
+            if (embedded) {
+                operationsLog = new OperationsLogWriter(url, username, password);
+            } else {
+                ConfigRegistry.Settings opProps = ConfigRegistry.shared().get(ConfigRegistry.OPS, opsFile);
+                if (opProps == null) {
+                    throw new IllegalArgumentException("Operations log properties not found: config/ops/" + opsFile);
+                }
+                operationsLog = new OperationsLogWriter(
+                        opProps.getProperty("url", "jdbc:mysql://localhost:3306/operationslog"),
+                        opProps.getProperty("username", "project3app"),
+                        opProps.getProperty("password", "project3app"));
+            }
+            operationsLog.setMetrics(metrics);
+        }
+
+        if (tracePath != null) {
+            workload = trace(tracePath);
+        } else {
+            String name = mixName != null ? mixName : url.contains("bikedb") || dbFile.contains("bikedb") ? "bikedb" : "project3";
+            workload = mix(switch (name) {
+                case "bikedb" -> BIKEDB_MIX;
+                case "project3" -> PROJECT3_MIX;
+                default -> Files.readString(Path.of(name), StandardCharsets.UTF_8);
+            });
+        }
+    }
+
+    /**
+     * Starts the clients, prints a report line every interval, and prints a summary at the end.
+     */
+    private void run() {
+        System.out.printf("%d clients for %d s against %s as %s%n", clients, durationSeconds, url, username);
+        System.out.printf("%7s %7s %9s %9s %9s %9s %9s %9s %8s%n",
+                "time", "clients", "ops", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors");
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            long delayMillis = rampSeconds * 1000L * i / clients;
+            threads.add(Thread.ofVirtual().name("load-client-" + i).start(() -> runClient(client, delayMillis)));
+        }
+
+        long end = start + durationSeconds * 1_000_000_000L;
+        long next = start;
+        while (System.nanoTime() < end) {
+            next += reportSeconds * 1_000_000_000L;
+            sleepMillis(Math.max(0, (Math.min(next, end) - System.nanoTime()) / 1_000_000));
+            report((System.nanoTime() - start) / 1e9, reportSeconds);
+        }
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (operationsLog != null) {
+            operationsLog.close(); // Flushes the last counts
+        }
+        executor.shutdown();
+        summarize((System.nanoTime() - start) / 1e9);
+    }
+
+    private void runClient(int client, long delayMillis) {
+        sleepMillis(delayMillis);
+        SplittableRandom random = new SplittableRandom(client);
+        Connection conn = null;
+        StatementCache statements = null;
+        activeClients.increment();
+        try {
+            for (long sequence = 0; running; sequence++) {
+                if (conn == null || conn.isClosed()) {
+                    // Each client has a session connection of its own, as separate GUI instances would
+                    try {
+                        conn = pool.openDedicated();
+                        statements = new StatementCache(conn, 64);
+                    } catch (SQLException ex) {
+                        conn = null;
+                        recordError(SqlLexer.Kind.OTHER, "connect: " + ex.getMessage());
+                        sleepMillis(1000);
+                        continue;
+                    }
+                }
+                String sql = workload.next(client, sequence, random);
+                execute(statements, sql);
+                if (thinkMillis > 0) {
+                    sleepMillis(thinkMillis);
+                } else {
+                    // An embedded database never blocks, so without this a client could keep its carrier thread
+                    Thread.yield();
+                }
+            }
+        } catch (SQLException ex) {
+            recordError(SqlLexer.Kind.OTHER, ex.getMessage());
+        } finally {
+            activeClients.decrement();
+            if (statements != null) {
+                statements.close();
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException ignored) {
+                    // Shutting down anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one statement as executeSQLCommand does and records its latency or error.
+     */
+    private void execute(StatementCache statements, String sql) {
+        SqlLexer.Kind kind = SqlLexer.classify(sql);
+        long start = System.nanoTime();
+        try {
+            executor.call(t -> {
+                if (kind == SqlLexer.Kind.READ) {
+                    CursorTableModel model = SqlFingerprint.execute(sql, fp -> CursorTableModel.open(statements, fp,
+                            timeoutSeconds, CursorTableModel.DEFAULT_HEAP_BUDGET_BYTES, t));
+                    model.close(); // The first page is what the user sees before scrolling
+                    model.awaitClosed();
+                    logOperation(SqlLexer.writes(sql) ? "update" : "query");
+                } else {
+                    SqlFingerprint.execute(sql, fp -> statements.executeUpdate(fp, timeoutSeconds, t));
+                    logOperation("update");
+                }
+                return null;
+            });
+        } catch (Exception ex) {
+            recordError(kind, ex.getMessage());
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        interval.get().record(nanos);
+        totals.computeIfAbsent(kind, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    private void logOperation(String operationType) {
+        if (operationsLog != null) {
+            long start = System.nanoTime();
+            operationsLog.record(username, operationType);
+            metrics.record(StatementMetrics.Phase.AUDIT, start);
+        }
+    }
+
+    private void recordError(SqlLexer.Kind kind, String message) {
+        intervalErrors.increment();
+        totalErrors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+        String key = message == null ? "(no message)" : message.replaceAll("\\s+", " ");
+        if (key.length() > 120) {
+            key = key.substring(0, 120);
+        }
+        errorMessages.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private void report(double elapsedSeconds, int seconds) {
+        LatencyHistogram h = interval.getAndSet(new LatencyHistogram());
+        long errors = intervalErrors.sumThenReset();
+        long ops = h.getCount();
+        System.out.printf("%6.0fs %7d %9d %9.1f %9.2f %9.2f %9.2f %9.2f %8s%n", elapsedSeconds, activeClients.sum(),
+                ops, ops / (double) seconds, h.getP50Millis(), h.percentile(95) / 1e6, h.getP99Millis(),
+                h.getMaxMillis(), errorRate(errors, ops));
+    }
+
+    private void summarize(double elapsedSeconds) {
+        System.out.println();
+        System.out.printf("%-12s %9s %9s %9s %9s %9s %9s %9s%n",
+                "kind", "ops", "ops/s", "mean ms", "p50 ms", "p99 ms", "max ms", "errors");
+        for (SqlLexer.Kind kind : SqlLexer.Kind.values()) {
+            LatencyHistogram h = totals.get(kind);
+            long errors = totalErrors.getOrDefault(kind, new LongAdder()).sum();
+            if (h == null && errors == 0) {
+                continue;
+            }
+            long ops = h == null ? 0 : h.getCount();
+            System.out.printf("%-12s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9s%n", kind.name().toLowerCase(), ops,
+                    ops / elapsedSeconds, h == null ? 0.0 : h.getMeanMillis(), h == null ? 0.0 : h.getP50Millis(),
+                    h == null ? 0.0 : h.getP99Millis(), h == null ? 0.0 : h.getMaxMillis(), errorRate(errors, ops));
+        }
+        if (!errorMessages.isEmpty()) {
+            System.out.println();
+            System.out.println("Most frequent errors:");
+            errorMessages.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                    .limit(5)
+                    .forEach(e -> System.out.printf("%9d  %s%n", e.getValue().sum(), e.getKey()));
+        }
+        System.out.println();
+        System.out.println(metrics.getSummary());
+        System.out.println("Pool " + pool.getStats());
+    }
+
+    private static String errorRate(long errors, long ops) {
+        return errors == 0 ? "0" : String.format("%d (%.1f%%)", errors, errors * 100.0 / (errors + ops));
+    }
+
+    private static void sleepMillis(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Weighted random choice among "weight SQL" lines (blank lines and # comments ignored), with placeholders
+     * filled in per execution.
+     */
+    private static Workload mix(String text) {
+        List<MixEntry> entries = new ArrayList<>();
+        int total = 0;
+        for (String line : text.split("\n")) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            try {
+                int weight = Integer.parseInt(line.substring(0, Math.max(space, 0)));
+                entries.add(new MixEntry(weight, line.substring(space + 1).strip()));
+                total += weight;
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Mix line must start with a weight: " + line);
+            }
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The query mix has no statements");
+        }
+        int totalWeight = total;
+        return (client, sequence, random) -> {
+            int pick = random.nextInt(totalWeight);
+            for (MixEntry entry : entries) {
+                pick -= entry.weight();
+                if (pick < 0) {
+                    return expand(entry.template(), random);
+                }
+            }
+            throw new IllegalStateException();
+        };
+    }
+
+    private static String expand(String template, SplittableRandom random) {
+        Matcher m = PLACEHOLDER.matcher(template);
+        if (!m.find()) {
+            return template;
+        }
+        StringBuilder sb = new StringBuilder();
+        do {
+            String value;
+            if (m.group(1).equals("int")) {
+                String[] range = m.group(2).split(":");
+                value = String.valueOf(random.nextInt(Integer.parseInt(range[0]), Integer.parseInt(range[1]) + 1));
+            } else {
+                String[] choices = m.group(2).split("\\|");
+                value = choices[random.nextInt(choices.length)];
+            }
+            m.appendReplacement(sb, Matcher.quoteReplacement(value));
+        } while (m.find());
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Statements of a recorded trace, replayed in order; client i starts i/N of the way through so the clients
+     * do not run the same statement in lockstep.
+     */
+    private Workload trace(Path path) throws IOException {
+        List<String> statements = new ArrayList<>();
+        String name = path.getFileName().toString();
+        if (name.endsWith(".log") || name.endsWith(".jsonl")) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String sql = jsonString(line, "sql");
+                if (sql != null) {
+                    statements.add(sql);
+                }
+            }
+        } else {
+            statements.addAll(SqlText.splitStatements(Files.readString(path, StandardCharsets.UTF_8)));
+        }
+        if (statements.isEmpty()) {
+            throw new IllegalArgumentException("No statements in " + path);
+        }
+        int n = statements.size();
+        return (client, sequence, random) -> statements.get((int) ((client * (long) n / clients + sequence) % n));
+    }
+
+    // Value of a string field in one JSON line (as written by SlowQueryLog), or null
+    private static String jsonString(String line, String key) {
+        int i = line.indexOf("\"" + key + "\":\"");
+        if (i < 0) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (i += key.length() + 4; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') {
+                return sb.toString();
+            }
+            if (ch == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                switch (next) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        sb.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    }
+                    default -> sb.append(next);
+                }
+            } else {
+                sb.append(ch);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the bikedb, project3 and operationslog tables in the embedded database, with generated rows.
+     */
+    private static void seed(Connection conn, int rows) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS bikes (bikename VARCHAR(40) PRIMARY KEY, make VARCHAR(20), "
+                    + "model VARCHAR(20), bikeyear INT, cost DECIMAL(10,2), color VARCHAR(15), purchased DATE)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS suppliers (snum VARCHAR(5) PRIMARY KEY, sname VARCHAR(20), "
+                    + "status INT, city VARCHAR(20))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS parts (pnum VARCHAR(5) PRIMARY KEY, pname VARCHAR(20), "
+                    + "color VARCHAR(10), weight INT, city VARCHAR(20))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS jobs (jnum VARCHAR(5) PRIMARY KEY, jname VARCHAR(20), "
+                    + "numworkers INT, city VARCHAR(20))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS shipments (snum VARCHAR(5), pnum VARCHAR(5), jnum VARCHAR(5), "
+                    + "quantity INT, PRIMARY KEY (snum, pnum, jnum))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS operationscount (login_username VARCHAR(25) PRIMARY KEY, "
+                    + "num_queries INT, num_updates INT)");
+        }
+        String[] makes = {"Trek", "Giant", "Specialized", "Cannondale", "Bianchi"};
+        String[] colors = {"red", "blue", "green", "black", "white"};
+        String[] cities = {"Orlando", "Tampa", "Miami", "Jacksonville"};
+        Map<String, Integer> counts = new HashMap<>();
+        insert(conn, "INSERT INTO bikes VALUES (?, ?, ?, ?, ?, ?, ?)", rows, (p, i) -> {
+            p.setString(1, "bike-" + i);
+            p.setString(2, makes[i % makes.length]);
+            p.setString(3, "model-" + i % 40);
+            p.setInt(4, 1990 + i % 35);
+            p.setBigDecimal(5, BigDecimal.valueOf(25_099 + (i % 4000) * 100L, 2));
+            p.setString(6, i % 3 == 2 ? null : colors[i % 3 == 0 ? 0 : 3]);
+            p.setDate(7, Date.valueOf(LocalDate.of(2000, 1, 1).plusDays(i % 9000)));
+        }, counts);
+        insert(conn, "INSERT INTO suppliers VALUES (?, ?, ?, ?)", 100, (p, i) -> {
+            p.setString(1, "S" + i);
+            p.setString(2, "supplier-" + i);
+            p.setInt(3, 10 * (i % 5));
+            p.setString(4, cities[i % cities.length]);
+        }, counts);
+        insert(conn, "INSERT INTO parts VALUES (?, ?, ?, ?, ?)", 200, (p, i) -> {
+            p.setString(1, "P" + i);
+            p.setString(2, "part-" + i);
+            p.setString(3, colors[i % colors.length]);
+            p.setInt(4, 5 + i % 50);
+            p.setString(5, cities[i % cities.length]);
+        }, counts);
+        insert(conn, "INSERT INTO jobs VALUES (?, ?, ?, ?)", 50, (p, i) -> {
+            p.setString(1, "J" + i);
+            p.setString(2, "job-" + i);
+            p.setInt(3, 1 + i % 20);
+            p.setString(4, cities[i % cities.length]);
+        }, counts);
+        // (supplier, part, job) repeats after 10,000 rows
+        insert(conn, "INSERT INTO shipments VALUES (?, ?, ?, ?)", Math.min(rows, 10_000), (p, i) -> {
+            p.setString(1, "S" + (1 + i % 100));
+            p.setString(2, "P" + (1 + i % 200));
+            p.setString(3, "J" + (1 + (i / 200) % 50));
+            p.setInt(4, 1 + (i * 37) % 1000);
+        }, counts);
+        System.out.println("Seeded embedded database: " + counts);
+    }
+
+    private interface RowFiller {
+        void fill(PreparedStatement pstmt, int i) throws SQLException;
+    }
+
+    // Inserts rows 1..n unless the table already has rows (MERGE-free, so it also runs on MySQL)
+    private static void insert(Connection conn, String sql, int n, RowFiller filler, Map<String, Integer> counts)
+            throws SQLException {
+        String table = sql.split("\\s+")[2];
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            if (rs.getInt(1) > 0) {
+                counts.put(table, rs.getInt(1));
+                return;
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= n; i++) {
+                filler.fill(pstmt, i);
+                pstmt.addBatch();
+                if (i % 1000 == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+        counts.put(table, n);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: MetricsPanel.java
+*/
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+
+/**
+ * Collapsible view of a session's StatementMetrics: one row per phase with count, p50, p99 and max,
+ * plus fetch throughput. Refreshes once a second while expanded.
+ */
+public class MetricsPanel extends JPanel {
+    private static final String[] COLUMNS = {"Phase", "Count", "p50 (ms)", "p99 (ms)", "Max (ms)"};
+
+    private final StatementMetrics metrics;
+    private final JToggleButton toggleButton = new JToggleButton("Metrics");
+    private final DefaultTableModel tableModel = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JLabel throughputLabel = new JLabel(" ");
+    private final JPanel details = new JPanel(new BorderLayout());
+    private final Timer refreshTimer = new Timer(1000, e -> refresh());
+
+    public MetricsPanel(StatementMetrics metrics) {
+        super(new BorderLayout());
+        this.metrics = metrics;
+
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(420, table.getRowHeight() * (StatementMetrics.Phase.values().length + 1) + 6));
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refresh();
+        });
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.add(throughputLabel, BorderLayout.CENTER);
+        footer.add(resetButton, BorderLayout.EAST);
+        details.add(scrollPane, BorderLayout.CENTER);
+        details.add(footer, BorderLayout.SOUTH);
+        details.setVisible(false);
+
+        toggleButton.addActionListener(e -> setExpanded(toggleButton.isSelected()));
+        JPanel header = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        header.add(toggleButton);
+        add(header, BorderLayout.NORTH);
+        add(details, BorderLayout.CENTER);
+    }
+
+    private void setExpanded(boolean expanded) {
+        details.setVisible(expanded);
+        if (expanded) {
+            refresh();
+            refreshTimer.start();
+        } else {
+            refreshTimer.stop();
+        }
+        revalidate();
+    }
+
+    private void refresh() {
+        tableModel.setRowCount(0);
+        for (StatementMetrics.Phase phase : StatementMetrics.Phase.values()) {
+            LatencyHistogram h = metrics.histogram(phase);
+            tableModel.addRow(new Object[]{phase.getLabel(), h.getCount(), format(h.getP50Millis()),
+                    format(h.getP99Millis()), format(h.getMaxMillis())});
+        }
+        throughputLabel.setText(String.format("Fetched %,d rows, %.1f MB, %,.0f rows/s",
+                metrics.getRowsFetched(), metrics.getBytesFetched() / (1024.0 * 1024.0), metrics.getRowsPerSecond()));
+    }
+
+    private static String format(double millis) {
+        return String.format("%.2f", millis);
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: OperationsJournal.java
+*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Local append-only journal of audit-log operations, so counts survive a slow or unreachable operationslog
+ * database and a restart. Appending is a few puts into a memory-mapped segment file under a short lock; the
+ * journal is drained to operationscount in bulk by OperationsLogWriter's flusher.
+ * <p>
+ * Segment files (segment-N.journal, 4 MB) start with a header (magic, version, and the first segment id the file
+ * covers) followed by records: payload length, CRC32C of the payload, then the payload (count, operation type,
+ * user name). The length is written last, so a record torn by a crash fails its checksum or reads as the end of
+ * the segment. A checkpoint file holds the position up to which records have reached the database; drained
+ * segments are deleted. While the database stays down, sealed segments are compacted into one segment holding a
+ * single record per user and type; its header marks the segments it replaces, so a crash halfway through a
+ * compaction never counts an operation twice.
+ * <p>
+ * Each running application locks a journal directory of its own (journal-0, journal-1, ... per operations
+ * database and user); a directory left behind by a process that died is picked up by the next one to start.
+ * Delivery is at least once: a crash between a database commit and the checkpoint write replays that batch.
+ */
+public final class OperationsJournal implements AutoCloseable {
+    public static final Path DEFAULT_ROOT = Path.of("logs", "operations-journal");
+    private static final int SEGMENT_BYTES = 4 << 20;
+    private static final int HEADER_BYTES = 16;
+    private static final int MAGIC = 0x4F50534A; // "OPSJ"
+    private static final int VERSION = 1;
+    private static final int MAX_DIRECTORIES = 8;
+    private static final int COMPACT_AFTER_SEGMENTS = 4;
+    private static final int MAX_USER_BYTES = 255;
+
+    /**
+     * Receives drained counts: user -> {queries, updates}. Throws if they could not be stored.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void write(Map<String, long[]> deltas) throws SQLException;
+    }
+
+    // Position in the journal: segment id and byte offset within it
+    private record Position(long segment, int offset) {
+    }
+
+    private final Path dir;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final CRC32C appendCrc = new CRC32C();  // Used under the lock by append()
+    private final CRC32C drainCrc = new CRC32C();   // Used by the draining thread
+    private MappedByteBuffer active;   // Segment being appended to
+    private long activeId;
+    private int writeOffset;
+    private Position checkpoint;       // Only touched by the draining thread
+    private boolean closed;
+
+    private OperationsJournal(Path dir, FileChannel lockChannel, FileLock lock) {
+        this.dir = dir;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Opens the first journal directory for the database and user that no other process has locked,
+     * and starts a new segment after any it already holds.
+     */
+    public static OperationsJournal open(Path root, String url, String user) throws IOException {
+        String name = (url + "_" + user).replaceAll("[^A-Za-z0-9]+", "_");
+        if (name.length() > 80) {
+            name = name.substring(name.length() - 80);
+        }
+        for (int i = 0; i < MAX_DIRECTORIES; i++) {
+            Path dir = root.resolve(name).resolve("journal-" + i);
+            Files.createDirectories(dir);
+            FileChannel channel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                lock = null; // Held by another journal in this process
+            }
+            if (lock == null) {
+                channel.close();
+                continue;
+            }
+            OperationsJournal journal = new OperationsJournal(dir, channel, lock);
+            try {
+                journal.checkpoint = journal.readCheckpoint();
+                List<Long> ids = journal.segmentIds();
+                journal.startSegment(ids.isEmpty() ? 0 : ids.get(ids.size() - 1) + 1, -1);
+            } catch (IOException ex) {
+                journal.close();
+                throw ex;
+            }
+            return journal;
+        }
+        throw new IOException("All " + MAX_DIRECTORIES + " operations journals under " + root + " are in use");
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Appends one record of count operations by the user (a query when update is false).
+     */
+    public synchronized void append(String user, boolean update, long count) throws IOException {
+        if (closed) {
+            throw new IOException("Operations journal is closed");
+        }
+        byte[] name = user.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_USER_BYTES) {
+            throw new IOException("User name too long for the journal: " + user);
+        }
+        int payload = Long.BYTES + 1 + 1 + name.length;
+        if (writeOffset + 8 + payload + 4 > SEGMENT_BYTES) {
+            startSegment(activeId + 1, -1);
+        }
+        int start = writeOffset;
+        ByteBuffer buf = active.duplicate();
+        buf.position(start + 8);
+        buf.putLong(count).put((byte) (update ? 1 : 0)).put((byte) name.length).put(name);
+        appendCrc.reset();
+        appendCrc.update(active.slice(start + 8, payload));
+        active.putInt(start + 4, (int) appendCrc.getValue());
+        active.putInt(start, payload); // Last: the record exists once its length is in place
+        writeOffset = start + 8 + payload;
+    }
+
+    /**
+     * Sends every record appended so far, summed per user, to the sink in one call and moves the checkpoint past
+     * them. Returns the number of operations drained; if the sink throws, nothing is drained.
+     */
+    public long drain(Sink sink) throws IOException, SQLException {
+        Position end;
+        MappedByteBuffer tail;
+        synchronized (this) {
+            end = new Position(activeId, writeOffset);
+            tail = active;
+        }
+        if (end.equals(checkpoint)) {
+            return 0;
+        }
+        tail.force(); // Records so far survive an OS crash too
+        Map<String, long[]> deltas = new LinkedHashMap<>();
+        long operations = read(end, tail, deltas);
+        if (!deltas.isEmpty()) {
+            sink.write(deltas);
+        }
+        writeCheckpoint(end);
+        // Segments before the checkpoint are fully drained (or were replaced by a compacted one)
+        for (long id : allSegmentIds()) {
+            if (id < end.segment()) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Replaces the undrained sealed segments with one holding a record per user and type, once there are enough
+     * of them. Called while the database cannot be reached, so the journal grows by users, not by operations.
+     */
+    public void compactIfNeeded() throws IOException {
+        long sealedEnd;
+        synchronized (this) {
+            sealedEnd = activeId; // Segments below the active one are no longer written
+        }
+        List<Long> sealed = new ArrayList<>();
+        for (long id : segmentIds()) {
+            if (id >= checkpoint.segment() && id < sealedEnd) {
+                sealed.add(id);
+            }
+        }
+        if (sealed.size() < COMPACT_AFTER_SEGMENTS) {
+            return;
+        }
+        long last = sealed.get(sealed.size() - 1);
+        Map<String, long[]> deltas = new LinkedHashMap<>();
+        read(new Position(last + 1, HEADER_BYTES), null, deltas);
+
+        // Write the compacted segment aside, then swap it in for the last sealed one in one atomic rename
+        Path temp = dir.resolve("segment-" + last + ".compacting");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+            writeHeader(out, sealed.get(0));
+            int offset = HEADER_BYTES;
+            for (Map.Entry<String, long[]> entry : deltas.entrySet()) {
+                for (int type = 0; type < 2; type++) {
+                    if (entry.getValue()[type] != 0) {
+                        offset = writeRecord(out, offset, entry.getKey(), type == 1, entry.getValue()[type]);
+                    }
+                }
+            }
+            out.force();
+        }
+        Files.move(temp, segmentPath(last), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        writeCheckpoint(new Position(last, HEADER_BYTES));
+        for (long id : sealed) {
+            if (id < last) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+        }
+        System.err.println("Compacted " + sealed.size() + " operations journal segments into " + deltas.size() + " users");
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (active != null) {
+            active.force();
+        }
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException ex) {
+            System.err.println("Failed to release the operations journal lock: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Sums the records from the checkpoint up to end into deltas; tail is the mapping of the active segment
+     * (null when end lies past every segment read). Returns the number of operations read.
+     */
+    private long read(Position end, MappedByteBuffer tail, Map<String, long[]> deltas) throws IOException {
+        Position from = effectiveCheckpoint();
+        long operations = 0;
+        for (long id : segmentIds()) {
+            if (id < from.segment() || id > end.segment()) {
+                continue;
+            }
+            ByteBuffer segment = id == end.segment() && tail != null ? tail.duplicate() : mapForReading(id);
+            int offset = id == from.segment() ? from.offset() : HEADER_BYTES;
+            int limit = id == end.segment() ? end.offset() : segment.capacity();
+            while (offset + 8 <= limit) {
+                int payload = segment.getInt(offset);
+                if (payload < 10 || offset + 8 + payload > limit) {
+                    break; // End of the segment, or a record torn by a crash
+                }
+                drainCrc.reset();
+                drainCrc.update(segment.slice(offset + 8, payload));
+                if ((int) drainCrc.getValue() != segment.getInt(offset + 4)) {
+                    System.err.println("Operations journal record at " + segmentPath(id) + ":" + offset
+                            + " fails its checksum; the rest of the segment is skipped");
+                    break;
+                }
+                long count = segment.getLong(offset + 8);
+                boolean update = segment.get(offset + 16) == 1;
+                byte[] name = new byte[segment.get(offset + 17) & 0xFF];
+                segment.get(offset + 18, name);
+                deltas.computeIfAbsent(new String(name, StandardCharsets.UTF_8), k -> new long[2])[update ? 1 : 0] += count;
+                operations += count;
+                offset += 8 + payload;
+            }
+        }
+        return operations;
+    }
+
+    // The checkpoint, moved forward to the start of a compacted segment that replaced the one it points into
+    private Position effectiveCheckpoint() throws IOException {
+        Position from = checkpoint;
+        for (long id : segmentIds()) {
+            if (id > from.segment() && coversFrom(id) <= from.segment()) {
+                from = new Position(id, HEADER_BYTES);
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Ids of the segment files in order, leaving out segments replaced by a compacted one.
+     */
+    private List<Long> segmentIds() throws IOException {
+        List<Long> live = new ArrayList<>();
+        for (long id : allSegmentIds()) {
+            long from = coversFrom(id);
+            live.removeIf(earlier -> earlier >= from);
+            live.add(id);
+        }
+        return live;
+    }
+
+    private List<Long> allSegmentIds() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "segment-*.journal")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                ids.add(Long.parseLong(name.substring(8, name.length() - 8)));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private long coversFrom(long id) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+        return header.getInt(0) == MAGIC ? header.getLong(8) : id;
+    }
+
+    private ByteBuffer mapForReading(long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), SEGMENT_BYTES));
+        }
+    }
+
+    private void startSegment(long id, long coversFrom) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+            writeHeader(segment, coversFrom < 0 ? id : coversFrom);
+            if (active != null) {
+                active.force();
+            }
+            active = segment;
+            activeId = id;
+            writeOffset = HEADER_BYTES;
+        }
+    }
+
+    private static void writeHeader(MappedByteBuffer segment, long coversFrom) {
+        segment.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, coversFrom);
+    }
+
+    private int writeRecord(MappedByteBuffer out, int offset, String user, boolean update, long count) {
+        byte[] name = user.getBytes(StandardCharsets.UTF_8);
+        int payload = Long.BYTES + 1 + 1 + name.length;
+        out.putLong(offset + 8, count).put(offset + 16, (byte) (update ? 1 : 0)).put(offset + 17, (byte) name.length)
+                .put(offset + 18, name);
+        drainCrc.reset();
+        drainCrc.update(out.slice(offset + 8, payload));
+        out.putInt(offset + 4, (int) drainCrc.getValue());
+        out.putInt(offset, payload);
+        return offset + 8 + payload;
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve("segment-" + id + ".journal");
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path file = dir.resolve("checkpoint");
+        if (Files.exists(file)) {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buf.remaining() == 16) {
+                long segment = buf.getLong(0);
+                int offset = buf.getInt(8);
+                drainCrc.reset();
+                drainCrc.update(buf.array(), 0, 12);
+                if ((int) drainCrc.getValue() == buf.getInt(12)) {
+                    return new Position(segment, offset);
+                }
+            }
+            System.err.println("Ignoring a damaged operations journal checkpoint in " + dir);
+        }
+        return new Position(0, HEADER_BYTES);
+    }
+
+    // Written aside and renamed into place, so the checkpoint is always either the old one or the new one
+    private void writeCheckpoint(Position position) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(16).putLong(0, position.segment()).putInt(8, position.offset());
+        drainCrc.reset();
+        drainCrc.update(buf.array(), 0, 12);
+        buf.putInt(12, (int) drainCrc.getValue());
+        Path temp = dir.resolve("checkpoint.tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            channel.write(buf);
+            channel.force(true);
+        }
+        Files.move(temp, dir.resolve("checkpoint"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        checkpoint = position;
+    }
+}
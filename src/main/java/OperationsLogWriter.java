@@ -0,0 +1,239 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: OperationsLogWriter.java
+*/
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates operation counts and writes them to the operationscount table in the background.
+ * Counts are coalesced per user and flushed as one batched upsert when enough operations are pending,
+ * on a fixed interval, and on shutdown. Operations by "theaccountant" are not logged.
+ * Each operation is first appended to a local OperationsJournal, so counts pending while the database is slow or
+ * down survive a restart; only if the journal cannot be opened are they kept in memory alone.
+ */
+public class OperationsLogWriter implements AutoCloseable {
+    private static final int FLUSH_THRESHOLD = 100;          // Pending in-memory operations that trigger an early flush
+    private static final long FLUSH_INTERVAL_MILLIS = 2_000;
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO operationscount (login_username, num_queries, num_updates) VALUES (?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE num_queries = num_queries + ?, num_updates = num_updates + ?";
+
+    private final ConnectionPool pool;
+    private final OperationsJournal journal;  // null: counts are kept in memory only
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private final LongAdder pending = new LongAdder();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "operations-log-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile StatementMetrics metrics;
+    private final Thread shutdownHook = new Thread(this::flush, "operations-log-shutdown-flush");
+
+    /**
+     * Per-user counters. The adders are never reset; the flusher remembers how much it has already
+     * written, so concurrent increments are never lost between a read and a reset.
+     */
+    private static class Counters {
+        final LongAdder queries = new LongAdder();
+        final LongAdder updates = new LongAdder();
+        long flushedQueries;  // Only touched by the flushing thread
+        long flushedUpdates;
+    }
+
+    public OperationsLogWriter(String url, String username, String password) {
+        this(url, username, password, OperationsJournal.DEFAULT_ROOT);
+    }
+
+    /**
+     * Journals operations under journalRoot before they reach the database (null to keep them in memory only).
+     */
+    public OperationsLogWriter(String url, String username, String password, Path journalRoot) {
+        journal = journalRoot == null ? null : openJournal(journalRoot, url, username);
+        pool = ConnectionPool.forCredentials(url, username, password);
+        pool.prewarm(1);
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Times each flush under the audit-flush phase of the given metrics.
+     */
+    public void setMetrics(StatementMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Records one operation. operationType is "query" for SELECTs and "update" for everything else.
+     */
+    public void record(String loginUsername, String operationType) {
+        record(loginUsername, operationType, 1);
+    }
+
+    /**
+     * Records count operations of the same type. Never blocks on the database.
+     */
+    public void record(String loginUsername, String operationType, long count) {
+        if (count <= 0 || loginUsername.equalsIgnoreCase("theaccountant")
+                || loginUsername.equalsIgnoreCase("theaccountant@localhost")) {
+            return;
+        }
+        // Append "@localhost" if it's not already included
+        if (!loginUsername.contains("@")) {
+            loginUsername = loginUsername + "@localhost";
+        }
+        boolean update = operationType.equalsIgnoreCase("update");
+        if (!update && !operationType.equalsIgnoreCase("query")) {
+            return;
+        }
+        if (!appendToJournal(loginUsername, update, count)) {
+            Counters c = counters.computeIfAbsent(loginUsername, k -> new Counters());
+            (update ? c.updates : c.queries).add(count);
+        }
+        pending.add(count);
+        // Journaled counts are already safe on disk; only in-memory ones are worth an early flush
+        if (journal == null && pending.sum() >= FLUSH_THRESHOLD && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Writes all pending counts as one batched upsert. Counts that fail to write stay pending
+     * and are retried on the next flush.
+     */
+    public synchronized void flush() {
+        flushScheduled.set(false);
+        flushJournal();
+        Map<String, long[]> deltas = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            Counters c = entry.getValue();
+            long queries = c.queries.sum() - c.flushedQueries;
+            long updates = c.updates.sum() - c.flushedUpdates;
+            if (queries != 0 || updates != 0) {
+                deltas.put(entry.getKey(), new long[]{queries, updates});
+                total += queries + updates;
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            upsert(deltas);
+        } catch (SQLException ex) {
+            System.err.println("Error logging operations (will retry): " + ex.getMessage());
+            return;
+        }
+        deltas.forEach((user, d) -> {
+            Counters c = counters.get(user);
+            c.flushedQueries += d[0];
+            c.flushedUpdates += d[1];
+        });
+        pending.add(-total);
+    }
+
+    /**
+     * Drains the journal into operationscount. While the database is unreachable the records stay in the
+     * journal (compacted once they pile up) and are retried on the next flush.
+     */
+    private void flushJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            long drained = journal.drain(this::upsert);
+            // Records left over from an earlier run were never counted as pending
+            pending.add(-Math.min(drained, Math.max(0, pending.sum())));
+        } catch (SQLException ex) {
+            System.err.println("Error logging operations (kept in the journal): " + ex.getMessage());
+            try {
+                journal.compactIfNeeded();
+            } catch (IOException ioe) {
+                System.err.println("Failed to compact the operations journal: " + ioe.getMessage());
+            }
+        } catch (IOException ex) {
+            System.err.println("Failed to read the operations journal: " + ex.getMessage());
+        }
+    }
+
+    // One batched upsert of user -> {queries, updates}
+    private void upsert(Map<String, long[]> deltas) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection opConn = pool.borrow();
+             PreparedStatement pstmt = opConn.prepareStatement(UPSERT_SQL)) {
+            for (Map.Entry<String, long[]> entry : deltas.entrySet()) {
+                long[] d = entry.getValue();
+                pstmt.setString(1, entry.getKey());
+                pstmt.setLong(2, d[0]);
+                pstmt.setLong(3, d[1]);
+                pstmt.setLong(4, d[0]);
+                pstmt.setLong(5, d[1]);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        StatementMetrics m = metrics;
+        if (m != null) {
+            m.record(StatementMetrics.Phase.AUDIT_FLUSH, start);
+        }
+    }
+
+    // False if there is no journal or the append failed (the caller then counts in memory)
+    private boolean appendToJournal(String user, boolean update, long count) {
+        if (journal == null) {
+            return false;
+        }
+        try {
+            journal.append(user, update, count);
+            return true;
+        } catch (IOException ex) {
+            System.err.println("Failed to journal an operation (kept in memory): " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private static OperationsJournal openJournal(Path root, String url, String username) {
+        try {
+            return OperationsJournal.open(root, url, username);
+        } catch (IOException ex) {
+            System.err.println("Operations journal unavailable, counts are kept in memory only: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Flushes whatever is pending and stops the background flusher.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+        if (journal != null) {
+            journal.close();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // Already shutting down; the hook will run its own flush
+        }
+    }
+}
@@ -7,16 +7,34 @@
 */
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.prefs.Preferences;
 
 public class Project3GUI extends JFrame implements ActionListener {
+    private static final int EXPORT_PARTITIONS = 4; // Parallel key ranges (and pooled connections) per table export
+
+    // DB and user properties files of the last successful Connect, preselected and primed on the next start
+    private static final Preferences PREFERENCES = Preferences.userRoot().node("two-tier-sql/project3");
+    private static final String LAST_DB = "lastDbProperties";
+    private static final String LAST_USER = "lastUserProperties";
+
     // Connection Panel components
     private final JTextField usernameField;
     private final JPasswordField passwordField;
@@ -29,10 +47,24 @@ public class Project3GUI extends JFrame implements ActionListener {
     private final JTextArea sqlCommandArea;
     private final JButton executeButton;
     private final JButton clearButton;
+    private final JButton cancelButton;
+    private final JButton importButton;
+    private final JButton exportButton;
+    private final JButton fanOutButton;  // Runs the SELECT on several databases at once
+    private final JButton slowQueriesButton; // Shows the top slow queries
+    private final JButton saveSnapshotButton; // Saves the result shown to a snapshot file
+    private final JButton openSnapshotButton; // Shows a saved snapshot, no connection needed
+    private final JSpinner timeoutSpinner; // Per-statement query timeout in seconds
+    private final JCheckBox scriptModeCheckBox; // Execute the command area as a multi-statement script
+    private final JSpinner commitChunkSpinner;  // Statements per commit in script mode
+    private final JLabel statusLabel;      // Elapsed time / rows fetched for the running statement
 
     // Results Panel components (spreadsheet-style JTable)
     private final JTable resultTable;
     private final JScrollPane resultScrollPane;
+    private final JTextField filterField;  // Client-side filter over the rows shown
+    private final JLabel viewInfoLabel;    // Rows shown / sort time
+    private ResultRowSorter resultSorter;
     private final JButton exitButton; // Exit button
 
     // Panel for connection info (above results)
@@ -47,6 +79,51 @@ public class Project3GUI extends JFrame implements ActionListener {
     // Store the current logged-in user (from the properties file) for logging operations
     private String currentLoggedInUser;
 
+    // URL of the database the session is connected to (part of the result cache key)
+    private String currentUrl;
+
+    // Pool the session connection came from; bulk imports borrow their worker connections from it
+    private ConnectionPool currentPool;
+
+    // Table and column names of the connected database for completion in the command area (null if not connected)
+    private SchemaCache schemaCache;
+
+    // Per-phase latency histograms and fetch throughput, shown in the metrics panel and over JMX
+    private final StatementMetrics metrics = new StatementMetrics();
+
+    // Background execution of SQL statements (keeps the EDT responsive)
+    private final QueryExecutor queryExecutor = new QueryExecutor(metrics);
+    private QueryExecutor.QueryTask runningTask;
+    private final Timer progressTimer;
+
+    // Model currently shown in resultTable if it is streaming from a server cursor (null otherwise)
+    private CursorTableModel cursorModel;
+
+    // SQL of the result shown in resultTable (null if unknown), saved with a snapshot
+    private String resultSql;
+
+    // Prepared statements reused across executions on the session connection
+    private StatementCache statementCache;
+
+    // Sends reads to read replicas when the DB properties declare any (everything else uses c)
+    private ReplicaRouter.Session readRouting;
+
+    // Heap allowed for a streamed result before its pages spill to disk (results.heapBudgetMB in the DB properties)
+    private long resultHeapBudget = CursorTableModel.DEFAULT_HEAP_BUDGET_BYTES;
+
+    // A streamed result together with where it was read from
+    private record RoutedRead(CursorTableModel model, ReplicaRouter.Route route) {
+    }
+
+    // Client-side cache of complete SELECT results (64 MB budget, 5 minute TTL)
+    private final ResultCache resultCache = new ResultCache(64L * 1024 * 1024, 5 * 60 * 1000L);
+
+    // Statements slower than slowQuery.thresholdMillis (DB properties), grouped by shape with their EXPLAIN plans
+    private final SlowQueryLog slowQueries = new SlowQueryLog(SlowQueryLog.DEFAULT_FILE);
+
+    // Coalescing writer for the operationscount audit log (null if not configured)
+    private final OperationsLogWriter operationsLog;
+
     public Project3GUI() {
         // Updated window title
         setTitle("Project 3 - Two-Tier Client Application");
@@ -79,6 +156,9 @@ public class Project3GUI extends JFrame implements ActionListener {
         gbc.gridx = 3;
         userPropertiesCombo = new JComboBox<>();
         populateUserPropertiesDropdown();
+        dbPropertiesCombo.setSelectedItem(PREFERENCES.get(LAST_DB, null));
+        userPropertiesCombo.setSelectedItem(PREFERENCES.get(LAST_USER, null));
+        ConfigRegistry.shared().addListener(this::configChanged);
         connectionPanel.add(userPropertiesCombo, gbc);
 
         // Row 2: Credentials
@@ -120,6 +200,7 @@ public class Project3GUI extends JFrame implements ActionListener {
         sqlCommandArea.setLineWrap(true);
         sqlCommandArea.setWrapStyleWord(true);
         commandPanel.add(new JScrollPane(sqlCommandArea), BorderLayout.CENTER);
+        SqlCompletion.install(sqlCommandArea, () -> schemaCache);
 
         JPanel cmdButtonPanel = new JPanel();
         executeButton = new JButton("Execute");
@@ -128,8 +209,47 @@ public class Project3GUI extends JFrame implements ActionListener {
         clearButton = new JButton("Clear");
         clearButton.addActionListener(this);
         cmdButtonPanel.add(clearButton);
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(this);
+        cancelButton.setEnabled(false);
+        cmdButtonPanel.add(cancelButton);
+        importButton = new JButton("Import CSV");
+        importButton.addActionListener(this);
+        cmdButtonPanel.add(importButton);
+        exportButton = new JButton("Export");
+        exportButton.addActionListener(this);
+        cmdButtonPanel.add(exportButton);
+        fanOutButton = new JButton("Fan-out");
+        fanOutButton.addActionListener(this);
+        cmdButtonPanel.add(fanOutButton);
+        slowQueriesButton = new JButton("Slow Queries");
+        slowQueriesButton.addActionListener(this);
+        cmdButtonPanel.add(slowQueriesButton);
+        saveSnapshotButton = new JButton("Save Snapshot");
+        saveSnapshotButton.addActionListener(this);
+        cmdButtonPanel.add(saveSnapshotButton);
+        openSnapshotButton = new JButton("Open Snapshot");
+        openSnapshotButton.addActionListener(this);
+        cmdButtonPanel.add(openSnapshotButton);
+        cmdButtonPanel.add(new JLabel("Timeout (s):"));
+        timeoutSpinner = new JSpinner(new SpinnerNumberModel(60, 0, 3600, 5));
+        cmdButtonPanel.add(timeoutSpinner);
+        scriptModeCheckBox = new JCheckBox("Script");
+        cmdButtonPanel.add(scriptModeCheckBox);
+        cmdButtonPanel.add(new JLabel("Commit every:"));
+        commitChunkSpinner = new JSpinner(new SpinnerNumberModel(1000, 1, 100000, 100));
+        cmdButtonPanel.add(commitChunkSpinner);
+        statusLabel = new JLabel(" ");
+        cmdButtonPanel.add(statusLabel);
         commandPanel.add(cmdButtonPanel, BorderLayout.SOUTH);
 
+        // Refreshes the elapsed time / rows fetched while a statement is running
+        progressTimer = new Timer(200, e -> {
+            if (runningTask != null) {
+                statusLabel.setText(runningTask.describeProgress());
+            }
+        });
+
         add(commandPanel, BorderLayout.CENTER);
 
         // Build Results Panel with Exit Button (in the south)
@@ -146,15 +266,45 @@ public class Project3GUI extends JFrame implements ActionListener {
         resultScrollPane = new JScrollPane(resultTable);
         resultsContainer.add(resultScrollPane, BorderLayout.CENTER);
 
+        // Filter box: narrows the rows on the client as you type; click a header to sort
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Filter:"));
+        filterField = new JTextField(20);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+        filterPanel.add(filterField);
+        viewInfoLabel = new JLabel(" ");
+        filterPanel.add(viewInfoLabel);
+        resultsContainer.add(filterPanel, BorderLayout.NORTH);
+
         // Create a panel for connection info (above results)
         JPanel connectionInfoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         connectionInfoLabel = new JLabel("Not connected");
         connectionInfoPanel.add(new JLabel("Current Connection URL: "));
         connectionInfoPanel.add(connectionInfoLabel);
 
+        // Connection info with the collapsible metrics panel beside it
+        JPanel infoRow = new JPanel(new BorderLayout());
+        infoRow.add(connectionInfoPanel, BorderLayout.CENTER);
+        infoRow.add(new MetricsPanel(metrics), BorderLayout.EAST);
+
         // Bottom panel to hold connection info, results panel, and exit button.
         JPanel bottomPanel = new JPanel(new BorderLayout());
-        bottomPanel.add(connectionInfoPanel, BorderLayout.NORTH);
+        bottomPanel.add(infoRow, BorderLayout.NORTH);
         bottomPanel.add(resultsContainer, BorderLayout.CENTER);
 
         exitButton = new JButton("Exit");
@@ -165,7 +315,16 @@ public class Project3GUI extends JFrame implements ActionListener {
 
         add(bottomPanel, BorderLayout.SOUTH);
 
+        // Operation counts are written to the operations log in the background
+        operationsLog = createOperationsLogWriter();
+        if (operationsLog != null) {
+            operationsLog.setMetrics(metrics);
+        }
+        // Loading JMX takes hundreds of milliseconds on a cold start; the window need not wait for it
+        Thread.ofVirtual().name("register-mbeans").start(() -> metrics.registerMBeans("Project3GUI"));
+
         setVisible(true);
+        StartupWarmup.milestone("window shown");
     }
 
     /**
@@ -181,45 +340,41 @@ public class Project3GUI extends JFrame implements ActionListener {
      * Populates the database properties dropdown from the "config/db" folder.
      */
     private void populateDBPropertiesDropdown() {
-        File dbConfigDir = new File("config/db");
-        if (dbConfigDir.exists() && dbConfigDir.isDirectory()) {
-            File[] files = dbConfigDir.listFiles((dir, name) -> name.endsWith(".properties"));
-            if (files != null && files.length > 0) {
-                for (File file : files) {
-                    dbPropertiesCombo.addItem(file.getName());
-                }
-            } else {
-                dbPropertiesCombo.addItem("project3.properties");
-                dbPropertiesCombo.addItem("bikedb.properties");
-            }
-        } else {
-            dbPropertiesCombo.addItem("project3.properties");
-            dbPropertiesCombo.addItem("bikedb.properties");
-        }
+        fillDropdown(dbPropertiesCombo, ConfigRegistry.shared().list(ConfigRegistry.DB),
+                "project3.properties", "bikedb.properties");
     }
 
     /**
      * Populates the user properties dropdown from the "config/user" folder.
      */
     private void populateUserPropertiesDropdown() {
-        File userConfigDir = new File("config/user");
-        if (userConfigDir.exists() && userConfigDir.isDirectory()) {
-            File[] files = userConfigDir.listFiles((dir, name) -> name.endsWith(".properties"));
-            if (files != null && files.length > 0) {
-                for (File file : files) {
-                    userPropertiesCombo.addItem(file.getName());
-                }
-            } else {
-                userPropertiesCombo.addItem("root.properties");
-                userPropertiesCombo.addItem("client1.properties");
-                userPropertiesCombo.addItem("client2.properties");
-                userPropertiesCombo.addItem("project3app.properties");
-            }
-        } else {
-            userPropertiesCombo.addItem("root.properties");
-            userPropertiesCombo.addItem("client1.properties");
-            userPropertiesCombo.addItem("client2.properties");
-            userPropertiesCombo.addItem("project3app.properties");
+        fillDropdown(userPropertiesCombo, ConfigRegistry.shared().list(ConfigRegistry.USER),
+                "root.properties", "client1.properties", "client2.properties", "project3app.properties");
+    }
+
+    /**
+     * Replaces the items of a dropdown, keeping the current selection if it still exists.
+     * Falls back to the default names when the folder has no properties files.
+     */
+    private static void fillDropdown(JComboBox<String> combo, List<String> names, String... defaults) {
+        Object selected = combo.getSelectedItem();
+        combo.removeAllItems();
+        for (String name : names.isEmpty() ? List.of(defaults) : names) {
+            combo.addItem(name);
+        }
+        if (selected != null) {
+            combo.setSelectedItem(selected);
+        }
+    }
+
+    /**
+     * Refreshes the dropdowns when the config watcher reports added, changed or removed files.
+     */
+    private void configChanged(String dir) {
+        if (dir.equals(ConfigRegistry.DB)) {
+            populateDBPropertiesDropdown();
+        } else if (dir.equals(ConfigRegistry.USER)) {
+            populateUserPropertiesDropdown();
         }
     }
 
@@ -230,11 +385,117 @@ public class Project3GUI extends JFrame implements ActionListener {
             case "Connect" -> connectToDatabase();
             case "Disconnect" -> disconnectFromDatabase();
             case "Execute" -> executeSQLCommand();
+            case "Cancel" -> cancelSQLCommand();
+            case "Import CSV" -> importCSV();
+            case "Export" -> exportResults();
+            case "Fan-out" -> fanOutQuery();
+            case "Slow Queries" -> showSlowQueries();
+            case "Save Snapshot" -> saveSnapshot();
+            case "Open Snapshot" -> openSnapshot();
             case "Clear" -> {
                 sqlCommandArea.setText("");
-                ((DefaultTableModel) resultTable.getModel()).setRowCount(0);
+                setResultModel(new DefaultTableModel());
+            }
+            case "Exit" -> {
+                cancelSQLCommand();
+                setResultModel(new DefaultTableModel()); // Closes the cursor and deletes its spill file
+                queryExecutor.shutdown();
+                slowQueries.close();
+                if (operationsLog != null) {
+                    operationsLog.close();
+                }
+                ConnectionPool.closeAll();
+                System.exit(0);
             }
-            case "Exit" -> System.exit(0);
+        }
+    }
+
+    /**
+     * Shows a new model in the result table, closing the server cursor of the previous one if it had one.
+     */
+    private void setResultModel(TableModel model) {
+        long start = System.nanoTime();
+        if (cursorModel != null && cursorModel != model) {
+            cursorModel.close();
+        }
+        cursorModel = model instanceof CursorTableModel cm ? cm : null;
+        resultSql = null;
+        resultTable.setRowSorter(null); // The old sorter must not see the new model's events
+        resultTable.setModel(model);
+        resultSorter = new ResultRowSorter(model);
+        resultSorter.addRowSorterListener(e -> updateViewInfo());
+        resultTable.setRowSorter(resultSorter);
+        filterField.setText("");
+        updateViewInfo();
+        if (model.getColumnCount() > 0) { // Clearing the table is not a result
+            metrics.record(StatementMetrics.Phase.MODEL, start);
+            StartupWarmup.milestone("first result shown");
+        }
+    }
+
+    private void applyFilter() {
+        if (resultSorter != null) {
+            resultSorter.setFilterText(filterField.getText().trim());
+        }
+    }
+
+    /**
+     * Shows how many rows the filter lets through and how long the last sort took.
+     */
+    private void updateViewInfo() {
+        int shown = resultSorter.getViewRowCount();
+        int total = resultSorter.getModelRowCount();
+        String text = shown == total ? " " : String.format("%,d of %,d rows", shown, total);
+        if (!resultSorter.getSortKeys().isEmpty()) {
+            text = text.trim() + (text.isBlank() ? "" : ", ") + "sorted in " + resultSorter.getLastSortMillis() + " ms";
+        }
+        viewInfoLabel.setText(text);
+    }
+
+    /**
+     * Switches the command panel between the idle and running states.
+     */
+    private void setRunning(QueryExecutor.QueryTask task) {
+        runningTask = task;
+        executeButton.setEnabled(task == null);
+        importButton.setEnabled(task == null);
+        exportButton.setEnabled(task == null);
+        fanOutButton.setEnabled(task == null);
+        saveSnapshotButton.setEnabled(task == null);
+        openSnapshotButton.setEnabled(task == null);
+        cancelButton.setEnabled(task != null);
+        if (task != null) {
+            statusLabel.setText(task.describeProgress());
+            progressTimer.start();
+        } else {
+            progressTimer.stop();
+        }
+    }
+
+    /**
+     * Cancels the running statement, if any, using Statement.cancel().
+     */
+    private void cancelSQLCommand() {
+        if (runningTask != null) {
+            runningTask.cancel();
+        }
+    }
+
+    /**
+     * Reports a failed background statement, distinguishing cancellation and timeouts from SQL errors.
+     */
+    private void handleSQLFailure(Exception ex) {
+        QueryExecutor.QueryTask task = runningTask;
+        setRunning(null);
+        if (task.isCancelled()) {
+            statusLabel.setText(String.format("Cancelled after %.1f s", task.getElapsedMillis() / 1000.0));
+        } else if (ex instanceof SQLTimeoutException) {
+            statusLabel.setText(String.format("Timed out after %.1f s", task.getElapsedMillis() / 1000.0));
+            JOptionPane.showMessageDialog(this, "Query timed out: " + ex.getMessage(), "SQL Error", JOptionPane.ERROR_MESSAGE);
+        } else {
+            statusLabel.setText(" ");
+            JOptionPane.showMessageDialog(this, "SQL Error: " + ex.getMessage(), "SQL Error", JOptionPane.ERROR_MESSAGE);
+            System.err.println("SQL Error: " + ex.getMessage());
         }
     }
 
@@ -243,34 +504,16 @@ public class Project3GUI extends JFrame implements ActionListener {
      * Verifies that the entered username and password match the user properties.
      */
     public void connectToDatabase() {
-        // Load DB properties from the selected file in config/db
-        String selectedDBProperties = (String) dbPropertiesCombo.getSelectedItem();
-        Properties dbProps = new Properties();
-        File dbPropFile = new File("config/db", selectedDBProperties);
-        if (dbPropFile.exists()) {
-            try (FileInputStream fis = new FileInputStream(dbPropFile)) {
-                dbProps.load(fis);
-            } catch (IOException ex) {
-                updateConnectionStatus("Failed to load DB properties", Color.RED);
-                return;
-            }
-        } else {
+        // DB and user settings of the selected files in config/db and config/user, already parsed by the registry
+        ConfigRegistry.Settings dbProps = ConfigRegistry.shared().get(ConfigRegistry.DB,
+                (String) dbPropertiesCombo.getSelectedItem());
+        if (dbProps == null) {
             updateConnectionStatus("DB properties file not found", Color.RED);
             return;
         }
-
-        // Load User properties from the selected file in config/user
-        String selectedUserProperties = (String) userPropertiesCombo.getSelectedItem();
-        Properties userProps = new Properties();
-        File userPropFile = new File("config/user", selectedUserProperties);
-        if (userPropFile.exists()) {
-            try (FileInputStream fis = new FileInputStream(userPropFile)) {
-                userProps.load(fis);
-            } catch (IOException ex) {
-                updateConnectionStatus("Failed to load user properties", Color.RED);
-                return;
-            }
-        } else {
+        ConfigRegistry.Settings userProps = ConfigRegistry.shared().get(ConfigRegistry.USER,
+                (String) userPropertiesCombo.getSelectedItem());
+        if (userProps == null) {
             updateConnectionStatus("User properties file not found", Color.RED);
             return;
         }
@@ -278,6 +521,31 @@ public class Project3GUI extends JFrame implements ActionListener {
         // Use properties to override defaults
         String driver = dbProps.getProperty("driver", "com.mysql.cj.jdbc.Driver");
         String urlFromProps = dbProps.getProperty("url", defaultUrl);
+        String replicaUrls = dbProps.getProperty("replicas", "");
+        long stickyMillis;
+        try {
+            stickyMillis = Long.parseLong(dbProps.getProperty("replicas.stickyMillis",
+                    String.valueOf(ReplicaRouter.DEFAULT_STICKY_MILLIS)).trim());
+        } catch (NumberFormatException ex) {
+            updateConnectionStatus("Invalid replicas.stickyMillis", Color.RED);
+            return;
+        }
+        long slowThreshold;
+        try {
+            slowThreshold = Long.parseLong(dbProps.getProperty("slowQuery.thresholdMillis",
+                    String.valueOf(SlowQueryLog.DEFAULT_THRESHOLD_MILLIS)).trim());
+        } catch (NumberFormatException ex) {
+            updateConnectionStatus("Invalid slowQuery.thresholdMillis", Color.RED);
+            return;
+        }
+        long heapBudget;
+        try {
+            heapBudget = Long.parseLong(dbProps.getProperty("results.heapBudgetMB",
+                    String.valueOf(CursorTableModel.DEFAULT_HEAP_BUDGET_BYTES >> 20)).trim()) << 20;
+        } catch (NumberFormatException ex) {
+            updateConnectionStatus("Invalid results.heapBudgetMB", Color.RED);
+            return;
+        }
 
         // Use text field values if provided; otherwise, default to properties
         String guiUsername = usernameField.getText().trim();
@@ -297,9 +565,23 @@ public class Project3GUI extends JFrame implements ActionListener {
                 updateConnectionStatus("Already connected", Color.ORANGE);
                 return;
             }
-            c = DriverManager.getConnection(urlFromProps, propUsername, propPassword);
+            currentPool = ConnectionPool.forCredentials(urlFromProps, propUsername, propPassword);
+            long start = System.nanoTime();
+            c = currentPool.borrow();
+            metrics.record(StatementMetrics.Phase.CONNECT, start);
+            statementCache = new StatementCache(c, 64);
+            ReplicaRouter router = ReplicaRouter.forCredentials(replicaUrls, stickyMillis, propUsername, propPassword);
+            readRouting = router.openSession(statementCache);
             currentLoggedInUser = propUsername;
-            updateConnectionStatus("Connected: " + urlFromProps, Color.GREEN);
+            currentUrl = urlFromProps;
+            resultHeapBudget = heapBudget;
+            slowQueries.setThresholdMillis(slowThreshold);
+            schemaCache = SchemaCache.forConnection(urlFromProps, propUsername);
+            schemaCache.loadAsync(currentPool);
+            updateConnectionStatus("Connected: " + urlFromProps
+                    + (router.hasReplicas() ? " (reads on replicas)" : ""), Color.GREEN);
+            PREFERENCES.put(LAST_DB, (String) dbPropertiesCombo.getSelectedItem());
+            PREFERENCES.put(LAST_USER, (String) userPropertiesCombo.getSelectedItem());
             System.out.println("Connected as " + propUsername + " to " + urlFromProps + "\n");
         } catch (ClassNotFoundException e) {
             updateConnectionStatus("JDBC Driver not found", Color.RED);
@@ -309,11 +591,23 @@ public class Project3GUI extends JFrame implements ActionListener {
     }
 
     public void disconnectFromDatabase() {
+        cancelSQLCommand();
+        if (runningTask != null) {
+            runningTask.awaitDone(); // Its worker may still be using the connection
+        }
+        CursorTableModel closing = cursorModel;
+        setResultModel(new DefaultTableModel());
+        if (closing != null) {
+            closing.awaitClosed(); // The cursor must be closed before the connection goes back to the pool
+        }
         try {
             if (c != null && !c.isClosed()) {
-                c.close();
+                readRouting.close();
+                statementCache.close();
+                c.close(); // Returns the connection to its pool
                 updateConnectionStatus("Not connected", Color.LIGHT_GRAY);
                 c = null;
+                schemaCache = null;
             }
         } catch (SQLException e) {
             updateConnectionStatus("Failed to disconnect", Color.RED);
@@ -330,131 +624,562 @@ public class Project3GUI extends JFrame implements ActionListener {
             JOptionPane.showMessageDialog(this, "No active connection. Please connect to the database first.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        try {
-            if (sql.toLowerCase().startsWith("select")) {
-                try (PreparedStatement pstmt = c.prepareStatement(sql);
-                     ResultSet rs = pstmt.executeQuery()) {
-                    DefaultTableModel model = buildTableModel(rs);
-                    resultTable.setModel(model);
-                    // Log SELECT queries (unless executed by the accountant)
-                    if (!currentLoggedInUser.equalsIgnoreCase("theaccountant")) {
-                        logOperation(currentLoggedInUser, "query");
+        if (runningTask != null) {
+            return;
+        }
+        if (scriptModeCheckBox.isSelected()) {
+            executeScript(sql);
+            return;
+        }
+
+        // Capture everything the worker needs while still on the EDT
+        StatementCache statements = statementCache;
+        ReplicaRouter.Session routing = readRouting;
+        String loggedInUser = currentLoggedInUser;
+        String url = currentUrl;
+        int timeoutSeconds = (Integer) timeoutSpinner.getValue();
+        long heapBudget = resultHeapBudget;
+        SchemaCache schema = schemaCache;
+        ConnectionPool pool = currentPool;
+        SqlLexer.Kind kind = SqlLexer.classify(sql);
+
+        QueryExecutor.QueryTask task;
+        if (kind == SqlLexer.Kind.READ) {
+            // EXPLAIN ANALYZE of DML returns rows but runs the DML: primary only, never cached, counted as an update
+            boolean writes = SqlLexer.writes(sql);
+            List<ColumnBatch> cached = writes ? null : resultCache.get(sql, url, loggedInUser);
+            if (cached != null) {
+                ColumnarTableModel model = new ColumnarTableModel(cached);
+                setResultModel(model);
+                resultSql = sql;
+                logOperation(loggedInUser, "query");
+                statusLabel.setText(String.format("Served from cache, %,d rows | %s", model.getRowCount(),
+                        resultCache.describeHitRate()));
+                statusLabel.setToolTipText(resultCache.describeStats());
+                return;
+            }
+            task = queryExecutor.submit(recordingSlow(sql, t -> {
+                // Streams from a server-side cursor; only the first page is read here.
+                // Literals are lifted into parameters so statements of the same shape share a prepared plan.
+                ReplicaRouter.Route route = writes ? new ReplicaRouter.Route(null, statements) : routing.routeRead(sql);
+                CursorTableModel model = null;
+                try {
+                    model = SqlFingerprint.execute(sql,
+                            fp -> CursorTableModel.open(route.statements(), fp, timeoutSeconds, heapBudget, t));
+                } catch (SQLException ex) {
+                    if (!route.isReplica() || !ReplicaRouter.isConnectionFailure(ex) || t.isCancelled()) {
+                        throw ex;
                     }
+                    // The replica is unreachable: take it out of rotation and read from the primary instead
+                    routing.failed(route, ex);
+                } finally {
+                    route.end();
                 }
-            } else {
-                try (PreparedStatement pstmt = c.prepareStatement(sql)) {
-                    int updateCount = pstmt.executeUpdate();
-                    String message = "Command executed successfully. Rows affected: " + updateCount;
-                    String lowerSql = sql.toLowerCase();
-                    if (lowerSql.startsWith("insert")) {
-                        JOptionPane.showMessageDialog(this, message, "Insert Success", JOptionPane.INFORMATION_MESSAGE);
-                    } else if (lowerSql.startsWith("update") || lowerSql.startsWith("delete")) {
-                        JOptionPane.showMessageDialog(this, message, "Update Success", JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
+                ReplicaRouter.Route source = route;
+                if (model == null) {
+                    source = new ReplicaRouter.Route(null, statements);
+                    model = SqlFingerprint.execute(sql,
+                            fp -> CursorTableModel.open(statements, fp, timeoutSeconds, heapBudget, t));
+                }
+                if (t.isCancelled()) {
+                    // Cancelled just as the first page arrived; a disconnect may be waiting for the cursor to go
+                    model.close();
+                    model.awaitClosed();
+                    throw new SQLException("Statement cancelled");
+                }
+                if (writes) {
+                    routing.executedOnPrimary(sql, SqlLexer.Kind.WRITE);
+                    resultCache.invalidate(url, SqlLexer.tables(sql));
+                }
+                logOperation(loggedInUser, writes ? "update" : "query");
+                return new RoutedRead(model, source);
+            }), read -> {
+                CursorTableModel model = read.model();
+                statusLabel.setText(runningTask.describeProgress()
+                        + (model.hasMoreRows() ? " (more rows load as you scroll)" : "")
+                        + " | " + read.route().describe()
+                        + " | " + resultCache.describeHitRate() + " | " + read.route().statements().describeHitRate());
+                statusLabel.setToolTipText(resultCache.describeStats());
+                setRunning(null);
+                setResultModel(model);
+                resultSql = sql;
+                // Cache the result once it has been read completely
+                if (!writes) {
+                    model.whenComplete(batches -> resultCache.put(sql, url, loggedInUser, batches));
+                }
+            }, this::handleSQLFailure);
+        } else {
+            task = queryExecutor.submit(recordingSlow(sql, t -> {
+                int updateCount = SqlFingerprint.execute(sql, fp -> statements.executeUpdate(fp, timeoutSeconds, t));
+                routing.executedOnPrimary(sql, kind);
+                // Cached results that read a table written by this statement are now stale
+                resultCache.invalidate(url, SqlLexer.tables(sql));
+                schema.refreshAfter(sql, pool);
+                logOperation(loggedInUser, "update");
+                return updateCount;
+            }), updateCount -> {
+                statusLabel.setText(runningTask.describeProgress());
+                setRunning(null);
+                String message = "Command executed successfully. Rows affected: " + updateCount;
+                String title = switch (SqlText.firstKeyword(sql)) {
+                    case "insert" -> "Insert Success";
+                    case "update", "delete" -> "Update Success";
+                    default -> "Success";
+                };
+                JOptionPane.showMessageDialog(this, message, title, JOptionPane.INFORMATION_MESSAGE);
+                setResultModel(new DefaultTableModel());
+            }, this::handleSQLFailure);
+        }
+        setRunning(task);
+    }
+
+    /**
+     * Wraps statement work so that a run slower than the threshold (or timed out) goes to the slow query log.
+     * The EXPLAIN runs on a separate connection from the session's pool. Call on the EDT.
+     */
+    private <T> QueryExecutor.Work<T> recordingSlow(String sql, QueryExecutor.Work<T> work) {
+        ConnectionPool pool = currentPool;
+        String user = currentLoggedInUser;
+        String url = currentUrl;
+        return t -> {
+            long start = System.nanoTime();
+            try {
+                T result = work.run(t);
+                slowQueries.record(sql, System.nanoTime() - start, pool, user, url);
+                return result;
+            } catch (SQLTimeoutException ex) {
+                slowQueries.record(sql, System.nanoTime() - start, pool, user, url);
+                throw ex;
+            }
+        };
+    }
+
+    /**
+     * Opens the "Top slow queries" window.
+     */
+    private void showSlowQueries() {
+        JDialog dialog = new JDialog(this, "Top Slow Queries", false);
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.add(new SlowQueryPanel(slowQueries));
+        dialog.setSize(900, 500);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Runs the command area as a script: statements are split on the delimiter, DML is batched, and
+     * one summary is shown at the end instead of a dialog per statement.
+     */
+    private void executeScript(String script) {
+        List<String> statements = SqlText.splitStatements(script);
+        if (statements.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "The script contains no statements.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String loggedInUser = currentLoggedInUser;
+        String url = currentUrl;
+        ReplicaRouter.Session routing = readRouting;
+        SchemaCache schema = schemaCache;
+        ConnectionPool pool = currentPool;
+        ScriptRunner runner = new ScriptRunner(statementCache, statements,
+                (Integer) commitChunkSpinner.getValue(), (Integer) timeoutSpinner.getValue());
+
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> {
+            try {
+                runner.run(t);
+                return runner;
+            } finally {
+                routing.noteWrite();
+                // Invalidate for every write in the script, including a partially applied one. Statements that
+                // write nothing (SET, USE, reads) leave the cache alone; a write to unknown tables flushes it.
+                Set<String> written = new HashSet<>();
+                boolean unknownTables = false;
+                for (String statement : statements) {
+                    if (SqlLexer.writes(statement)) {
+                        Set<String> tables = SqlLexer.tables(statement);
+                        unknownTables |= tables.isEmpty();
+                        written.addAll(tables);
                     }
-                    resultTable.setModel(new DefaultTableModel());
-                    // Log update operation if not executed by accountant
-                    if (!currentLoggedInUser.equalsIgnoreCase("theaccountant")) {
-                        logOperation(currentLoggedInUser, "update");
+                }
+                if (unknownTables) {
+                    resultCache.invalidate(url, Set.of());
+                } else if (!written.isEmpty()) {
+                    resultCache.invalidate(url, written);
+                }
+                // One full reload covers any schema changes the script made
+                for (String statement : statements) {
+                    if (SqlLexer.classify(statement) == SqlLexer.Kind.DDL) {
+                        schema.loadAsync(pool);
+                        break;
                     }
                 }
+                logOperation(loggedInUser, "query", runner.getQueriesExecuted());
+                logOperation(loggedInUser, "update", runner.getUpdatesExecuted());
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "SQL Error: " + ex.getMessage(), "SQL Error", JOptionPane.ERROR_MESSAGE);
-            System.err.println("SQL Error: " + ex.getMessage());
-        }
+        }, r -> {
+            setRunning(null);
+            String summary = r.describe();
+            statusLabel.setText(summary);
+            setResultModel(new DefaultTableModel());
+            JOptionPane.showMessageDialog(this, "Script executed successfully.\n" + summary, "Script Success",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }, this::handleSQLFailure);
+        setRunning(task);
     }
 
     /**
-     * Builds a DefaultTableModel from the given ResultSet.
+     * Runs the SELECT in the command area on every chosen config/db database at once, with the credentials of
+     * the selected user properties file, and shows the merged rows with a source column.
+     * Needs no session connection; each database is read through its own pool.
      */
-    private DefaultTableModel buildTableModel(ResultSet rs) throws SQLException {
-        ResultSetMetaData meta = rs.getMetaData();
-        int colCount = meta.getColumnCount();
+    private void fanOutQuery() {
+        String sql = sqlCommandArea.getText().trim();
+        if (!SqlLexer.isRead(sql)) {
+            JOptionPane.showMessageDialog(this, "Fan-out runs a single SELECT query.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (runningTask != null) {
+            return;
+        }
+        ConfigRegistry.Settings userProps = ConfigRegistry.shared().get(ConfigRegistry.USER,
+                (String) userPropertiesCombo.getSelectedItem());
+        String username = usernameField.getText().trim();
+        String password = new String(passwordField.getPassword()).trim();
+        if (userProps == null || !username.equals(userProps.getProperty("username", ""))
+                || !password.equals(userProps.getProperty("password", ""))) {
+            JOptionPane.showMessageDialog(this, "Enter credentials matching the selected user properties file.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
-        DefaultTableModel model = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+        List<String> names = ConfigRegistry.shared().list(ConfigRegistry.DB);
+        JList<String> dbList = new JList<>(names.toArray(new String[0]));
+        dbList.setSelectionInterval(0, names.size() - 1);
+        if (names.isEmpty() || JOptionPane.showConfirmDialog(this, new JScrollPane(dbList), "Fan-out: databases to query",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION
+                || dbList.isSelectionEmpty()) {
+            return;
+        }
+        List<FanOutQuery.Source> sources = new ArrayList<>();
+        for (String name : dbList.getSelectedValuesList()) {
+            ConfigRegistry.Settings dbProps = ConfigRegistry.shared().get(ConfigRegistry.DB, name);
+            if (dbProps == null) {
+                continue; // Deleted while the dialog was open
             }
-        };
-        for (int i = 1; i <= colCount; i++) {
-            model.addColumn(meta.getColumnLabel(i));
+            try {
+                Class.forName(dbProps.getProperty("driver", "com.mysql.cj.jdbc.Driver"));
+            } catch (ClassNotFoundException ex) {
+                JOptionPane.showMessageDialog(this, "JDBC Driver not found for " + name, "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            sources.add(new FanOutQuery.Source(name.replaceFirst("\\.properties$", ""),
+                    ConnectionPool.forCredentials(dbProps.getProperty("url", defaultUrl), username, password)));
         }
 
-        while (rs.next()) {
-            Object[] rowData = new Object[colCount];
-            for (int i = 1; i <= colCount; i++) {
-                rowData[i - 1] = rs.getObject(i);
+        int timeoutSeconds = (Integer) timeoutSpinner.getValue();
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> {
+            FanOutQuery.Result result = FanOutQuery.run(sources, sql, timeoutSeconds, t);
+            // One query per database it ran on
+            logOperation(username, "query", sources.size() - result.failures());
+            return result;
+        }, result -> {
+            statusLabel.setText(String.format("%s | %d of %d databases%s", runningTask.describeProgress(),
+                    sources.size() - result.failures(), sources.size(), result.sorted() ? ", merged in order" : ""));
+            List<String> lines = new ArrayList<>();
+            result.outcomes().forEach(o -> lines.add(o.describe()));
+            statusLabel.setToolTipText("<html>" + String.join("<br>", lines) + "</html>");
+            setRunning(null);
+            setResultModel(new ColumnarTableModel(result.batches()));
+            resultSql = sql;
+            if (result.failures() > 0 || result.note() != null) {
+                List<String> problems = new ArrayList<>();
+                result.outcomes().stream().filter(FanOutQuery.Outcome::failed).forEach(o -> problems.add(o.describe()));
+                if (result.note() != null) {
+                    problems.add(result.note());
+                }
+                JOptionPane.showMessageDialog(this, String.join("\n", problems), "Fan-out", JOptionPane.WARNING_MESSAGE);
             }
-            model.addRow(rowData);
-        }
-        return model;
+        }, this::handleSQLFailure);
+        setRunning(task);
     }
 
     /**
-     * Logs the operation to the operations log database.
-     * For SELECT queries, operationType should be "query".
-     * For non-select commands (insert, update, delete), operationType should be "update".
-     * Operations by "theaccountant" are not logged.
+     * Saves the result shown in the table to a snapshot file, which Open Snapshot (here or in the accountant
+     * client) shows again without a database connection. A streamed result is saved as far as it has been read.
      */
-    private void logOperation(String loginUsername, String operationType) {
-        // Append "@localhost" if it's not already included
-        if (!loginUsername.contains("@")) {
-            loginUsername = loginUsername + "@localhost";
+    private void saveSnapshot() {
+        if (runningTask != null) {
+            return;
+        }
+        TableModel model = resultTable.getModel();
+        if (model.getColumnCount() == 0) {
+            JOptionPane.showMessageDialog(this, "There is no result to save.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (cursorModel != null && cursorModel.hasMoreRows() && JOptionPane.showConfirmDialog(this,
+                String.format("Only the %,d rows read so far will be saved. Scroll to the end of the result "
+                        + "to save all of it.%nSave anyway?", model.getRowCount()),
+                "Save Snapshot", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Result snapshots", ResultSnapshot.EXTENSION));
+        chooser.setSelectedFile(new File("result." + ResultSnapshot.EXTENSION));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
 
-        // Load operations log properties from "operationslog.properties" in config/ops
-        Properties opProps = new Properties();
-        File opPropFile = new File("config/ops", "operationslog.properties");
-        if (!opPropFile.exists()) {
-            System.err.println("Operations log properties file not found.");
+        Path file = chooser.getSelectedFile().toPath();
+        String sql = resultSql;
+        // Collect the batches here on the EDT; decoding spilled pages, encoding and writing happen in the background
+        List<Supplier<ColumnBatch>> pageBatches;
+        if (model == cursorModel) {
+            try {
+                pageBatches = cursorModel.pageBatches();
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(this, "The snapshot was not saved: " + ex.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        } else {
+            List<ColumnBatch> copied = ResultSnapshot.batchesOf(model);
+            pageBatches = copied.stream().<Supplier<ColumnBatch>>map(b -> () -> b).toList();
+        }
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> {
+            List<ColumnBatch> batches = new ArrayList<>(pageBatches.size());
+            for (Supplier<ColumnBatch> batch : pageBatches) {
+                batches.add(batch.get());
+            }
+            return ResultSnapshot.write(file, batches, sql, t);
+        }, size -> {
+            statusLabel.setText(String.format("%s | %s, %,d KB", runningTask.describeProgress(), file.getFileName(),
+                    size / 1024));
+            setRunning(null);
+        }, this::handleSQLFailure);
+        setRunning(task);
+    }
+
+    /**
+     * Shows a snapshot saved by Save Snapshot. Only the file's index is read here; rows are decoded as they
+     * scroll into view.
+     */
+    private void openSnapshot() {
+        if (runningTask != null) {
             return;
         }
-        try (FileInputStream fis = new FileInputStream(opPropFile)) {
-            opProps.load(fis);
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Result snapshots", ResultSnapshot.EXTENSION));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        SnapshotTableModel model;
+        try {
+            model = SnapshotTableModel.open(chooser.getSelectedFile().toPath());
         } catch (IOException ex) {
-            System.err.println("Failed to load operations log properties: " + ex.getMessage());
+            JOptionPane.showMessageDialog(this, "Failed to open snapshot: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
+        setResultModel(model);
+        resultSql = model.getSnapshot().getSql();
+        statusLabel.setText("Snapshot " + model.getSnapshot().describe());
+        statusLabel.setToolTipText(resultSql);
+    }
 
-        String driver = opProps.getProperty("driver", "com.mysql.cj.jdbc.Driver");
-        String url = opProps.getProperty("url", "jdbc:mysql://localhost:3306/operationslog");
-        String opUsername = opProps.getProperty("username", "project3app");
-        String opPassword = opProps.getProperty("password", "project3app");
+    /**
+     * Bulk-loads a CSV file with a header row into a table chosen from the connected database.
+     * The whole import counts as a single update in the operations log.
+     */
+    private void importCSV() {
+        if (c == null) {
+            JOptionPane.showMessageDialog(this, "No active connection. Please connect to the database first.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (runningTask != null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path csv = chooser.getSelectedFile().toPath();
+        withTableNames(tables -> importInto(csv, tables));
+    }
 
-        try {
-            Class.forName(driver);
-            try (Connection opConn = DriverManager.getConnection(url, opUsername, opPassword)) {
-                String sql = null;
-                if (operationType.equalsIgnoreCase("query")) {
-                    sql = "UPDATE operationscount SET num_queries = num_queries + 1 WHERE login_username = ?";
-                } else if (operationType.equalsIgnoreCase("update")) {
-                    sql = "UPDATE operationscount SET num_updates = num_updates + 1 WHERE login_username = ?";
+    private void importInto(Path csv, List<String> tables) {
+        if (tables.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "The database has no tables to import into.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String table = (String) JOptionPane.showInputDialog(this, "Import into table:", "Import CSV",
+                JOptionPane.QUESTION_MESSAGE, null, tables.toArray(), tables.get(0));
+        if (table == null) {
+            return;
+        }
+
+        String loggedInUser = currentLoggedInUser;
+        String url = currentUrl;
+        ReplicaRouter.Session routing = readRouting;
+        BulkImporter importer = new BulkImporter(currentPool, csv, table);
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> {
+            try {
+                importer.run(t);
+                return importer;
+            } finally {
+                if (importer.getRowsImported() > 0) {
+                    routing.noteWrite();
+                    resultCache.invalidate(url, Set.of(table.toLowerCase(Locale.ROOT)));
+                    logOperation(loggedInUser, "update");
                 }
-                if (sql != null) {
-                    try (PreparedStatement pstmt = opConn.prepareStatement(sql)) {
-                        pstmt.setString(1, loginUsername);
-                        int rows = pstmt.executeUpdate();
-                        if (rows == 0) {
-                            String insertSql = "INSERT INTO operationscount (login_username, num_queries, num_updates) VALUES (?, ?, ?)";
-                            try (PreparedStatement ipstmt = opConn.prepareStatement(insertSql)) {
-                                ipstmt.setString(1, loginUsername);
-                                ipstmt.setInt(2, operationType.equalsIgnoreCase("query") ? 1 : 0);
-                                ipstmt.setInt(3, operationType.equalsIgnoreCase("update") ? 1 : 0);
-                                ipstmt.executeUpdate();
-                            }
-                        }
-                    }
+            }
+        }, r -> {
+            setRunning(null);
+            String summary = r.describe();
+            statusLabel.setText(summary);
+            JOptionPane.showMessageDialog(this, summary, "Import Success", JOptionPane.INFORMATION_MESSAGE);
+        }, ex -> {
+            JOptionPane.showMessageDialog(this, String.format("%,d rows were imported before the import stopped.",
+                    importer.getRowsImported()), "Import", JOptionPane.WARNING_MESSAGE);
+            handleSQLFailure(ex);
+        });
+        setRunning(task);
+    }
+
+    /**
+     * Streams a whole table, or the SELECT in the command area, to a CSV or JSON-lines file without
+     * loading it into the result table. Counts as one query in the operations log.
+     */
+    private void exportResults() {
+        if (c == null) {
+            JOptionPane.showMessageDialog(this, "No active connection. Please connect to the database first.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (runningTask != null) {
+            return;
+        }
+        String sql = sqlCommandArea.getText().trim();
+        withTableNames(tables -> exportFrom(sql, tables));
+    }
+
+    private void exportFrom(String sql, List<String> tables) {
+        String currentQuery = "(SELECT in the command area)";
+        List<String> sources = new ArrayList<>();
+        if (SqlLexer.isRead(sql)) {
+            sources.add(currentQuery);
+        }
+        sources.addAll(tables);
+        if (sources.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Nothing to export.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String source = (String) JOptionPane.showInputDialog(this, "Export:", "Export",
+                JOptionPane.QUESTION_MESSAGE, null, sources.toArray(), sources.get(0));
+        if (source == null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("JSON lines", "jsonl"));
+        chooser.setSelectedFile(new File((source.equals(currentQuery) ? "query" : source) + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        Path file = chooser.getSelectedFile().toPath();
+        String loggedInUser = currentLoggedInUser;
+        ResultExporter exporter = new ResultExporter(currentPool, file, ResultExporter.Format.forFile(file), EXPORT_PARTITIONS);
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> {
+            if (source.equals(currentQuery)) {
+                exporter.exportQuery(sql, t);
+            } else {
+                exporter.exportTable(source, t);
+            }
+            logOperation(loggedInUser, "query");
+            return exporter;
+        }, r -> {
+            setRunning(null);
+            String summary = r.describe();
+            statusLabel.setText(summary);
+            JOptionPane.showMessageDialog(this, summary, "Export Success", JOptionPane.INFORMATION_MESSAGE);
+        }, this::handleSQLFailure);
+        setRunning(task);
+    }
+
+    /**
+     * Lists the tables of the connected database on the query executor, so the catalog query does not block
+     * the EDT, then passes the names to then on the EDT (unless the connection has changed meanwhile).
+     */
+    private void withTableNames(Consumer<List<String>> then) {
+        Connection conn = c;
+        QueryExecutor.QueryTask task = queryExecutor.submit(t -> {
+            List<String> tables = new ArrayList<>();
+            try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, "%", new String[]{"TABLE"})) {
+                while (rs.next()) {
+                    tables.add(rs.getString("TABLE_NAME"));
                 }
             }
-        } catch (Exception ex) {
-            System.err.println("Error logging operation: " + ex.getMessage());
+            return tables;
+        }, tables -> {
+            setRunning(null);
+            if (conn == c) {
+                then.accept(tables);
+            }
+        }, this::handleSQLFailure);
+        setRunning(task);
+    }
+
+    /**
+     * Logs the operation to the operations log database.
+     * For SELECT queries, operationType should be "query".
+     * For non-select commands (insert, update, delete), operationType should be "update".
+     * Operations by "theaccountant" are not logged.
+     * The count is only recorded in memory here; the writer flushes it to operationscount in the background.
+     */
+    private void logOperation(String loginUsername, String operationType) {
+        logOperation(loginUsername, operationType, 1);
+    }
+
+    private void logOperation(String loginUsername, String operationType, long count) {
+        if (operationsLog != null && !loginUsername.equalsIgnoreCase("theaccountant")) {
+            long start = System.nanoTime();
+            operationsLog.record(loginUsername, operationType, count);
+            metrics.record(StatementMetrics.Phase.AUDIT, start);
         }
     }
 
+    /**
+     * Creates the background writer for the operations log database, or returns null if it is not configured.
+     */
+    private OperationsLogWriter createOperationsLogWriter() {
+        ConfigRegistry.Settings opProps = ConfigRegistry.shared().get(ConfigRegistry.OPS, "operationslog.properties");
+        if (opProps == null) {
+            System.err.println("Operations log properties file not found.");
+            return null;
+        }
+        try {
+            Class.forName(opProps.getProperty("driver", "com.mysql.cj.jdbc.Driver"));
+        } catch (ClassNotFoundException ex) {
+            System.err.println("Operations log JDBC driver not found: " + ex.getMessage());
+            return null;
+        }
+        return new OperationsLogWriter(
+                opProps.getProperty("url", "jdbc:mysql://localhost:3306/operationslog"),
+                opProps.getProperty("username", "project3app"),
+                opProps.getProperty("password", "project3app"));
+    }
+
+    /**
+     * The connection of the last successful Connect, for the startup warm-up to prime (null on a first run).
+     */
+    private static StartupWarmup.Target lastConnection() {
+        String db = PREFERENCES.get(LAST_DB, null);
+        String user = PREFERENCES.get(LAST_USER, null);
+        return db == null || user == null ? null
+                : new StartupWarmup.Target(ConfigRegistry.DB, db, ConfigRegistry.USER, user, "jdbc:mysql://localhost:3306/project3");
+    }
+
     public static void main(String[] args) {
+        // Config, drivers and the likely connection warm up while the window is built
+        StartupWarmup.start(Project3GUI::lastConnection);
         SwingUtilities.invokeLater(Project3GUI::new);
     }
 }
@@ -0,0 +1,227 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: QueryExecutor.java
+*/
+
+import javax.swing.*;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs JDBC work off the Swing event dispatch thread, one virtual thread per statement.
+ * Completion callbacks are always delivered back on the EDT.
+ */
+public class QueryExecutor {
+
+    /**
+     * A unit of background JDBC work. The task handle lets the work register its statement
+     * (so it can be cancelled) and report rows as they are fetched.
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(QueryTask task) throws Exception;
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final StatementMetrics metrics;
+
+    public QueryExecutor(StatementMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Submits work to run in the background. Exactly one of onSuccess / onFailure is invoked on the EDT.
+     */
+    public <T> QueryTask submit(Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        QueryTask task = new QueryTask(metrics);
+        executor.execute(() -> {
+            try {
+                T result = work.run(task);
+                task.finish();
+                SwingUtilities.invokeLater(() -> onSuccess.accept(result));
+            } catch (Exception ex) {
+                task.finish();
+                SwingUtilities.invokeLater(() -> onFailure.accept(ex));
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Runs work on the calling thread with a fresh task and returns its result, for callers that already run on
+     * their own (virtual) thread and have no EDT to call back, such as the headless load runner.
+     */
+    public <T> T call(Work<T> work) throws Exception {
+        QueryTask task = new QueryTask(metrics);
+        try {
+            return work.run(task);
+        } finally {
+            task.finish();
+        }
+    }
+
+    /**
+     * Stops accepting new work.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Handle for one running statement: cancellation plus elapsed-time and rows-fetched progress.
+     */
+    public static class QueryTask {
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong rowsFetched = new AtomicLong();
+        private volatile Statement statement;
+        private final Set<Statement> concurrentStatements = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        private volatile long endNanos;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String rowsVerb = "fetched";
+        private final StatementMetrics metrics;
+
+        private QueryTask(StatementMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * Latency and throughput metrics of the session that submitted this task.
+         */
+        public StatementMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Registers the statement currently executing so that cancel() can reach the server.
+         */
+        public void setStatement(Statement statement) {
+            this.statement = statement;
+            if (cancelled) {
+                cancelStatement();
+            }
+        }
+
+        /**
+         * Registers one of several statements that the work runs at the same time (for example one per
+         * database of a fan-out query); cancel() reaches all of them. Remove it again once it has completed.
+         */
+        public void addStatement(Statement statement) {
+            concurrentStatements.add(statement);
+            if (cancelled) {
+                cancelStatement();
+            }
+        }
+
+        public void removeStatement(Statement statement) {
+            concurrentStatements.remove(statement);
+        }
+
+        /**
+         * Cancels the running statement via Statement.cancel(). The worker is deliberately not interrupted:
+         * interrupting a virtual thread blocked in socket I/O closes the socket, and with it the connection.
+         */
+        public void cancel() {
+            if (isDone()) {
+                return;
+            }
+            cancelled = true;
+            cancelStatement();
+        }
+
+        private void cancelStatement() {
+            Statement s = statement;
+            if (s != null) {
+                cancelQuietly(s);
+            }
+            concurrentStatements.forEach(QueryTask::cancelQuietly);
+        }
+
+        private static void cancelQuietly(Statement s) {
+            try {
+                s.cancel();
+            } catch (SQLException ex) {
+                System.err.println("Failed to cancel statement: " + ex.getMessage());
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return endNanos != 0;
+        }
+
+        private void finish() {
+            endNanos = System.nanoTime();
+            done.countDown();
+        }
+
+        /**
+         * Waits until the work has returned or failed, for example after cancel(), which does not wait. The
+         * completion callback may still be queued on the EDT.
+         */
+        public void awaitDone() {
+            try {
+                done.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Called by the fetch loop for every row read from the ResultSet.
+         */
+        public void rowFetched() {
+            rowsFetched.incrementAndGet();
+        }
+
+        /**
+         * Called by work that completes rows in bulk (for example a committed insert batch).
+         */
+        public void addRows(long count) {
+            rowsFetched.addAndGet(count);
+        }
+
+        /**
+         * Changes how rows are described in the progress line ("fetched" by default).
+         */
+        public void setRowsVerb(String verb) {
+            rowsVerb = verb;
+        }
+
+        public long getRowsFetched() {
+            return rowsFetched.get();
+        }
+
+        public long getElapsedMillis() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return (end - startNanos) / 1_000_000;
+        }
+
+        /**
+         * Human-readable progress line for the status label.
+         */
+        public String describeProgress() {
+            long millis = getElapsedMillis();
+            long rows = getRowsFetched();
+            String progress = String.format("%s %.1f s, %,d rows %s",
+                    isDone() ? "Finished in" : "Running...", millis / 1000.0, rows, rowsVerb);
+            if (rows > 0 && millis >= 1000) {
+                progress += String.format(" (%,.0f rows/s)", rows * 1000.0 / millis);
+            }
+            return progress;
+        }
+    }
+}
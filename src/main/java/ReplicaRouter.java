@@ -0,0 +1,412 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ReplicaRouter.java
+*/
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends reads to read replicas and everything else to the primary. A config/db properties file declares the
+ * replicas next to the primary url:
+ * <pre>
+ * url=jdbc:mysql://primary:3306/bikedb
+ * replicas=jdbc:mysql://replica1:3306/bikedb, jdbc:mysql://replica2:3306/bikedb
+ * replicas.stickyMillis=2000
+ * </pre>
+ * Each read goes to the healthy replica with the fewest statements in flight across all sessions. Replicas are
+ * health-checked in the background and taken out of rotation when a read fails with a connection error.
+ * After a write a session reads from the primary for stickyMillis, so it sees its own changes despite
+ * replication lag, and it stays on the primary for the whole of an explicit transaction. A session that changes
+ * connection state the replicas do not share (USE, SET, temporary tables, prepared statements, user locks) stays
+ * on the primary for good, and reads of that state (user variables, LAST_INSERT_ID(), FOUND_ROWS()) go there too.
+ */
+public class ReplicaRouter {
+    public static final long DEFAULT_STICKY_MILLIS = 2_000;
+    private static final long HEALTH_CHECK_SECONDS = 5;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    // Functions answered from the state of the connection they run on; the lock functions also change it
+    private static final Set<String> SESSION_FUNCTIONS = Set.of("last_insert_id", "found_rows", "row_count",
+            "connection_id", "is_used_lock", "is_free_lock");
+    private static final Set<String> LOCK_FUNCTIONS = Set.of("get_lock", "release_lock", "release_all_locks");
+
+    private static final Map<String, ReplicaRouter> ROUTERS = new ConcurrentHashMap<>();
+
+    // One daemon thread checks the replicas of every router
+    private static final ScheduledExecutorService HEALTH_CHECK = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "replica-health-check");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        HEALTH_CHECK.scheduleWithFixedDelay(() -> ROUTERS.values().forEach(ReplicaRouter::checkHealth),
+                HEALTH_CHECK_SECONDS, HEALTH_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private final List<Replica> replicas;
+    private final long stickyMillis;
+
+    /**
+     * One replica: its connection pool, in-flight statement count and health.
+     */
+    public static final class Replica {
+        private final String url;
+        private final ConnectionPool pool;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder reads = new LongAdder();
+        private volatile boolean healthy = true;
+
+        private Replica(String url, ConnectionPool pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+    }
+
+    /**
+     * Where one read runs: a replica (null for the primary) and the statement cache of the session's
+     * connection to it. end() must be called once the statement has executed.
+     */
+    public record Route(Replica replica, StatementCache statements) {
+        public boolean isReplica() {
+            return replica != null;
+        }
+
+        public void end() {
+            if (replica != null) {
+                replica.outstanding.decrementAndGet();
+            }
+        }
+
+        public String describe() {
+            return replica == null ? "primary" : "replica " + replica.url;
+        }
+    }
+
+    private ReplicaRouter(List<Replica> replicas, long stickyMillis) {
+        this.replicas = replicas;
+        this.stickyMillis = stickyMillis;
+    }
+
+    /**
+     * Returns the shared router for the replica list and credentials, creating it on first use.
+     * replicaUrls is the comma-separated "replicas" property; an empty list routes everything to the primary.
+     */
+    public static ReplicaRouter forCredentials(String replicaUrls, long stickyMillis, String username, String password) {
+        String key = replicaUrls + '\u0000' + stickyMillis + '\u0000' + username + '\u0000' + password;
+        return ROUTERS.computeIfAbsent(key, k -> {
+            List<Replica> replicas = new ArrayList<>();
+            for (String url : replicaUrls.split(",")) {
+                if (!url.isBlank()) {
+                    replicas.add(new Replica(url.trim(), ConnectionPool.forCredentials(url.trim(), username, password)));
+                }
+            }
+            return new ReplicaRouter(List.copyOf(replicas), stickyMillis);
+        });
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * Least-outstanding-requests choice among the healthy replicas, or null if none is healthy.
+     * The returned replica's in-flight count has already been incremented.
+     */
+    private Replica acquire() {
+        Replica best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        for (Replica r : replicas) {
+            int load = r.outstanding.get();
+            // Ties go to the replica that has served fewer reads, which spreads an idle session's reads evenly
+            if (r.healthy && (load < bestLoad || (load == bestLoad && r.reads.sum() < best.reads.sum()))) {
+                best = r;
+                bestLoad = load;
+            }
+        }
+        if (best != null) {
+            best.outstanding.incrementAndGet();
+            best.reads.increment();
+        }
+        return best;
+    }
+
+    private void checkHealth() {
+        for (Replica r : replicas) {
+            boolean healthy;
+            try (Connection conn = r.pool.borrow()) {
+                healthy = conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException ex) {
+                healthy = false;
+            }
+            if (healthy != r.healthy) {
+                System.err.println("Replica " + r.url + (healthy ? " is back in rotation" : " failed its health check"));
+            }
+            r.healthy = healthy;
+        }
+    }
+
+    private static void markDown(Replica r, SQLException cause) {
+        if (r.healthy) {
+            System.err.println("Replica " + r.url + " taken out of rotation: " + cause.getMessage());
+        }
+        r.healthy = false;
+    }
+
+    /**
+     * True for errors that mean the server could not be reached, as opposed to errors in the statement.
+     */
+    public static boolean isConnectionFailure(SQLException ex) {
+        return ex instanceof SQLRecoverableException
+                || (ex.getSQLState() != null && ex.getSQLState().startsWith("08"));
+    }
+
+    /**
+     * One line per replica with its health and the number of reads routed to it.
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Replica r : replicas) {
+            sb.append(String.format("%s: %s, %,d reads, %d in flight%n", r.url, r.healthy ? "up" : "down",
+                    r.reads.sum(), r.outstanding.get()));
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Opens the routing state of one client session on top of its primary statement cache.
+     */
+    public Session openSession(StatementCache primary) {
+        return new Session(primary);
+    }
+
+    /**
+     * How a statement depends on the state of the connection it runs on.
+     */
+    enum SessionUse { NONE, READS, CHANGES }
+
+    /**
+     * CHANGES for USE, PREPARE, SET (except SET GLOBAL and PERSIST), CREATE TEMPORARY TABLE, the user lock
+     * functions and assignments to user variables (:= or INTO @v); READS for statements that read user or system
+     * variables or call a function answered from the session, such as LAST_INSERT_ID() and FOUND_ROWS().
+     */
+    static SessionUse sessionUse(CharSequence sql) {
+        SqlLexer lx = new SqlLexer(sql);
+        SqlLexer.Token t = lx.next();
+        if (lx.is("use") || lx.is("prepare")) {
+            return SessionUse.CHANGES;
+        }
+        if (lx.is("set")) {
+            lx.next();
+            return lx.is("global") || lx.is("persist") || lx.is("persist_only") ? SessionUse.NONE : SessionUse.CHANGES;
+        }
+        if (lx.is("create")) {
+            t = lx.next();
+            if (lx.is("temporary")) {
+                return SessionUse.CHANGES;
+            }
+        }
+        SessionUse use = SessionUse.NONE;
+        boolean into = false;
+        for (; t != SqlLexer.Token.END; t = lx.next()) {
+            if (t == SqlLexer.Token.VARIABLE) {
+                if (into) {
+                    return SessionUse.CHANGES;
+                }
+                use = SessionUse.READS;
+            } else if (t == SqlLexer.Token.SYMBOL && lx.isSymbol(':') && lx.peek(0) == '=') {
+                return SessionUse.CHANGES;
+            } else if (t == SqlLexer.Token.WORD && lx.peek(0) == '(') {
+                String name = lx.text().toLowerCase(Locale.ROOT);
+                if (LOCK_FUNCTIONS.contains(name)) {
+                    return SessionUse.CHANGES;
+                } else if (SESSION_FUNCTIONS.contains(name)) {
+                    use = SessionUse.READS;
+                }
+            }
+            // INTO @a, @b
+            into = lx.is("into") || (into && t == SqlLexer.Token.SYMBOL && lx.isSymbol(','));
+        }
+        return use;
+    }
+
+    /**
+     * Whether a transaction is open after the transaction statement sql, given whether one was open before.
+     */
+    static boolean inTransactionAfter(CharSequence sql, boolean open) {
+        SqlLexer lx = new SqlLexer(sql);
+        lx.next();
+        if (lx.is("start") || lx.is("begin") || lx.is("lock")) {
+            return true;
+        }
+        if (lx.is("unlock")) {
+            return false;
+        }
+        if (lx.is("xa")) {
+            // XA START/BEGIN open it, XA COMMIT/ROLLBACK close it, XA END/PREPARE do not change it
+            lx.next();
+            return lx.is("start") || lx.is("begin") || (open && !lx.is("commit") && !lx.is("rollback"));
+        }
+        if (lx.is("commit") || lx.is("rollback")) {
+            boolean rollback = lx.is("rollback");
+            boolean no = false;
+            boolean chain = false;
+            while (lx.next() != SqlLexer.Token.END) {
+                if (rollback && lx.is("to")) {
+                    return open; // ROLLBACK TO SAVEPOINT
+                } else if (lx.is("no")) {
+                    no = true;
+                } else if (lx.is("chain")) {
+                    chain = !no; // AND CHAIN starts the next transaction at once
+                }
+            }
+            return chain;
+        }
+        if (lx.is("set")) {
+            // SET [SESSION] autocommit = 0 opens a transaction, = 1 commits it; SET TRANSACTION changes nothing
+            while (lx.next() != SqlLexer.Token.END) {
+                if (lx.is("autocommit")) {
+                    SqlLexer.Token t;
+                    do {
+                        t = lx.next();
+                    } while (t == SqlLexer.Token.SYMBOL);
+                    String value = lx.text().toLowerCase(Locale.ROOT);
+                    if (value.equals("0") || value.equals("off") || value.equals("false")) {
+                        return true;
+                    } else if (value.equals("1") || value.equals("on") || value.equals("true")) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return open; // SAVEPOINT, RELEASE SAVEPOINT
+    }
+
+    /**
+     * Per-session routing: one lazily borrowed connection (with its own statement cache) per replica,
+     * plus read-your-writes and transaction stickiness.
+     */
+    public final class Session implements AutoCloseable {
+        private final StatementCache primary;
+        private final Map<Replica, StatementCache> connections = new HashMap<>();
+        private volatile long lastWriteMillis;
+        private volatile boolean inTransaction;
+        private volatile boolean pinnedToPrimary;
+
+        private Session(StatementCache primary) {
+            this.primary = primary;
+        }
+
+        /**
+         * Picks where the read sql runs, borrowing the session's connection to the chosen replica on first use.
+         * Reads of session state go to the primary. Called from the background worker.
+         */
+        public Route routeRead(String sql) {
+            SessionUse use = sessionUse(sql);
+            if (use == SessionUse.CHANGES) {
+                pinnedToPrimary = true;  // SELECT GET_LOCK(...), SELECT ... INTO @v
+            }
+            if (replicas.isEmpty() || inTransaction || pinnedToPrimary || use != SessionUse.NONE
+                    || System.currentTimeMillis() - lastWriteMillis < stickyMillis) {
+                return new Route(null, primary);
+            }
+            Replica replica = acquire();
+            if (replica == null) {
+                return new Route(null, primary);
+            }
+            try {
+                return new Route(replica, statementsFor(replica));
+            } catch (SQLException ex) {
+                replica.outstanding.decrementAndGet();
+                markDown(replica, ex);
+                return new Route(null, primary);
+            }
+        }
+
+        private synchronized StatementCache statementsFor(Replica replica) throws SQLException {
+            StatementCache statements = connections.get(replica);
+            if (statements == null) {
+                statements = new StatementCache(replica.pool.borrow(), 64);
+                connections.put(replica, statements);
+            }
+            return statements;
+        }
+
+        /**
+         * Takes the route's replica out of rotation after a connection failure and drops this session's
+         * connection to it. The caller retries the read on the primary.
+         */
+        public synchronized void failed(Route route, SQLException cause) {
+            markDown(route.replica(), cause);
+            StatementCache statements = connections.remove(route.replica());
+            if (statements != null) {
+                closeQuietly(statements);
+            }
+        }
+
+        /**
+         * Starts the read-your-writes window after work on the primary (a script or an import).
+         */
+        public void noteWrite() {
+            lastWriteMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * Records a statement that ran on the primary. Writes start the read-your-writes window,
+         * transaction statements open or close a transaction, and statements that change session state keep
+         * the session on the primary, whose connection no longer matches the replicas'.
+         */
+        public void executedOnPrimary(String sql, SqlLexer.Kind kind) {
+            noteWrite();
+            if (kind == SqlLexer.Kind.TRANSACTION) {
+                inTransaction = inTransactionAfter(sql, inTransaction);
+            } else if (sessionUse(sql) == SessionUse.CHANGES) {
+                pinnedToPrimary = true;
+            }
+        }
+
+        /**
+         * Returns the session's replica connections to their pools.
+         */
+        @Override
+        public synchronized void close() {
+            connections.values().forEach(Session::closeQuietly);
+            connections.clear();
+        }
+
+        private static void closeQuietly(StatementCache statements) {
+            Connection conn = statements.getConnection();
+            statements.close();
+            try {
+                conn.close();
+            } catch (SQLException ex) {
+                System.err.println("Failed to release replica connection: " + ex.getMessage());
+            }
+        }
+    }
+}
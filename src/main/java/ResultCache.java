@@ -0,0 +1,137 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ResultCache.java
+*/
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Client-side cache of complete SELECT results, keyed by normalized SQL text, database URL and user.
+ * Entries are evicted least-recently-used once the memory budget is exceeded, expire after a TTL,
+ * and are invalidated when a write on the same database touches one of the tables they read.
+ */
+public class ResultCache {
+    private final long maxBytes;
+    private final long ttlMillis;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private record Key(String sql, String url, String user) {
+    }
+
+    private record Entry(List<ColumnBatch> batches, Set<String> tables, long bytes, long createdMillis) {
+    }
+
+    public ResultCache(long maxBytes, long ttlMillis) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the cached result pages for the statement, or null on a miss.
+     */
+    public synchronized List<ColumnBatch> get(String sql, String url, String user) {
+        Key key = new Key(SqlText.normalize(sql), url, user);
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.createdMillis() > ttlMillis) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.batches();
+    }
+
+    /**
+     * Caches a complete result, evicting least recently used entries to stay within the memory budget.
+     * Results that read no table (SHOW, SELECT NOW()) are not cached, since no write would invalidate them.
+     */
+    public synchronized void put(String sql, String url, String user, List<ColumnBatch> batches) {
+        Set<String> tables = SqlLexer.tables(sql);
+        if (tables.isEmpty()) {
+            return;
+        }
+        long bytes = 0;
+        for (ColumnBatch batch : batches) {
+            bytes += batch.estimatedBytes();
+        }
+        if (bytes > maxBytes) {
+            return;
+        }
+        Key key = new Key(SqlText.normalize(sql), url, user);
+        remove(key);
+        entries.put(key, new Entry(List.copyOf(batches), tables, bytes, System.currentTimeMillis()));
+        currentBytes += bytes;
+
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            currentBytes -= eldest.getValue().bytes();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every entry for the database that reads one of the written tables.
+     * If the written tables could not be determined, every entry for the database is dropped.
+     */
+    public synchronized void invalidate(String url, Set<String> writtenTables) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (!e.getKey().url().equals(url)) {
+                continue;
+            }
+            Set<String> tables = e.getValue().tables();
+            if (writtenTables.isEmpty() || tables.isEmpty() || !Collections.disjoint(tables, writtenTables)) {
+                currentBytes -= e.getValue().bytes();
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    private void remove(Key key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            currentBytes -= old.bytes();
+        }
+    }
+
+    /**
+     * Short hit-rate summary appended to the status bar text.
+     */
+    public synchronized String describeHitRate() {
+        long lookups = hits + misses;
+        return String.format("cache %d/%d hits", hits, lookups);
+    }
+
+    /**
+     * Full metrics summary, shown as the status bar tooltip.
+     */
+    public synchronized String describeStats() {
+        long lookups = hits + misses;
+        return String.format("Result cache: %d hits / %d misses (%.0f%%), %d entries, %.1f MB, %d evicted, %d invalidated",
+                hits, misses, lookups == 0 ? 0.0 : hits * 100.0 / lookups, entries.size(),
+                currentBytes / (1024.0 * 1024.0), evictions, invalidations);
+    }
+}
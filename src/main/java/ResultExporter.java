@@ -0,0 +1,486 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ResultExporter.java
+*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes query results straight from the ResultSet to a CSV or JSON-lines file, one row at a time,
+ * through a FileChannel with a large direct buffer. Tables with a single integer primary key are split
+ * into key ranges that are exported in parallel on separate pooled connections and then concatenated
+ * in key order, so the output is the same as a single ordered export.
+ */
+public class ResultExporter {
+    private static final int BUFFER_BYTES = 4 * 1024 * 1024;
+    private static final int FETCH_SIZE = 1000;
+
+    public enum Format {
+        CSV, JSONL;
+
+        /**
+         * JSON lines for .jsonl/.json files, CSV otherwise.
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final Path file;
+    private final Format format;
+    private final int partitions;
+
+    private final AtomicLong rowsExported = new AtomicLong();
+    private volatile boolean aborted; // Set when one partition fails, so the others stop early
+    private int partitionsUsed = 1;
+    private long bytesWritten;
+    private long elapsedNanos;
+
+    public ResultExporter(ConnectionPool pool, Path file, Format format, int partitions) {
+        this.pool = pool;
+        this.file = file;
+        this.format = format;
+        this.partitions = Math.max(1, partitions);
+    }
+
+    /**
+     * Exports the result of an arbitrary SELECT in a single stream.
+     */
+    public void exportQuery(String sql, QueryExecutor.QueryTask task) throws SQLException, IOException {
+        long start = System.nanoTime();
+        task.setRowsVerb("exported");
+        boolean done = false;
+        try (Connection conn = pool.borrow();
+             PreparedStatement pstmt = prepareStreaming(conn, sql);
+             ChannelWriter out = new ChannelWriter(file, format)) {
+            task.setStatement(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                out.writeHeader(rs.getMetaData());
+                out.writeRows(rs, task);
+            }
+            bytesWritten = out.getBytesWritten();
+            done = true;
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+            if (!done) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Exports a whole table, partitioned by primary key range when the table has a single integer key.
+     */
+    public void exportTable(String table, QueryExecutor.QueryTask task) throws SQLException, IOException {
+        long start = System.nanoTime();
+        task.setRowsVerb("exported");
+        String quotedTable;
+        String key = null;
+        long min = 0;
+        long max = 0;
+        try (Connection conn = pool.borrow()) {
+            DatabaseMetaData meta = conn.getMetaData();
+            String quote = meta.getIdentifierQuoteString().trim();
+            quotedTable = quote(quote, table);
+            String keyColumn = integerPrimaryKey(meta, conn.getCatalog(), table);
+            if (keyColumn != null && partitions > 1) {
+                key = quote(quote, keyColumn);
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + quotedTable)) {
+                    rs.next();
+                    min = rs.getLong(1);
+                    max = rs.getLong(2);
+                    if (rs.wasNull() || max - min < 0) {
+                        key = null; // Empty table, or a key range too wide to split in a long
+                    }
+                }
+            }
+        }
+        if (key == null) {
+            exportQuery("SELECT * FROM " + quotedTable, task);
+            return;
+        }
+
+        // Split [min, max] into contiguous ranges; the last one is closed at max
+        long span = Math.max(1, (max - min) / partitions + 1);
+        List<long[]> ranges = new ArrayList<>();
+        for (long lo = min; lo <= max && ranges.size() < partitions; lo += span) {
+            ranges.add(new long[]{lo, ranges.size() == partitions - 1 ? max : Math.min(max, lo + span - 1)});
+            if (max - lo < span) {
+                break;
+            }
+        }
+        partitionsUsed = ranges.size();
+        String rangeSql = "SELECT * FROM " + quotedTable + " WHERE " + key + " BETWEEN ? AND ? ORDER BY " + key;
+
+        // The first range is written directly into the output file, the others into temporary files
+        List<Path> parts = new ArrayList<>();
+        boolean done = false;
+        try (ChannelWriter out = new ChannelWriter(file, format);
+             ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 1; i < ranges.size(); i++) {
+                    Path part = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".part", ".tmp");
+                    parts.add(part);
+                    long[] range = ranges.get(i);
+                    futures.add(workers.submit(() -> {
+                        try (ChannelWriter partOut = new ChannelWriter(part, format)) {
+                            exportRange(rangeSql, range, partOut, task, false);
+                        }
+                        return null;
+                    }));
+                }
+                exportRange(rangeSql, ranges.get(0), out, task, true);
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for export partitions", ex);
+                    } catch (ExecutionException ex) {
+                        if (ex.getCause() instanceof SQLException sqlEx) {
+                            throw sqlEx;
+                        }
+                        throw new IOException(ex.getCause());
+                    }
+                }
+                for (Path part : parts) {
+                    out.append(part);
+                }
+                bytesWritten = out.getBytesWritten();
+                done = true;
+            } catch (SQLException | IOException | RuntimeException ex) {
+                aborted = true; // Before closing the executor waits for the other partitions
+                throw ex;
+            }
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+            if (!done) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void exportRange(String sql, long[] range, ChannelWriter out, QueryExecutor.QueryTask task,
+                             boolean withHeader) throws SQLException, IOException {
+        try (Connection conn = pool.borrow();
+             PreparedStatement pstmt = prepareStreaming(conn, sql)) {
+            pstmt.setLong(1, range[0]);
+            pstmt.setLong(2, range[1]);
+            // Every range is registered, so Cancel also stops ranges still waiting for their first row
+            task.addStatement(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (withHeader) {
+                    out.writeHeader(rs.getMetaData());
+                }
+                out.writeRows(rs, task);
+            } finally {
+                task.removeStatement(pstmt);
+            }
+        }
+    }
+
+    /**
+     * A forward-only statement with a fetch size, which streams from a server-side cursor on MySQL.
+     */
+    private static PreparedStatement prepareStreaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(FETCH_SIZE);
+        return pstmt;
+    }
+
+    /**
+     * Returns the primary key column if the table has exactly one and it is an integer type, otherwise null.
+     */
+    private static String integerPrimaryKey(DatabaseMetaData meta, String catalog, String table) throws SQLException {
+        List<String> keys = new ArrayList<>();
+        try (ResultSet rs = meta.getPrimaryKeys(catalog, null, table)) {
+            while (rs.next()) {
+                keys.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (keys.size() != 1) {
+            return null;
+        }
+        try (ResultSet rs = meta.getColumns(catalog, null, table, keys.get(0))) {
+            if (rs.next()) {
+                return switch (rs.getInt("DATA_TYPE")) {
+                    case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> keys.get(0);
+                    default -> null;
+                };
+            }
+        }
+        return null;
+    }
+
+    private static String quote(String quote, String identifier) {
+        return quote.isEmpty() ? identifier : quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    /**
+     * One-line summary of rows and bytes written and throughput.
+     */
+    public String describe() {
+        long rows = rowsExported.get();
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        return String.format("Exported %,d rows (%.1f MB) to %s in %.2f s (%,.0f rows/s, %d partition%s)",
+                rows, bytesWritten / (1024.0 * 1024.0), file.getFileName(), seconds, rows / seconds,
+                partitionsUsed, partitionsUsed == 1 ? "" : "s");
+    }
+
+    /**
+     * Encodes rows into a direct buffer that is written to the file channel whenever it fills up.
+     */
+    private class ChannelWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final StringBuilder line = new StringBuilder(1024);
+        private final Format format;
+        private String[] names;       // JSON keys, already quoted and escaped
+        private boolean[] numeric;    // Written unquoted in JSON
+        private boolean[] bool;
+        private boolean[] bits;       // BIT(n > 1): written as its unsigned value
+
+        ChannelWriter(Path file, Format format) throws IOException {
+            this.format = format;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * Remembers the column layout; CSV output also gets a header line.
+         */
+        void writeHeader(ResultSetMetaData meta) throws SQLException, IOException {
+            prepare(meta);
+            if (format == Format.CSV) {
+                for (int i = 0; i < names.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    appendCsv(meta.getColumnLabel(i + 1));
+                }
+                line.append('\n');
+                flushLine();
+            }
+        }
+
+        void writeRows(ResultSet rs, QueryExecutor.QueryTask task) throws SQLException, IOException {
+            if (names == null) {
+                prepare(rs.getMetaData());
+            }
+            long pending = 0;
+            while (!task.isCancelled() && !aborted && rs.next()) {
+                if (format == Format.CSV) {
+                    for (int i = 0; i < names.length; i++) {
+                        if (i > 0) {
+                            line.append(',');
+                        }
+                        String value = bits[i] ? bitValue(rs, i + 1) : rs.getString(i + 1);
+                        if (value != null) {
+                            appendCsv(value);
+                        }
+                    }
+                } else {
+                    line.append('{');
+                    for (int i = 0; i < names.length; i++) {
+                        if (i > 0) {
+                            line.append(',');
+                        }
+                        line.append(names[i]).append(':');
+                        if (bool[i]) {
+                            boolean value = rs.getBoolean(i + 1);
+                            line.append(rs.wasNull() ? "null" : value ? "true" : "false");
+                        } else {
+                            String value = bits[i] ? bitValue(rs, i + 1) : rs.getString(i + 1);
+                            if (value == null) {
+                                line.append("null");
+                            } else if (numeric[i]) {
+                                line.append(value);
+                            } else {
+                                appendJson(value);
+                            }
+                        }
+                    }
+                    line.append('}');
+                }
+                line.append('\n');
+                flushLine();
+                if (++pending == FETCH_SIZE) {
+                    task.addRows(pending);
+                    rowsExported.addAndGet(pending);
+                    pending = 0;
+                }
+            }
+            task.addRows(pending);
+            rowsExported.addAndGet(pending);
+            if (task.isCancelled() || aborted) {
+                throw new SQLException("Export cancelled");
+            }
+        }
+
+        private void prepare(ResultSetMetaData meta) throws SQLException {
+            int n = meta.getColumnCount();
+            names = new String[n];
+            numeric = new boolean[n];
+            bool = new boolean[n];
+            bits = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                int start = line.length();
+                appendJson(meta.getColumnLabel(i + 1));
+                names[i] = line.substring(start);
+                line.setLength(start);
+                switch (meta.getColumnType(i + 1)) {
+                    case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.REAL, Types.FLOAT,
+                         Types.DOUBLE, Types.DECIMAL, Types.NUMERIC -> numeric[i] = true;
+                    case Types.BOOLEAN -> bool[i] = true;
+                    case Types.BIT -> {
+                        // BIT(1) is a flag; wider BIT columns hold numbers, which getString returns as raw bytes
+                        bool[i] = meta.getPrecision(i + 1) <= 1;
+                        bits[i] = !bool[i];
+                        numeric[i] = bits[i];
+                    }
+                    default -> {
+                        // Written as a JSON string
+                    }
+                }
+            }
+        }
+
+        private static String bitValue(ResultSet rs, int column) throws SQLException {
+            long value = rs.getLong(column);
+            return rs.wasNull() ? null : Long.toUnsignedString(value);
+        }
+
+        private void appendCsv(String value) {
+            boolean needsQuotes = false;
+            for (int i = 0; i < value.length() && !needsQuotes; i++) {
+                char ch = value.charAt(i);
+                needsQuotes = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+            }
+            if (!needsQuotes) {
+                line.append(value);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '"') {
+                    line.append('"');
+                }
+                line.append(ch);
+            }
+            line.append('"');
+        }
+
+        private void appendJson(String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                switch (ch) {
+                    case '"' -> line.append("\\\"");
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\t' -> line.append("\\t");
+                    default -> {
+                        if (ch < 0x20) {
+                            line.append(String.format("\\u%04x", (int) ch));
+                        } else {
+                            line.append(ch);
+                        }
+                    }
+                }
+            }
+            line.append('"');
+        }
+
+        /**
+         * Encodes the pending line into the buffer, draining the buffer to the channel as often as needed.
+         */
+        private void flushLine() throws IOException {
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    break;
+                }
+            }
+            encoder.reset();
+            line.setLength(0);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Appends a finished partition file with a channel-to-channel transfer.
+         */
+        void append(Path part) throws IOException {
+            drain();
+            try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, channel);
+                }
+            }
+        }
+
+        long getBytesWritten() throws IOException {
+            return channel.position() + buffer.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
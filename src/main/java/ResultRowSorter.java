@@ -0,0 +1,248 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ResultRowSorter.java
+*/
+
+import javax.swing.*;
+import javax.swing.table.TableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Client-side sort and filter for the result table, replacing TableRowSorter (which compares boxed cells one pair
+ * at a time). Clicking a header cycles the column through ascending, descending and unsorted; the order comes
+ * from SortIndex and the filter from FilterIndex. While nothing is sorted or filtered the view is the model itself,
+ * so streaming results are not slowed down. Rows appended while a sort or filter is active are merged into the
+ * view after a short pause, so a result that is still loading is not re-sorted once per page.
+ */
+public class ResultRowSorter extends RowSorter<TableModel> {
+    private static final int MAX_SORT_KEYS = 3;
+    private static final int REFRESH_DELAY_MILLIS = 250;
+
+    private final TableModel model;
+    private List<SortKey> sortKeys = List.of();
+    private String filterText = "";
+    private FilterIndex filterIndex;    // Built on the first filter
+    private int[] sortedRows;           // Model rows in sort order, null when unsorted
+    private int[] viewToModel;          // null when the view is the model
+    private int[] modelToView;          // Built on demand
+    private int modelRowCount;
+    private long lastSortMillis;
+    private final Timer refreshTimer;
+
+    public ResultRowSorter(TableModel model) {
+        this.model = model;
+        modelRowCount = model.getRowCount();
+        refreshTimer = new Timer(REFRESH_DELAY_MILLIS, e -> refresh(true));
+        refreshTimer.setRepeats(false);
+    }
+
+    @Override
+    public TableModel getModel() {
+        return model;
+    }
+
+    /**
+     * Shows only rows with a cell containing the text, ignoring case. An empty text shows every row.
+     */
+    public void setFilterText(String text) {
+        if (text.equals(filterText)) {
+            return;
+        }
+        filterText = text;
+        refresh(false);
+    }
+
+    /**
+     * How long the last sort took, for the status line.
+     */
+    public long getLastSortMillis() {
+        return lastSortMillis;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        List<SortKey> keys = new ArrayList<>(sortKeys);
+        SortOrder order = SortOrder.ASCENDING;
+        if (!keys.isEmpty() && keys.get(0).getColumn() == column) {
+            order = switch (keys.get(0).getSortOrder()) {
+                case ASCENDING -> SortOrder.DESCENDING;
+                case DESCENDING -> SortOrder.UNSORTED;
+                default -> SortOrder.ASCENDING;
+            };
+        }
+        keys.removeIf(key -> key.getColumn() == column);
+        if (order != SortOrder.UNSORTED) {
+            keys.add(0, new SortKey(column, order));
+        } else {
+            keys.clear(); // Back to the order the server returned
+        }
+        setSortKeys(keys.size() > MAX_SORT_KEYS ? keys.subList(0, MAX_SORT_KEYS) : keys);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> copy = keys == null ? List.of() : List.copyOf(keys);
+        if (copy.equals(sortKeys)) {
+            return;
+        }
+        sortKeys = copy;
+        sortedRows = null;
+        fireSortOrderChanged();
+        refresh(false);
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            return index;
+        }
+        if (index < 0 || index >= viewToModel.length) {
+            throw new IndexOutOfBoundsException("Invalid view index " + index);
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (viewToModel == null) {
+            return index;
+        }
+        if (index < 0 || index >= modelRowCount) {
+            throw new IndexOutOfBoundsException("Invalid model index " + index);
+        }
+        if (modelToView == null) {
+            modelToView = new int[modelRowCount];
+            Arrays.fill(modelToView, -1);
+            for (int i = 0; i < viewToModel.length; i++) {
+                modelToView[viewToModel[i]] = i;
+            }
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewToModel == null ? modelRowCount : viewToModel.length;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return modelRowCount;
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        filterIndex = null;
+        sortKeys = List.of();
+        fireSortOrderChanged();
+        allRowsChanged();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        filterIndex = null;
+        sortedRows = null;
+        refresh(false);
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        if (viewToModel == null) {
+            modelRowCount = model.getRowCount();
+        } else if (firstRow == modelRowCount) {
+            // Appended: the existing mapping stays valid until the pause is over
+            sortedRows = null;
+            refreshTimer.restart();
+        } else {
+            allRowsChanged();
+        }
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        if (viewToModel == null) {
+            modelRowCount = model.getRowCount();
+        } else {
+            allRowsChanged();
+        }
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        if (viewToModel != null) {
+            filterIndex = null;
+            sortedRows = null;
+            refreshTimer.restart();
+        }
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rowsUpdated(firstRow, endRow);
+    }
+
+    /**
+     * Recomputes the view from the sort keys and filter and tells the table.
+     * rowsAppended is true when the model only grew since the current view was computed.
+     */
+    private void refresh(boolean rowsAppended) {
+        refreshTimer.stop();
+        int[] previous = viewToModel;
+        int previousModelRows = modelRowCount;
+        modelRowCount = model.getRowCount();
+        boolean sorted = sortKeys.stream().anyMatch(key -> key.getSortOrder() != SortOrder.UNSORTED);
+        if (sorted && (sortedRows == null || sortedRows.length != modelRowCount)) {
+            long start = System.nanoTime();
+            sortedRows = SortIndex.permutation(model, sortKeys);
+            lastSortMillis = (System.nanoTime() - start) / 1_000_000;
+        } else if (!sorted) {
+            sortedRows = null;
+        }
+
+        int[] view = sortedRows;
+        if (!filterText.isEmpty()) {
+            if (filterIndex == null) {
+                filterIndex = new FilterIndex(model);
+            }
+            int[] matches = filterIndex.match(filterText);
+            if (view == null) {
+                view = matches;
+            } else {
+                boolean[] keep = new boolean[modelRowCount];
+                for (int row : matches) {
+                    keep[row] = true;
+                }
+                int[] filtered = new int[matches.length];
+                int n = 0;
+                for (int row : view) {
+                    if (keep[row]) {
+                        filtered[n++] = row;
+                    }
+                }
+                view = filtered;
+            }
+        }
+        viewToModel = view;
+        modelToView = null;
+        // Rows appended to an unsorted, unfiltered view need no event beyond the model's own
+        if (!(rowsAppended && previous == null && view == null)) {
+            fireRowSorterChanged(previous == null ? identity(previousModelRows) : previous);
+        }
+    }
+
+    private static int[] identity(int n) {
+        int[] rows = new int[n];
+        Arrays.setAll(rows, i -> i);
+        return rows;
+    }
+}
@@ -0,0 +1,662 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ResultSnapshot.java
+*/
+
+import javax.swing.table.TableModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A saved query result in a compact columnar file that can be reopened without a database connection.
+ * Rows are cut into groups of GROUP_ROWS; each column of each group is one block, encoded for its type and then
+ * deflated (or stored as is when deflating does not help):
+ * <ul>
+ * <li>integers, dates, timestamps and decimals as zig-zag varint deltas from the previous row,</li>
+ * <li>strings as a dictionary of the block's distinct values plus a varint code per row,</li>
+ * <li>doubles as raw IEEE bits, and anything else as its display text.</li>
+ * </ul>
+ * Every block starts with a flag and, if the block has NULLs, a null bitmap. A footer at the end of the file lists
+ * the columns and the offset, length and CRC32C of every block, so opening a snapshot maps the file and reads only
+ * the footer; a block is inflated and decoded when the table first shows one of its rows.
+ * <p>
+ * File layout (big-endian): MAGIC, VERSION, blocks..., footer, then footer offset, footer length, footer CRC32C
+ * and MAGIC again.
+ */
+public final class ResultSnapshot {
+    public static final String EXTENSION = "snapshot";
+    static final int GROUP_ROWS = 1 << 15;
+    private static final int MAGIC = 0x54545352; // "TTSR"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = 20;
+
+    // How one block's values are laid out
+    private enum Encoding { DELTA, DOUBLE, DECIMAL, DICTIONARY, TEXT }
+
+    private static final Encoding[] ENCODINGS = Encoding.values();
+
+    private record BlockRef(Encoding encoding, long offset, int storedLength, int rawLength, int crc) {
+    }
+
+    // Rows [from, to) of one fetched batch
+    private record Slice(ColumnBatch batch, int from, int to) {
+    }
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final String sql;
+    private final Instant savedAt;
+    private final int rowCount;
+    private final String[] columnNames;
+    private final ColumnBatch.Kind[] kinds;
+    private final BlockRef[][] blocks;  // [column][group]
+
+    private ResultSnapshot(Path file, ByteBuffer buffer, String sql, Instant savedAt, int rowCount,
+                           String[] columnNames, ColumnBatch.Kind[] kinds, BlockRef[][] blocks) {
+        this.file = file;
+        this.buffer = buffer;
+        this.sql = sql;
+        this.savedAt = savedAt;
+        this.rowCount = rowCount;
+        this.columnNames = columnNames;
+        this.kinds = kinds;
+        this.blocks = blocks;
+    }
+
+    /**
+     * The rows shown by a table model as batches to write: a ColumnarTableModel's own batches, otherwise a
+     * copy of its cells. Call on the EDT.
+     */
+    public static List<ColumnBatch> batchesOf(TableModel model) {
+        if (model instanceof ColumnarTableModel columnar) {
+            return columnar.getBatches();
+        }
+        return List.of(ColumnBatch.fromTableModel(model));
+    }
+
+    /**
+     * Writes the rows of the batches (which must have the same columns) to file, replacing it atomically.
+     * sql is kept as a note of where the rows came from (may be null). The task (may be null) receives the rows
+     * saved so far and can cancel the save. Returns the size of the file.
+     */
+    public static long write(Path file, List<ColumnBatch> batches, String sql, QueryExecutor.QueryTask task)
+            throws IOException {
+        if (task != null) {
+            task.setRowsVerb("saved");
+        }
+        ColumnBatch first = batches.get(0);
+        int cols = first.getColumnCount();
+        long totalRows = 0;
+        for (ColumnBatch batch : batches) {
+            totalRows += batch.getRowCount();
+        }
+        if (totalRows > Integer.MAX_VALUE) {
+            throw new IOException("Too many rows for a snapshot: " + totalRows);
+        }
+        ColumnBatch.Kind[] kinds = new ColumnBatch.Kind[cols];
+        for (int c = 0; c < cols; c++) {
+            kinds[c] = first.getColumn(c).kind();
+            for (ColumnBatch batch : batches) {
+                if (batch.getColumn(c).kind() != kinds[c]) {
+                    kinds[c] = ColumnBatch.Kind.OBJECT; // Mixed storage: saved as text
+                }
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int groups = (int) ((totalRows + GROUP_ROWS - 1) / GROUP_ROWS);
+        List<List<BlockRef>> refs = new ArrayList<>();
+        for (int c = 0; c < cols; c++) {
+            refs.add(new ArrayList<>(groups));
+        }
+        boolean done = false;
+        CRC32C crc = new CRC32C();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+            int batchIndex = 0;
+            int batchRow = 0;
+            for (int g = 0; g < groups; g++) {
+                if (task != null && task.isCancelled()) {
+                    throw new IOException("Save cancelled");
+                }
+                // Rows of this group, possibly spanning several batches
+                List<Slice> slices = new ArrayList<>();
+                int needed = (int) Math.min(GROUP_ROWS, totalRows - (long) g * GROUP_ROWS);
+                int rows = needed;
+                while (needed > 0) {
+                    ColumnBatch batch = batches.get(batchIndex);
+                    int take = Math.min(needed, batch.getRowCount() - batchRow);
+                    if (take > 0) {
+                        slices.add(new Slice(batch, batchRow, batchRow + take));
+                        needed -= take;
+                        batchRow += take;
+                    }
+                    if (batchRow == batch.getRowCount()) {
+                        batchIndex++;
+                        batchRow = 0;
+                    }
+                }
+                for (int c = 0; c < cols; c++) {
+                    Encoding encoding = encodingOf(kinds[c], slices, c);
+                    byte[] raw = encode(encoding, slices, c, rows);
+                    byte[] stored = deflate(deflater, raw);
+                    crc.reset();
+                    crc.update(stored);
+                    refs.get(c).add(new BlockRef(encoding, out.position(), stored.length, raw.length,
+                            (int) crc.getValue()));
+                    writeFully(out, ByteBuffer.wrap(stored));
+                }
+                if (task != null) {
+                    task.addRows(rows);
+                }
+            }
+
+            // Footer: description of the result and the block index
+            Output footer = new Output();
+            footer.writeString(sql == null ? "" : sql);
+            footer.writeVarLong(System.currentTimeMillis());
+            footer.writeVarLong(totalRows);
+            footer.writeVarLong(cols);
+            for (int c = 0; c < cols; c++) {
+                footer.writeString(first.getColumnName(c));
+                footer.writeString(kinds[c].name());
+                for (BlockRef ref : refs.get(c)) {
+                    footer.write(ref.encoding().ordinal());
+                    footer.writeVarLong(ref.offset());
+                    footer.writeVarLong(ref.storedLength());
+                    footer.writeVarLong(ref.rawLength());
+                    footer.writeVarLong(ref.crc() & 0xFFFFFFFFL);
+                }
+            }
+            byte[] footerBytes = footer.toByteArray();
+            crc.reset();
+            crc.update(footerBytes);
+            long footerOffset = out.position();
+            writeFully(out, ByteBuffer.wrap(footerBytes));
+            writeFully(out, ByteBuffer.allocate(TRAILER_BYTES).putLong(footerOffset).putInt(footerBytes.length)
+                    .putInt((int) crc.getValue()).putInt(MAGIC).flip());
+            out.force(true);
+            done = true;
+        } finally {
+            deflater.end();
+            if (!done) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(file);
+    }
+
+    /**
+     * Maps a snapshot file and reads its footer. No block is decoded until it is asked for.
+     */
+    public static ResultSnapshot open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 8 + TRAILER_BYTES) {
+                throw new IOException("Not a result snapshot: " + file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // Stays valid after the channel is closed
+        }
+        int end = buffer.capacity();
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(end - 4) != MAGIC) {
+            throw new IOException("Not a result snapshot: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + file);
+        }
+        long footerOffset = buffer.getLong(end - TRAILER_BYTES);
+        int footerLength = buffer.getInt(end - 12);
+        if (footerOffset < 8 || footerLength < 0 || footerOffset + footerLength != end - TRAILER_BYTES) {
+            throw new IOException("Corrupt snapshot footer: " + file);
+        }
+        ByteBuffer footer = buffer.slice((int) footerOffset, footerLength);
+        CRC32C crc = new CRC32C();
+        crc.update(footer.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(end - 8)) {
+            throw new IOException("Corrupt snapshot footer: " + file);
+        }
+
+        try {
+            String sql = readString(footer);
+            Instant savedAt = Instant.ofEpochMilli(readVarLong(footer));
+            int rows = (int) readVarLong(footer);
+            int cols = (int) readVarLong(footer);
+            int groups = (rows + GROUP_ROWS - 1) / GROUP_ROWS;
+            String[] names = new String[cols];
+            ColumnBatch.Kind[] kinds = new ColumnBatch.Kind[cols];
+            BlockRef[][] blocks = new BlockRef[cols][groups];
+            for (int c = 0; c < cols; c++) {
+                names[c] = readString(footer);
+                kinds[c] = ColumnBatch.Kind.valueOf(readString(footer));
+                for (int g = 0; g < groups; g++) {
+                    BlockRef ref = new BlockRef(ENCODINGS[footer.get()], readVarLong(footer),
+                            (int) readVarLong(footer), (int) readVarLong(footer), (int) readVarLong(footer));
+                    if (ref.offset() < 8 || ref.offset() + ref.storedLength() > footerOffset) {
+                        throw new IOException("Corrupt snapshot index: " + file);
+                    }
+                    blocks[c][g] = ref;
+                }
+            }
+            return new ResultSnapshot(file, buffer, sql.isEmpty() ? null : sql, savedAt, rows, names, kinds, blocks);
+        } catch (RuntimeException ex) {
+            // Out-of-range enum ordinals, names or buffer reads
+            throw new IOException("Corrupt snapshot footer: " + file, ex);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * The SQL the rows came from, or null if it was not recorded.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public Instant getSavedAt() {
+        return savedAt;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * One-line summary for the status line.
+     */
+    public String describe() {
+        return String.format("%s: %,d rows, saved %s", file.getFileName(), rowCount,
+                LocalDateTime.ofInstant(savedAt, ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * Inflates and decodes the block holding rows [group * GROUP_ROWS, ...) of a column.
+     * Throws IllegalStateException if the block is damaged.
+     */
+    Block readBlock(int column, int group) {
+        BlockRef ref = blocks[column][group];
+        int rows = Math.min(GROUP_ROWS, rowCount - group * GROUP_ROWS);
+        ByteBuffer stored = buffer.slice((int) ref.offset(), ref.storedLength());
+        CRC32C crc = new CRC32C();
+        crc.update(stored.duplicate());
+        if ((int) crc.getValue() != ref.crc()) {
+            throw new IllegalStateException("Corrupt snapshot block in " + file);
+        }
+        ByteBuffer raw;
+        if (ref.storedLength() == ref.rawLength()) {
+            raw = stored;
+        } else {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                byte[] bytes = new byte[ref.rawLength()];
+                int n = 0;
+                while (n < bytes.length && !inflater.finished()) {
+                    int read = inflater.inflate(bytes, n, bytes.length - n);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += read;
+                }
+                if (n != bytes.length) {
+                    throw new IllegalStateException("Truncated snapshot block in " + file);
+                }
+                raw = ByteBuffer.wrap(bytes);
+            } catch (DataFormatException ex) {
+                throw new IllegalStateException("Corrupt snapshot block in " + file, ex);
+            } finally {
+                inflater.end();
+            }
+        }
+        return decode(ref.encoding(), kinds[column], raw, rows);
+    }
+
+    private static Encoding encodingOf(ColumnBatch.Kind kind, List<Slice> slices, int c) {
+        return switch (kind) {
+            case INT, LONG, DATE, TIMESTAMP -> Encoding.DELTA;
+            case DOUBLE, FLOAT -> Encoding.DOUBLE;
+            case STRING -> Encoding.DICTIONARY;
+            case OBJECT -> Encoding.TEXT;
+            case DECIMAL -> {
+                // Unscaled longs only if every value of the block has the column's scale and fits
+                int scale = ((ColumnBatch.DecimalColumn) slices.get(0).batch().getColumn(c)).getScale();
+                for (Slice slice : slices) {
+                    ColumnBatch.DecimalColumn decimals = (ColumnBatch.DecimalColumn) slice.batch().getColumn(c);
+                    for (int r = slice.from(); r < slice.to(); r++) {
+                        if (!decimals.isNull(r) && (!decimals.isCompact(r) || decimals.getScale() != scale)) {
+                            yield Encoding.TEXT;
+                        }
+                    }
+                }
+                yield Encoding.DECIMAL;
+            }
+        };
+    }
+
+    private static byte[] encode(Encoding encoding, List<Slice> slices, int c, int rows) {
+        Output out = new Output();
+        long[] nulls = new long[(rows + 63) >>> 6];
+        boolean anyNull = false;
+        int row = 0;
+        for (Slice slice : slices) {
+            ColumnBatch.Column column = slice.batch().getColumn(c);
+            for (int r = slice.from(); r < slice.to(); r++, row++) {
+                if (column.isNull(r)) {
+                    nulls[row >>> 6] |= 1L << row;
+                    anyNull = true;
+                }
+            }
+        }
+        out.write(anyNull ? 1 : 0);
+        if (anyNull) {
+            for (long word : nulls) {
+                out.writeLong(word);
+            }
+        }
+        switch (encoding) {
+            case DELTA, DECIMAL -> {
+                if (encoding == Encoding.DECIMAL) {
+                    out.writeVarLong(((ColumnBatch.DecimalColumn) slices.get(0).batch().getColumn(c)).getScale());
+                }
+                long previous = 0;
+                for (Slice slice : slices) {
+                    ColumnBatch.Column column = slice.batch().getColumn(c);
+                    for (int r = slice.from(); r < slice.to(); r++) {
+                        // NULLs repeat the previous value, so they cost a zero delta
+                        long v = column.isNull(r) ? previous : longValue(column, r);
+                        out.writeVarLong(zigZag(v - previous));
+                        previous = v;
+                    }
+                }
+            }
+            case DOUBLE -> {
+                for (Slice slice : slices) {
+                    ColumnBatch.DoubleColumn doubles = (ColumnBatch.DoubleColumn) slice.batch().getColumn(c);
+                    for (int r = slice.from(); r < slice.to(); r++) {
+                        out.writeLong(doubles.isNull(r) ? 0 : Double.doubleToRawLongBits(doubles.getDouble(r)));
+                    }
+                }
+            }
+            case DICTIONARY -> {
+                // Codes are local to the block, so a block decodes without any other block
+                Map<String, Integer> codes = new HashMap<>();
+                List<String> dictionary = new ArrayList<>();
+                int[] rowCodes = new int[rows];
+                row = 0;
+                for (Slice slice : slices) {
+                    ColumnBatch.StringColumn strings = (ColumnBatch.StringColumn) slice.batch().getColumn(c);
+                    for (int r = slice.from(); r < slice.to(); r++, row++) {
+                        if (!strings.isNull(r)) {
+                            String v = strings.getString(r);
+                            Integer code = codes.get(v);
+                            if (code == null) {
+                                code = dictionary.size();
+                                codes.put(v, code);
+                                dictionary.add(v);
+                            }
+                            rowCodes[row] = code;
+                        }
+                    }
+                }
+                out.writeVarLong(dictionary.size());
+                for (String v : dictionary) {
+                    out.writeString(v);
+                }
+                for (int code : rowCodes) {
+                    out.writeVarLong(code);
+                }
+            }
+            case TEXT -> {
+                for (Slice slice : slices) {
+                    ColumnBatch.Column column = slice.batch().getColumn(c);
+                    for (int r = slice.from(); r < slice.to(); r++) {
+                        out.writeString(column.isNull(r) ? "" : String.valueOf(column.getValue(r)));
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static long longValue(ColumnBatch.Column column, int r) {
+        if (column instanceof ColumnBatch.IntColumn ints) {
+            return ints.getInt(r);
+        } else if (column instanceof ColumnBatch.LongColumn longs) {
+            return longs.getLong(r);
+        }
+        return ((ColumnBatch.DecimalColumn) column).getUnscaled(r);
+    }
+
+    private static Block decode(Encoding encoding, ColumnBatch.Kind kind, ByteBuffer in, int rows) {
+        long[] nulls = null;
+        if (in.get() != 0) {
+            nulls = new long[(rows + 63) >>> 6];
+            for (int i = 0; i < nulls.length; i++) {
+                nulls[i] = in.getLong();
+            }
+        }
+        Block block = new Block(kind, nulls);
+        switch (encoding) {
+            case DELTA, DECIMAL -> {
+                block.scale = encoding == Encoding.DECIMAL ? (int) readVarLong(in) : 0;
+                block.decimal = encoding == Encoding.DECIMAL;
+                block.longs = new long[rows];
+                long previous = 0;
+                for (int r = 0; r < rows; r++) {
+                    previous += unZigZag(readVarLong(in));
+                    block.longs[r] = previous;
+                }
+            }
+            case DOUBLE -> {
+                block.doubles = new double[rows];
+                for (int r = 0; r < rows; r++) {
+                    block.doubles[r] = Double.longBitsToDouble(in.getLong());
+                }
+            }
+            case DICTIONARY -> {
+                block.dictionary = new String[(int) readVarLong(in)];
+                for (int i = 0; i < block.dictionary.length; i++) {
+                    block.dictionary[i] = readString(in);
+                }
+                block.codes = new int[rows];
+                for (int r = 0; r < rows; r++) {
+                    block.codes[r] = (int) readVarLong(in);
+                }
+            }
+            case TEXT -> {
+                block.objects = new Object[rows];
+                for (int r = 0; r < rows; r++) {
+                    String text = readString(in);
+                    // Decimals that did not fit a long come back as BigDecimal; other objects stay text
+                    block.objects[r] = kind == ColumnBatch.Kind.DECIMAL && !block.isNull(r)
+                            ? new BigDecimal(text) : text;
+                }
+            }
+        }
+        return block;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] out = new byte[raw.length];
+        int n = 0;
+        while (!deflater.finished() && n < out.length) {
+            n += deflater.deflate(out, n, out.length - n);
+        }
+        // Stored as is unless deflating made it smaller; equal lengths mark a block that is not deflated
+        return deflater.finished() && n < raw.length ? Arrays.copyOf(out, n) : raw;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Growable big-endian byte buffer with varints
+    private static final class Output extends ByteArrayOutputStream {
+        void writeLong(long v) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (v >>> shift));
+            }
+        }
+
+        void writeVarLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeString(String v) {
+            byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * The decoded values of one column of one row group.
+     */
+    static final class Block {
+        private final ColumnBatch.Kind kind;
+        private final long[] nulls;  // null when the block has no NULLs
+        private long[] longs;
+        private boolean decimal;
+        private int scale;
+        private double[] doubles;
+        private String[] dictionary;
+        private int[] codes;
+        private Object[] objects;
+
+        private Block(ColumnBatch.Kind kind, long[] nulls) {
+            this.kind = kind;
+            this.nulls = nulls;
+        }
+
+        boolean isNull(int row) {
+            return nulls != null && (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * Boxed value of a cell (null for SQL NULL), matching ColumnBatch.getValue.
+         */
+        Object getValue(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            if (longs != null) {
+                long v = longs[row];
+                if (decimal) {
+                    return BigDecimal.valueOf(v, scale);
+                }
+                return switch (kind) {
+                    case INT -> (int) v;
+                    case DATE -> LocalDate.ofEpochDay(v);
+                    case TIMESTAMP -> ColumnBatch.TimestampColumn.toTimestamp(v);
+                    default -> v;
+                };
+            }
+            if (doubles != null) {
+                return kind == ColumnBatch.Kind.FLOAT ? (Object) (float) doubles[row] : doubles[row];
+            }
+            if (codes != null) {
+                return dictionary[codes[row]];
+            }
+            return objects[row];
+        }
+
+        /**
+         * Rough heap footprint, for the decoded block cache.
+         */
+        long estimatedBytes() {
+            long bytes = 64 + (nulls == null ? 0 : nulls.length * 8L);
+            if (longs != null) {
+                bytes += longs.length * 8L;
+            } else if (doubles != null) {
+                bytes += doubles.length * 8L;
+            } else if (codes != null) {
+                bytes += codes.length * 4L;
+                for (String v : dictionary) {
+                    bytes += 40 + v.length() * 2L;
+                }
+            } else {
+                for (Object v : objects) {
+                    bytes += 16 + (v == null ? 0 : 40 + v.toString().length() * 2L);
+                }
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SchemaCache.java
+*/
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side copy of the table and column names of one database as seen by one user, for SQL completion.
+ * It is loaded from DatabaseMetaData in the background after connecting (one table query and one column query
+ * for the whole schema) and refreshed table by table when the session runs DDL, so lookups never touch the
+ * server. Names are held in sorted arrays of lower-cased keys: a prefix lookup is a binary search followed by
+ * a scan of the matching run. Lookups read an immutable snapshot and are safe from any thread.
+ */
+public class SchemaCache {
+    private static final String[] TABLE_TYPES = {"TABLE", "VIEW"};
+
+    private static final Map<String, SchemaCache> CACHES = new ConcurrentHashMap<>();
+
+    private final String url;
+    private final ReentrantLock loading = new ReentrantLock();  // One load or refresh at a time
+    private volatile Schema schema = Schema.EMPTY;
+
+    /**
+     * Names sorted by lower-cased key. keys[i] is names[i] lower-cased.
+     */
+    static final class Names {
+        static final Names EMPTY = new Names(new String[0], new String[0]);
+
+        private final String[] keys;
+        private final String[] names;
+
+        private Names(String[] keys, String[] names) {
+            this.keys = keys;
+            this.names = names;
+        }
+
+        static Names of(Collection<String> names) {
+            // Sorted by the keys themselves, so the binary search and the sort agree for any characters
+            String[][] pairs = new String[names.size()][];
+            int n = 0;
+            for (String name : names) {
+                pairs[n++] = new String[]{name.toLowerCase(Locale.ROOT), name};
+            }
+            Arrays.sort(pairs, (a, b) -> a[0].compareTo(b[0]));
+            String[] keys = new String[n];
+            String[] sorted = new String[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = pairs[i][0];
+                sorted[i] = pairs[i][1];
+            }
+            return new Names(keys, sorted);
+        }
+
+        /**
+         * Adds up to limit names starting with the lower-cased prefix to out, in order.
+         */
+        void addStartingWith(String prefix, int limit, Collection<String> out) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {  // First key >= prefix
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < keys.length && out.size() < limit && keys[i].startsWith(prefix); i++) {
+                out.add(names[i]);
+            }
+        }
+    }
+
+    /**
+     * One consistent view of the schema: the table names and each table's column names, by lower-cased table.
+     */
+    private record Schema(Names tables, Map<String, Names> columns, boolean loaded) {
+        static final Schema EMPTY = new Schema(Names.EMPTY, Map.of(), false);
+    }
+
+    private SchemaCache(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the shared cache for the given database URL and user, creating it (empty) on first use.
+     */
+    public static SchemaCache forConnection(String url, String user) {
+        return CACHES.computeIfAbsent(url + '\u0000' + user, k -> new SchemaCache(url));
+    }
+
+    /**
+     * True once the schema has been loaded at least once.
+     */
+    public boolean isLoaded() {
+        return schema.loaded();
+    }
+
+    /**
+     * Reloads every table and column in the background on a connection borrowed from the pool. Until it
+     * finishes, lookups see the previous load (or nothing).
+     */
+    public void loadAsync(ConnectionPool pool) {
+        Thread.ofVirtual().name("schema-cache-load").start(() -> {
+            loading.lock();
+            try (Connection conn = pool.borrow()) {
+                schema = read(conn.getMetaData(), conn.getCatalog(), conn.getSchema(), null, Map.of());
+            } catch (SQLException ex) {
+                System.err.println("Failed to load the schema of " + url + ": " + ex.getMessage());
+            } finally {
+                loading.unlock();
+            }
+        });
+    }
+
+    /**
+     * Brings the cache up to date after a statement the session ran. Statements that create, alter or drop
+     * tables re-read the table list and the columns of just the tables they name; other schema changes reload
+     * everything, and statements that change no names (TRUNCATE, GRANT, indexes) are ignored.
+     */
+    public void refreshAfter(String sql, ConnectionPool pool) {
+        if (SqlLexer.classify(sql) != SqlLexer.Kind.DDL) {
+            return;
+        }
+        SqlLexer lx = new SqlLexer(sql);
+        lx.next();
+        if (lx.is("truncate") || lx.is("grant") || lx.is("revoke")) {
+            return;
+        }
+        boolean rename = lx.is("rename");
+        lx.next();
+        if (lx.is("temporary")) {
+            lx.next();
+        }
+        if (lx.is("index") || lx.is("unique") || lx.is("fulltext") || lx.is("spatial")) {
+            return;
+        }
+        Set<String> tables = SqlLexer.tables(sql);
+        if (rename || !lx.is("table") || tables.isEmpty()) {
+            loadAsync(pool);  // Views, databases, RENAME ... TO and anything not understood
+            return;
+        }
+        Thread.ofVirtual().name("schema-cache-refresh").start(() -> {
+            loading.lock();
+            try (Connection conn = pool.borrow()) {
+                schema = read(conn.getMetaData(), conn.getCatalog(), conn.getSchema(), tables, schema.columns());
+            } catch (SQLException ex) {
+                System.err.println("Failed to refresh the schema of " + url + ": " + ex.getMessage());
+            } finally {
+                loading.unlock();
+            }
+        });
+    }
+
+    /**
+     * Table names starting with the prefix (ignoring case), at most limit of them.
+     */
+    public List<String> tablesStartingWith(String prefix, int limit) {
+        List<String> out = new ArrayList<>();
+        schema.tables().addStartingWith(prefix.toLowerCase(Locale.ROOT), limit, out);
+        return out;
+    }
+
+    /**
+     * Column names of the given tables starting with the prefix (ignoring case), without duplicates, at most
+     * limit of them. Unknown tables are skipped.
+     */
+    public List<String> columnsStartingWith(Collection<String> tables, String prefix, int limit) {
+        Schema current = schema;
+        String key = prefix.toLowerCase(Locale.ROOT);
+        Set<String> out = new LinkedHashSet<>();
+        for (String table : tables) {
+            Names columns = current.columns().get(table.toLowerCase(Locale.ROOT));
+            if (columns != null) {
+                columns.addStartingWith(key, limit, out);
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    /**
+     * True if the name is a known table (ignoring case).
+     */
+    public boolean hasTable(String table) {
+        return schema.columns().containsKey(table.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Reads the table list, then the columns of the tables in only (all tables if only is null), keeping the
+     * columns in previous for the others. Names in only are lower-cased.
+     */
+    private static Schema read(DatabaseMetaData meta, String catalog, String schemaName, Set<String> only,
+                               Map<String, Names> previous) throws SQLException {
+        Map<String, String> tables = new HashMap<>();  // Lower-cased -> as stored
+        try (ResultSet rs = meta.getTables(catalog, schemaName, "%", TABLE_TYPES)) {
+            while (rs.next()) {
+                String name = rs.getString("TABLE_NAME");
+                tables.put(name.toLowerCase(Locale.ROOT), name);
+            }
+        }
+        Map<String, List<String>> read = new HashMap<>();
+        if (only == null) {
+            try (ResultSet rs = meta.getColumns(catalog, schemaName, "%", "%")) {
+                addColumns(rs, null, read);
+            }
+        } else {
+            for (String key : only) {
+                String table = tables.get(key);
+                if (table == null) {
+                    continue;  // Dropped
+                }
+                // The name is a pattern in which _ matches any character, so rows of other tables are skipped
+                try (ResultSet rs = meta.getColumns(catalog, schemaName, table, "%")) {
+                    addColumns(rs, table, read);
+                }
+            }
+        }
+        Map<String, Names> columns = new HashMap<>(tables.size() * 2);
+        for (String key : tables.keySet()) {
+            List<String> names = read.get(key);
+            Names cached = previous.get(key);
+            if (names != null) {
+                columns.put(key, Names.of(names));
+            } else if (cached != null && (only == null || !only.contains(key))) {
+                columns.put(key, cached);
+            } else {
+                columns.put(key, Names.EMPTY);
+            }
+        }
+        return new Schema(Names.of(tables.values()), Collections.unmodifiableMap(columns), true);
+    }
+
+    private static void addColumns(ResultSet rs, String table, Map<String, List<String>> out) throws SQLException {
+        while (rs.next()) {
+            String name = rs.getString("TABLE_NAME");
+            if (table == null || table.equals(name)) {
+                out.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new ArrayList<>())
+                        .add(rs.getString("COLUMN_NAME"));
+            }
+        }
+    }
+}
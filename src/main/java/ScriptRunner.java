@@ -0,0 +1,262 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: ScriptRunner.java
+*/
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Executes a multi-statement script on one connection. Consecutive DML statements are sent as JDBC batches:
+ * a run of statements with the same shape shares one prepared statement, and other DML goes through a plain
+ * statement batch. Work is committed every commitEvery statements, so a failure only rolls back the current chunk.
+ */
+public class ScriptRunner {
+    private static final Set<String> DML = Set.of("insert", "update", "delete", "replace");
+
+    private final StatementCache statements;
+    private final List<String> script;
+    private final int commitEvery;
+    private final int timeoutSeconds;
+
+    // Progress counters, also meaningful after a failure
+    private int queries;
+    private int updates;
+    private int batched;       // Statements sent as part of a batch
+    private int batches;
+    private int commits;
+    private int committed;     // Statements known to be committed
+    private int sinceCommit;
+    private long rowsAffected;
+    private int unreported;    // Batched statements for which the driver returned SUCCESS_NO_INFO
+    private long elapsedNanos;
+
+    public ScriptRunner(StatementCache statements, List<String> script, int commitEvery, int timeoutSeconds) {
+        this.statements = statements;
+        this.script = script;
+        this.commitEvery = Math.max(1, commitEvery);
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Runs the whole script. On failure the uncommitted part of the current chunk is rolled back and the
+     * exception names the statement that failed.
+     */
+    public void run(QueryExecutor.QueryTask task) throws SQLException {
+        long start = System.nanoTime();
+        Connection conn = statements.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+
+        // Shape of every DML statement (null for anything else), used to find runs that can share a prepared statement
+        SqlFingerprint[] shapes = new SqlFingerprint[script.size()];
+        for (int i = 0; i < shapes.length; i++) {
+            if (DML.contains(SqlText.firstKeyword(script.get(i)))) {
+                shapes[i] = SqlFingerprint.of(script.get(i));
+            }
+        }
+
+        int i = 0;
+        conn.setAutoCommit(false);
+        try (Statement plain = conn.createStatement()) {
+            plain.setQueryTimeout(timeoutSeconds);
+            while (i < shapes.length) {
+                if (task.isCancelled()) {
+                    throw new SQLException("Script cancelled");
+                }
+                int capacity = commitEvery - sinceCommit;
+                int run = runLength(shapes, i);
+                int count;
+                if (shapes[i] == null) {
+                    task.setStatement(plain);
+                    executeSingle(plain, script.get(i));
+                    count = 1;
+                } else if (run > 1) {
+                    count = Math.min(run, capacity);
+                    executePrepared(task, plain, shapes, i, count);
+                } else {
+                    // Statements of differing shapes go through one plain batch
+                    count = 1;
+                    while (count < capacity && i + count < shapes.length && shapes[i + count] != null
+                            && runLength(shapes, i + count) == 1) {
+                        count++;
+                    }
+                    executePlain(task, plain, i, count);
+                }
+                i += count;
+                sinceCommit += count;
+                if (sinceCommit >= commitEvery) {
+                    commit(conn);
+                }
+            }
+            commit(conn);
+        } catch (SQLException ex) {
+            statements.failed(ex);
+            rollback(conn);
+            throw describeFailure(ex, i);
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+            try {
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException ex) {
+                System.err.println("Failed to restore auto-commit: " + ex.getMessage());
+            }
+        }
+    }
+
+    private static int runLength(SqlFingerprint[] shapes, int i) {
+        if (shapes[i] == null) {
+            return 1;
+        }
+        int end = i + 1;
+        while (end < shapes.length && shapes[end] != null && shapes[end].getSql().equals(shapes[i].getSql())) {
+            end++;
+        }
+        return end - i;
+    }
+
+    private void executeSingle(Statement plain, String sql) throws SQLException {
+        if (plain.execute(sql)) {
+            plain.getResultSet().close();
+            if (SqlLexer.writes(sql)) {
+                updates++; // EXPLAIN ANALYZE of DML
+            } else {
+                queries++;
+            }
+        } else {
+            rowsAffected += Math.max(0, plain.getUpdateCount());
+            updates++;
+        }
+    }
+
+    private void executePrepared(QueryExecutor.QueryTask task, Statement plain, SqlFingerprint[] shapes,
+                                 int first, int count) throws SQLException {
+        String sql = shapes[first].getSql();
+        PreparedStatement pstmt;
+        try {
+            pstmt = statements.checkout(sql);
+        } catch (SQLException ex) {
+            if (!(ex instanceof SQLSyntaxErrorException) && ex.getErrorCode() != 1295) {
+                throw ex;
+            }
+            // The parameterized form was rejected; send the statements as written
+            executePlain(task, plain, first, count);
+            return;
+        }
+        try {
+            task.setStatement(pstmt);
+            pstmt.setQueryTimeout(timeoutSeconds);
+            for (int i = first; i < first + count; i++) {
+                shapes[i].bind(pstmt);
+                pstmt.addBatch();
+            }
+            countBatch(pstmt.executeBatch());
+        } finally {
+            statements.checkin(sql, pstmt);
+        }
+    }
+
+    private void executePlain(QueryExecutor.QueryTask task, Statement plain, int first, int count) throws SQLException {
+        if (count == 1) {
+            task.setStatement(plain);
+            executeSingle(plain, script.get(first));
+            return;
+        }
+        task.setStatement(plain);
+        for (int i = first; i < first + count; i++) {
+            plain.addBatch(script.get(i));
+        }
+        try {
+            countBatch(plain.executeBatch());
+        } finally {
+            plain.clearBatch();
+        }
+    }
+
+    private void countBatch(int[] counts) {
+        for (int c : counts) {
+            if (c >= 0) {
+                rowsAffected += c;
+            } else if (c == Statement.SUCCESS_NO_INFO) {
+                unreported++;
+            }
+        }
+        updates += counts.length;
+        batched += counts.length;
+        batches++;
+    }
+
+    private void commit(Connection conn) throws SQLException {
+        if (sinceCommit == 0) {
+            return;
+        }
+        conn.commit();
+        committed += sinceCommit;
+        sinceCommit = 0;
+        commits++;
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException ex) {
+            System.err.println("Failed to roll back script: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Rewraps a failure with the (1-based) number of the statement that caused it, keeping the exception type
+     * the GUI distinguishes (timeouts).
+     */
+    private SQLException describeFailure(SQLException ex, int first) {
+        int failed = first;
+        if (ex instanceof BatchUpdateException bue) {
+            int[] counts = bue.getUpdateCounts();
+            int k = 0;
+            while (k < counts.length && counts[k] != Statement.EXECUTE_FAILED) {
+                k++;
+            }
+            failed += k;
+        }
+        if (failed >= script.size() || "Script cancelled".equals(ex.getMessage())) {
+            return ex;
+        }
+        String message = String.format("Statement %,d of %,d failed: %s%n%,d statements were committed; "
+                + "the rest of the current chunk was rolled back.", failed + 1, script.size(), ex.getMessage(), committed);
+        return ex instanceof SQLTimeoutException
+                ? new SQLTimeoutException(message, ex.getSQLState(), ex.getErrorCode(), ex)
+                : new SQLException(message, ex.getSQLState(), ex.getErrorCode(), ex);
+    }
+
+    public int getQueriesExecuted() {
+        return queries;
+    }
+
+    public int getUpdatesExecuted() {
+        return updates;
+    }
+
+    /**
+     * One-line summary of rows affected and throughput, shown once the script finishes.
+     */
+    public String describe() {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        int total = queries + updates;
+        String summary = String.format("%,d statements (%,d batched in %,d batches), %,d rows affected, "
+                        + "%,d commits in %.2f s: %,.0f statements/s, %,.0f rows/s",
+                total, batched, batches, rowsAffected, commits, seconds, total / seconds, rowsAffected / seconds);
+        if (unreported > 0) {
+            summary += String.format(" (%,d batched statements did not report a row count)", unreported);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SlowQueryLog.java
+*/
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records statements slower than a threshold, grouped by fingerprint (the SQL with every literal replaced by ?,
+ * in lower case).
+ * Each fingerprint keeps its count, total and maximum time, and the EXPLAIN FORMAT=JSON plan of its first slow
+ * execution, captured on a pooled side connection so the session connection (which may hold an open cursor) is
+ * never touched. Every slow execution is also appended as one JSON line to a local log file.
+ * Recording never blocks the caller: plans are captured and lines written on a background virtual thread.
+ */
+public class SlowQueryLog implements AutoCloseable {
+    public static final long DEFAULT_THRESHOLD_MILLIS = 1000;
+    public static final Path DEFAULT_FILE = Path.of("logs", "slow-queries.log");
+    private static final int EXPLAIN_TIMEOUT_SECONDS = 10;
+    // Statements MySQL can EXPLAIN
+    private static final Set<String> EXPLAINABLE = Set.of("select", "with", "table", "insert", "replace", "update", "delete");
+
+    /**
+     * Aggregated slow executions of one statement shape. plan is null until it has been captured.
+     */
+    public record Entry(String fingerprint, String example, long count, double totalMillis, double maxMillis,
+                        String plan) {
+        public double meanMillis() {
+            return count == 0 ? 0.0 : totalMillis / count;
+        }
+    }
+
+    private static class Stats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final AtomicBoolean explainStarted = new AtomicBoolean();
+        volatile String example;  // Literal SQL of the slowest execution
+        volatile String plan;
+    }
+
+    private final Path file;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final ExecutorService background = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    public SlowQueryLog(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public void setThresholdMillis(long millis) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Records one execution if it took at least the threshold; returns whether it did.
+     * explainPool supplies the side connection for the plan (null to skip it); user and url go into the log line.
+     */
+    public boolean record(String sql, long elapsedNanos, ConnectionPool explainPool, String user, String url) {
+        if (elapsedNanos < thresholdNanos) {
+            return false;
+        }
+        // Literals are already replaced; folding case also groups "SELECT" with "select"
+        String fingerprint = SqlFingerprint.of(sql).getFingerprint().toLowerCase(Locale.ROOT);
+        Stats s = stats.computeIfAbsent(fingerprint, k -> new Stats());
+        s.count.increment();
+        s.totalNanos.add(elapsedNanos);
+        if (s.example == null || elapsedNanos >= s.maxNanos.get()) {
+            s.example = sql;
+        }
+        s.maxNanos.accumulate(elapsedNanos);
+        Instant at = Instant.now();
+        // Only the first slow execution of a shape pays for an EXPLAIN
+        boolean explain = explainPool != null && EXPLAINABLE.contains(SqlText.firstKeyword(sql))
+                && s.explainStarted.compareAndSet(false, true);
+        background.execute(() -> {
+            if (explain) {
+                s.plan = explain(explainPool, sql);
+            }
+            append(at, fingerprint, sql, elapsedNanos, user, url, explain ? s.plan : null);
+        });
+        return true;
+    }
+
+    /**
+     * The recorded shapes, highest total time first.
+     */
+    public List<Entry> top(int limit) {
+        List<Entry> entries = new ArrayList<>();
+        stats.forEach((fingerprint, s) -> entries.add(new Entry(fingerprint, s.example, s.count.sum(),
+                s.totalNanos.sum() / 1e6, s.maxNanos.get() / 1e6, s.plan)));
+        entries.sort(Comparator.comparingDouble(Entry::totalMillis).reversed());
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    /**
+     * Forgets the aggregates (the log file is kept).
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Lets pending plans and log lines finish, for up to a few seconds.
+     */
+    @Override
+    public void close() {
+        background.shutdown();
+        try {
+            background.awaitTermination(EXPLAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String explain(ConnectionPool pool, String sql) {
+        String statement = sql.strip();
+        if (statement.endsWith(";")) {
+            statement = statement.substring(0, statement.length() - 1);
+        }
+        try (Connection conn = pool.borrow();
+             Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(EXPLAIN_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON " + statement)) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException ex) {
+            return "EXPLAIN failed: " + ex.getMessage();
+        }
+    }
+
+    private synchronized void append(Instant at, String fingerprint, String sql, long elapsedNanos, String user,
+                                     String url, String plan) {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"time\":");
+        appendJson(line, at.toString());
+        line.append(",\"millis\":").append(String.format(Locale.ROOT, "%.3f", elapsedNanos / 1e6));
+        line.append(",\"user\":");
+        appendJson(line, user);
+        line.append(",\"url\":");
+        appendJson(line, url);
+        line.append(",\"fingerprint\":");
+        appendJson(line, fingerprint);
+        line.append(",\"sql\":");
+        appendJson(line, sql);
+        if (plan != null) {
+            line.append(",\"plan\":");
+            if (plan.startsWith("{")) {
+                line.append(plan.replace('\n', ' ')); // Already JSON; kept on one line
+            } else {
+                appendJson(line, plan);
+            }
+        }
+        line.append("}\n");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            System.err.println("Failed to write the slow query log: " + ex.getMessage());
+        }
+    }
+
+    private static void appendJson(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        line.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        line.append(ch);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SlowQueryPanel.java
+*/
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * "Top slow queries" view of a SlowQueryLog: one row per statement shape, highest total time first.
+ * Selecting a row shows its slowest SQL and its EXPLAIN plan. Refreshes every two seconds while showing.
+ */
+public class SlowQueryPanel extends JPanel {
+    private static final String[] COLUMNS = {"Fingerprint", "Count", "Total (ms)", "Mean (ms)", "Max (ms)"};
+    private static final int TOP = 50;
+
+    private final SlowQueryLog log;
+    private final DefaultTableModel tableModel = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JTable table = new JTable(tableModel);
+    private final JTextArea detailArea = new JTextArea(10, 60);
+    private final JLabel infoLabel = new JLabel(" ");
+    private final Timer refreshTimer = new Timer(2000, e -> refresh());
+    private List<SlowQueryLog.Entry> entries = List.of();
+
+    public SlowQueryPanel(SlowQueryLog log) {
+        super(new BorderLayout());
+        this.log = log;
+
+        table.setFillsViewportHeight(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(0).setPreferredWidth(420);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showDetail();
+            }
+        });
+        detailArea.setEditable(false);
+        detailArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), new JScrollPane(detailArea));
+        split.setResizeWeight(0.5);
+        add(split, BorderLayout.CENTER);
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refresh());
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            log.reset();
+            refresh();
+        });
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.add(infoLabel, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(refreshButton);
+        buttons.add(resetButton);
+        footer.add(buttons, BorderLayout.EAST);
+        add(footer, BorderLayout.SOUTH);
+        refresh();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    private void refresh() {
+        // Keep the selected shape selected across refreshes
+        String selected = table.getSelectedRow() >= 0 ? entries.get(table.getSelectedRow()).fingerprint() : null;
+        entries = log.top(TOP);
+        tableModel.setRowCount(0);
+        for (SlowQueryLog.Entry entry : entries) {
+            tableModel.addRow(new Object[]{entry.fingerprint(), entry.count(), format(entry.totalMillis()),
+                    format(entry.meanMillis()), format(entry.maxMillis())});
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).fingerprint().equals(selected)) {
+                table.setRowSelectionInterval(i, i);
+            }
+        }
+        infoLabel.setText(String.format("Statements slower than %,d ms, logged to %s", log.getThresholdMillis(),
+                log.getFile().toAbsolutePath()));
+    }
+
+    private void showDetail() {
+        int row = table.getSelectedRow();
+        if (row < 0) {
+            detailArea.setText("");
+            return;
+        }
+        SlowQueryLog.Entry entry = entries.get(row);
+        detailArea.setText("Slowest execution:\n" + entry.example() + "\n\nPlan:\n"
+                + (entry.plan() == null ? "(not captured)" : entry.plan()));
+        detailArea.setCaretPosition(0);
+    }
+
+    private static String format(double millis) {
+        return String.format("%.2f", millis);
+    }
+}
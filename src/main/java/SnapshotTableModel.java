@@ -0,0 +1,106 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SnapshotTableModel.java
+*/
+
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only TableModel over a memory-mapped ResultSnapshot. Opening reads only the snapshot's footer; each
+ * column block is decoded the first time one of its cells is shown and kept in a small LRU, so scrolling through
+ * a large snapshot costs OS page cache rather than heap. Needs no database connection. Used on the EDT only.
+ */
+public class SnapshotTableModel extends AbstractTableModel {
+    private static final long DECODED_BUDGET_BYTES = 32L * 1024 * 1024;
+
+    private final ResultSnapshot snapshot;
+    private final int columnCount;
+    private final Map<Long, ResultSnapshot.Block> decoded = new LinkedHashMap<>(16, 0.75f, true);  // LRU order
+    private final Set<Long> damaged = new HashSet<>();
+    private long decodedBytes;
+    private long lastKey = -1;  // Most recently read block, checked before the map
+    private ResultSnapshot.Block lastBlock;
+
+    public SnapshotTableModel(ResultSnapshot snapshot) {
+        this.snapshot = snapshot;
+        columnCount = snapshot.getColumnCount();
+    }
+
+    /**
+     * Maps the snapshot file and returns a model showing it.
+     */
+    public static SnapshotTableModel open(Path file) throws IOException {
+        return new SnapshotTableModel(ResultSnapshot.open(file));
+    }
+
+    public ResultSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public int getRowCount() {
+        return snapshot.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return snapshot.getColumnName(column);
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int group = rowIndex / ResultSnapshot.GROUP_ROWS;
+        long key = (long) group * columnCount + columnIndex;
+        ResultSnapshot.Block block = key == lastKey ? lastBlock : decoded.get(key);
+        if (block == null) {
+            if (damaged.contains(key)) {
+                return null;
+            }
+            block = load(group, columnIndex, key);
+            if (block == null) {
+                return null;
+            }
+        }
+        lastKey = key;
+        lastBlock = block;
+        return block.getValue(rowIndex % ResultSnapshot.GROUP_ROWS);
+    }
+
+    /**
+     * Decodes a block and caches it, dropping least recently used blocks beyond the budget (the newest one
+     * always stays). A damaged block is reported once and shown as NULLs.
+     */
+    private ResultSnapshot.Block load(int group, int column, long key) {
+        ResultSnapshot.Block block;
+        try {
+            block = snapshot.readBlock(column, group);
+        } catch (IllegalStateException ex) {
+            System.err.println("Failed to read snapshot: " + ex.getMessage());
+            damaged.add(key);
+            return null;
+        }
+        decoded.put(key, block);
+        decodedBytes += block.estimatedBytes();
+        Iterator<ResultSnapshot.Block> eldest = decoded.values().iterator();
+        while (decodedBytes > DECODED_BUDGET_BYTES && decoded.size() > 1) {
+            decodedBytes -= eldest.next().estimatedBytes();
+            eldest.remove();
+        }
+        return block;
+    }
+}
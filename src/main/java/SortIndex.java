@@ -0,0 +1,327 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SortIndex.java
+*/
+
+import javax.swing.SortOrder;
+import javax.swing.RowSorter.SortKey;
+import javax.swing.table.TableModel;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the row permutation for a client-side sort without comparing boxed cells.
+ * Every sort column is turned into one primitive long per row that orders the same way as the values (ints,
+ * epoch days and decimal unscaled values as they are, doubles by their bit pattern, strings and other objects by
+ * their rank among the distinct values). The key is then compressed to a rank and packed with the row's position
+ * into a single long, so each sort column costs one Arrays.parallelSort (fork/join) over a long[].
+ * Columns of a ColumnarTableModel are read straight from their primitive arrays; other models through getValueAt.
+ * NULLs sort first in ascending order and last in descending order, as in MySQL.
+ */
+public final class SortIndex {
+
+    private SortIndex() {
+    }
+
+    /**
+     * Model row indexes in the order given by the sort keys (first key most significant); equal rows keep
+     * their model order. UNSORTED keys are ignored.
+     */
+    public static int[] permutation(TableModel model, List<? extends SortKey> keys) {
+        int n = model.getRowCount();
+        int[] perm = new int[n];
+        Arrays.setAll(perm, i -> i);
+        int rowBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1)));
+        long rowMask = (1L << rowBits) - 1;
+        // Least significant key first: each pass is stable with respect to the previous one
+        for (int k = keys.size() - 1; k >= 0; k--) {
+            SortKey key = keys.get(k);
+            if (key.getSortOrder() == SortOrder.UNSORTED) {
+                continue;
+            }
+            Keys column = keys(model, key.getColumn());
+            long[] ranks = column.ranks(rowBits);
+            long maxRank = column.maxRank;
+            boolean descending = key.getSortOrder() == SortOrder.DESCENDING;
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                long rank = ranks[perm[i]];
+                packed[i] = (descending ? maxRank - rank : rank) << rowBits | i;
+            }
+            Arrays.parallelSort(packed);
+            int[] next = new int[n];
+            for (int i = 0; i < n; i++) {
+                next[i] = perm[(int) (packed[i] & rowMask)];
+            }
+            perm = next;
+        }
+        return perm;
+    }
+
+    /**
+     * Orders two cell values the way MySQL does for the common cases: NULL first, numbers by value whatever their
+     * Java type, strings ignoring case (the default collations are case-insensitive).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof String x && b instanceof String y) {
+            return x.compareToIgnoreCase(y);
+        }
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            return new BigDecimal(x.toString()).compareTo(new BigDecimal(y.toString()));
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    // Order-preserving long keys of one column, with a null bitmap
+    private static final class Keys {
+        final long[] values;
+        final boolean[] nulls;
+        long maxRank;
+
+        Keys(int n) {
+            values = new long[n];
+            nulls = new boolean[n];
+        }
+
+        /**
+         * Ranks of the keys starting at 1 (0 for NULL), small enough to be packed beside a row position of rowBits bits.
+         * A narrow key range is shifted rather than ranked, which needs no extra sort.
+         */
+        long[] ranks(int rowBits) {
+            int n = values.length;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            int nonNull = 0;
+            for (int i = 0; i < n; i++) {
+                if (!nulls[i]) {
+                    min = Math.min(min, values[i]);
+                    max = Math.max(max, values[i]);
+                    nonNull++;
+                }
+            }
+            long[] ranks = new long[n];
+            if (nonNull == 0) {
+                maxRank = 0;
+                return ranks;
+            }
+            long limit = 1L << (62 - rowBits);
+            if (max - min >= 0 && max - min < limit) {
+                for (int i = 0; i < n; i++) {
+                    ranks[i] = nulls[i] ? 0 : values[i] - min + 1;
+                }
+                maxRank = max - min + 1;
+                return ranks;
+            }
+            // Wide range: rank among the distinct values
+            long[] sorted = new long[nonNull];
+            int j = 0;
+            for (int i = 0; i < n; i++) {
+                if (!nulls[i]) {
+                    sorted[j++] = values[i];
+                }
+            }
+            Arrays.parallelSort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                ranks[i] = nulls[i] ? 0 : Arrays.binarySearch(sorted, 0, distinct, values[i]) + 1;
+            }
+            maxRank = distinct;
+            return ranks;
+        }
+    }
+
+    private static Keys keys(TableModel model, int column) {
+        if (model instanceof ColumnarTableModel columnar) {
+            Keys keys = columnarKeys(columnar, column);
+            if (keys != null) {
+                return keys;
+            }
+        }
+        int n = model.getRowCount();
+        Object[] values = new Object[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = model.getValueAt(i, column);
+        }
+        return objectKeys(values);
+    }
+
+    // Reads the column's primitive arrays; null if the column has no primitive order (objects, wide decimals)
+    private static Keys columnarKeys(ColumnarTableModel model, int column) {
+        Keys keys = new Keys(model.getRowCount());
+        List<ColumnBatch> batches = model.getBatches();
+        ColumnBatch.Kind kind = batches.get(0).getColumn(column).kind();
+        if (kind == ColumnBatch.Kind.OBJECT) {
+            return null;
+        }
+        if (kind == ColumnBatch.Kind.STRING) {
+            return stringKeys(model, column);
+        }
+        int row = 0;
+        for (ColumnBatch batch : batches) {
+            ColumnBatch.Column c = batch.getColumn(column);
+            for (int r = 0; r < batch.getRowCount(); r++, row++) {
+                if (c.isNull(r)) {
+                    keys.nulls[row] = true;
+                } else if (c instanceof ColumnBatch.IntColumn ints) {
+                    keys.values[row] = ints.getInt(r);
+                } else if (c instanceof ColumnBatch.LongColumn longs) {
+                    keys.values[row] = longs.getLong(r);
+                } else if (c instanceof ColumnBatch.DoubleColumn doubles) {
+                    keys.values[row] = doubleKey(doubles.getDouble(r));
+                } else if (c instanceof ColumnBatch.DecimalColumn decimals && decimals.isCompact(r)
+                        && decimals.getScale() == ((ColumnBatch.DecimalColumn) batches.get(0).getColumn(column)).getScale()) {
+                    keys.values[row] = decimals.getUnscaled(r);
+                } else {
+                    return null; // Decimals beyond a long or with another scale: compare as BigDecimal
+                }
+            }
+        }
+        return keys;
+    }
+
+    // Ranks the distinct strings of all batches once, then maps every row's dictionary code to its rank
+    private static Keys stringKeys(ColumnarTableModel model, int column) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (ColumnBatch batch : model.getBatches()) {
+            ColumnBatch.StringColumn c = (ColumnBatch.StringColumn) batch.getColumn(column);
+            for (int code = 0; code < c.getDictionarySize(); code++) {
+                ids.putIfAbsent(c.getDictionaryValue(code), ids.size());
+            }
+        }
+        long[] rankOfId = rankStrings(ids);
+        Keys keys = new Keys(model.getRowCount());
+        int row = 0;
+        for (ColumnBatch batch : model.getBatches()) {
+            ColumnBatch.StringColumn c = (ColumnBatch.StringColumn) batch.getColumn(column);
+            long[] rankOfCode = new long[c.getDictionarySize()];
+            for (int code = 0; code < rankOfCode.length; code++) {
+                rankOfCode[code] = rankOfId[ids.get(c.getDictionaryValue(code))];
+            }
+            for (int r = 0; r < batch.getRowCount(); r++, row++) {
+                if (c.isNull(r)) {
+                    keys.nulls[row] = true;
+                } else {
+                    keys.values[row] = rankOfCode[c.getCode(r)];
+                }
+            }
+        }
+        return keys;
+    }
+
+    // Rank of each distinct string (indexed by its id); strings equal ignoring case share a rank
+    private static long[] rankStrings(Map<String, Integer> ids) {
+        String[] distinct = new String[ids.size()];
+        ids.forEach((s, id) -> distinct[id] = s);
+        String[] sorted = distinct.clone();
+        Arrays.parallelSort(sorted, String::compareToIgnoreCase);
+        Map<String, Long> rank = new HashMap<>(sorted.length * 2);
+        long r = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i].compareToIgnoreCase(sorted[i - 1]) != 0) {
+                r++;
+            }
+            rank.put(sorted[i], r);
+        }
+        long[] rankOfId = new long[distinct.length];
+        for (int id = 0; id < distinct.length; id++) {
+            rankOfId[id] = rank.get(distinct[id]);
+        }
+        return rankOfId;
+    }
+
+    // Keys from boxed values: primitive where every value has the same primitive-friendly type, ranks otherwise
+    private static Keys objectKeys(Object[] values) {
+        int n = values.length;
+        Keys keys = new Keys(n);
+        Class<?> type = null;
+        for (Object v : values) {
+            if (v != null) {
+                type = type == null || type == v.getClass() ? v.getClass() : Object.class;
+            }
+        }
+        boolean primitive = type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+                || type == Double.class || type == Float.class || type == LocalDate.class || type == LocalDateTime.class
+                || type == Timestamp.class;
+        if (primitive) {
+            for (int i = 0; i < n; i++) {
+                Object v = values[i];
+                if (v == null) {
+                    keys.nulls[i] = true;
+                } else {
+                    keys.values[i] = switch (v) {
+                        case Double d -> doubleKey(d);
+                        case Float f -> doubleKey(f);
+                        case Number x -> x.longValue();
+                        case LocalDate d -> d.toEpochDay();
+                        case LocalDateTime t -> t.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + t.getNano() / 1000;
+                        case Timestamp t -> ColumnBatch.TimestampColumn.toMicros(t.toLocalDateTime());
+                        default -> throw new IllegalStateException();
+                    };
+                }
+            }
+            return keys;
+        }
+        if (type == String.class) {
+            Map<String, Integer> ids = new HashMap<>();
+            for (Object v : values) {
+                if (v != null) {
+                    ids.putIfAbsent((String) v, ids.size());
+                }
+            }
+            long[] rankOfId = rankStrings(ids);
+            for (int i = 0; i < n; i++) {
+                if (values[i] == null) {
+                    keys.nulls[i] = true;
+                } else {
+                    keys.values[i] = rankOfId[ids.get((String) values[i])];
+                }
+            }
+            return keys;
+        }
+        // Anything else (BigDecimal, mixed types, ...): rank by comparing the objects
+        Integer[] order = new Integer[n];
+        Arrays.setAll(order, i -> i);
+        Arrays.parallelSort(order, (a, b) -> compareValues(values[a], values[b]));
+        long rank = 0;
+        for (int i = 0; i < n; i++) {
+            Object v = values[order[i]];
+            if (v == null) {
+                keys.nulls[order[i]] = true;
+                continue;
+            }
+            if (rank == 0 || compareValues(values[order[i - 1]], v) != 0) {
+                rank++;
+            }
+            keys.values[order[i]] = rank;
+        }
+        return keys;
+    }
+
+    // Maps a double to a long with the same order (negative values have their magnitude bits flipped)
+    private static long doubleKey(double d) {
+        long bits = Double.doubleToLongBits(d);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SpillFile.java
+*/
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Temp file holding result pages that no longer fit in the heap budget of a CursorTableModel.
+ * Pages are copied into memory-mapped segments of the file and read back in place: a spilled Page is a view over
+ * the mapping that decodes a cell only when the table asks for it, so the spilled part of a result costs
+ * address space and OS page cache rather than heap.
+ * <p>
+ * Page layout (big-endian): row count, column count, then an (encoding, offset) pair per column. Each column
+ * starts with its null bitmap followed by fixed-width values, or by per-row codes into a table of
+ * variable-length entries for strings, oversized decimals and other objects.
+ */
+public final class SpillFile implements AutoCloseable {
+    private static final int SEGMENT_BYTES = 64 << 20;
+
+    // How a column is stored in a page
+    private enum Encoding { INT, DATE, LONG, TIMESTAMP, DOUBLE, FLOAT, DECIMAL, STRING, DECIMAL_TEXT, OBJECT }
+
+    private static final Encoding[] ENCODINGS = Encoding.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer segment;  // Segment currently being filled
+    private long fileSize;
+    private boolean closed;
+
+    private SpillFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates an empty spill file in the temp directory. It is deleted by close(), or at exit at the latest.
+     */
+    public static SpillFile create() throws IOException {
+        Path path = Files.createTempFile("two-tier-sql-", ".spill");
+        path.toFile().deleteOnExit();
+        try {
+            return new SpillFile(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        } catch (IOException ex) {
+            Files.deleteIfExists(path);
+            throw ex;
+        }
+    }
+
+    /**
+     * Copies a page into the file and returns a view of it over the mapping.
+     */
+    public synchronized Page write(ColumnBatch batch) throws IOException {
+        if (closed) {
+            throw new IOException("Spill file is closed");
+        }
+        byte[] bytes = encode(batch);
+        if (segment == null || segment.remaining() < bytes.length) {
+            // Start a new segment; a page larger than a segment gets a segment of its own
+            int size = Math.max(SEGMENT_BYTES, bytes.length);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+            fileSize += size;
+        }
+        int offset = segment.position();
+        segment.put(bytes);
+        return new Page(segment.slice(offset, bytes.length));
+    }
+
+    /**
+     * Bytes of address space mapped so far.
+     */
+    public synchronized long size() {
+        return fileSize;
+    }
+
+    /**
+     * Closes and deletes the file. Pages already handed out stay readable until they are garbage collected.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segment = null;
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // Still mapped on some platforms; deleteOnExit removes it later
+            System.err.println("Failed to delete spill file " + path + ": " + ex.getMessage());
+        }
+    }
+
+    private static byte[] encode(ColumnBatch batch) throws IOException {
+        int rows = batch.getRowCount();
+        int cols = batch.getColumnCount();
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(batch.estimatedBytes(), Integer.MAX_VALUE - 8));
+        ByteBuffer header = ByteBuffer.allocate(8 + cols * 8);
+        header.putInt(rows).putInt(cols);
+        out.write(header.array()); // Placeholder, rewritten below once the column offsets are known
+        for (int c = 0; c < cols; c++) {
+            ColumnBatch.Column column = batch.getColumn(c);
+            Encoding encoding = encodingOf(column, rows);
+            header.putInt(encoding.ordinal()).putInt(out.size());
+            ByteBuffer fixed = ByteBuffer.allocate(((rows + 63) >>> 6) * 8 + fixedBytes(encoding, rows));
+            for (int word = 0; word < (rows + 63) >>> 6; word++) {
+                long bits = 0;
+                for (int r = word << 6; r < Math.min(rows, (word + 1) << 6); r++) {
+                    if (column.isNull(r)) {
+                        bits |= 1L << r;
+                    }
+                }
+                fixed.putLong(bits);
+            }
+            switch (encoding) {
+                case INT, DATE -> {
+                    ColumnBatch.IntColumn ints = (ColumnBatch.IntColumn) column;
+                    for (int r = 0; r < rows; r++) {
+                        fixed.putInt(ints.getInt(r));
+                    }
+                }
+                case LONG, TIMESTAMP -> {
+                    ColumnBatch.LongColumn longs = (ColumnBatch.LongColumn) column;
+                    for (int r = 0; r < rows; r++) {
+                        fixed.putLong(longs.getLong(r));
+                    }
+                }
+                case DOUBLE, FLOAT -> {
+                    ColumnBatch.DoubleColumn doubles = (ColumnBatch.DoubleColumn) column;
+                    for (int r = 0; r < rows; r++) {
+                        fixed.putDouble(doubles.getDouble(r));
+                    }
+                }
+                case DECIMAL -> {
+                    ColumnBatch.DecimalColumn decimals = (ColumnBatch.DecimalColumn) column;
+                    fixed.putInt(decimals.getScale());
+                    for (int r = 0; r < rows; r++) {
+                        fixed.putLong(decimals.getUnscaled(r));
+                    }
+                }
+                case STRING -> {
+                    // Keeps the column's dictionary: per-row codes, then one entry per distinct value
+                    ColumnBatch.StringColumn strings = (ColumnBatch.StringColumn) column;
+                    for (int r = 0; r < rows; r++) {
+                        fixed.putInt(column.isNull(r) ? 0 : strings.getCode(r));
+                    }
+                    byte[][] entries = new byte[strings.getDictionarySize()][];
+                    for (int i = 0; i < entries.length; i++) {
+                        entries[i] = strings.getDictionaryValue(i).getBytes(StandardCharsets.UTF_8);
+                    }
+                    out.write(fixed.array());
+                    writeEntries(out, entries);
+                    continue;
+                }
+                case DECIMAL_TEXT, OBJECT -> {
+                    // One entry per row
+                    byte[][] entries = new byte[rows][];
+                    for (int r = 0; r < rows; r++) {
+                        fixed.putInt(r);
+                        entries[r] = column.isNull(r) ? new byte[0]
+                                : encoding == Encoding.OBJECT ? serialize(column.getValue(r))
+                                : column.getValue(r).toString().getBytes(StandardCharsets.UTF_8);
+                    }
+                    out.write(fixed.array());
+                    writeEntries(out, entries);
+                    continue;
+                }
+            }
+            out.write(fixed.array());
+        }
+        byte[] bytes = out.toByteArray();
+        System.arraycopy(header.array(), 0, bytes, 0, header.capacity());
+        return bytes;
+    }
+
+    private static Encoding encodingOf(ColumnBatch.Column column, int rows) {
+        return switch (column.kind()) {
+            case INT -> Encoding.INT;
+            case DATE -> Encoding.DATE;
+            case LONG -> Encoding.LONG;
+            case TIMESTAMP -> Encoding.TIMESTAMP;
+            case DOUBLE -> Encoding.DOUBLE;
+            case FLOAT -> Encoding.FLOAT;
+            case DECIMAL -> {
+                ColumnBatch.DecimalColumn decimals = (ColumnBatch.DecimalColumn) column;
+                for (int r = 0; r < rows; r++) {
+                    if (!decimals.isNull(r) && !decimals.isCompact(r)) {
+                        yield Encoding.DECIMAL_TEXT;
+                    }
+                }
+                yield Encoding.DECIMAL;
+            }
+            case STRING -> Encoding.STRING;
+            case OBJECT -> Encoding.OBJECT;
+        };
+    }
+
+    // Size of the values after the null bitmap; variable-length entries follow separately
+    private static int fixedBytes(Encoding encoding, int rows) {
+        return switch (encoding) {
+            case INT, DATE, STRING, DECIMAL_TEXT, OBJECT -> rows * 4;
+            case LONG, TIMESTAMP, DOUBLE, FLOAT -> rows * 8;
+            case DECIMAL -> 4 + rows * 8;
+        };
+    }
+
+    // Entry count, entry start offsets (count + 1, relative to the first entry byte), then the entry bytes
+    private static void writeEntries(ByteArrayOutputStream out, byte[][] entries) throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(4 + (entries.length + 1) * 4);
+        index.putInt(entries.length);
+        int at = 0;
+        index.putInt(at);
+        for (byte[] entry : entries) {
+            at += entry.length;
+            index.putInt(at);
+        }
+        out.write(index.array());
+        for (byte[] entry : entries) {
+            out.write(entry);
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            // Driver types that are not serializable are kept as their display text
+            out.writeObject(value instanceof Serializable ? value : value.toString());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A spilled page. Cells are decoded from the mapping on every call, so callers should not expect
+     * repeated calls to return the same instance.
+     */
+    public static final class Page {
+        private final ByteBuffer buffer;
+        private final int rowCount;
+        private final Encoding[] encodings;
+        private final int[] offsets;    // Start of each column's values (after its null bitmap)
+        private final int bitmapBytes;
+
+        private Page(ByteBuffer buffer) {
+            this.buffer = buffer;
+            rowCount = buffer.getInt(0);
+            int cols = buffer.getInt(4);
+            encodings = new Encoding[cols];
+            offsets = new int[cols];
+            bitmapBytes = ((rowCount + 63) >>> 6) * 8;
+            for (int c = 0; c < cols; c++) {
+                encodings[c] = ENCODINGS[buffer.getInt(8 + c * 8)];
+                offsets[c] = buffer.getInt(12 + c * 8) + bitmapBytes;
+            }
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Boxed value of a cell (null for SQL NULL), matching ColumnBatch.getValue.
+         */
+        public Object getValue(int row, int column) {
+            int values = offsets[column];
+            long nullBits = buffer.getLong(values - bitmapBytes + (row >>> 6) * 8);
+            if ((nullBits & (1L << row)) != 0) {
+                return null;
+            }
+            return switch (encodings[column]) {
+                case INT -> buffer.getInt(values + row * 4);
+                case DATE -> LocalDate.ofEpochDay(buffer.getInt(values + row * 4));
+                case LONG -> buffer.getLong(values + row * 8);
+                case TIMESTAMP -> ColumnBatch.TimestampColumn.toTimestamp(buffer.getLong(values + row * 8));
+                case DOUBLE -> buffer.getDouble(values + row * 8);
+                case FLOAT -> (float) buffer.getDouble(values + row * 8);
+                case DECIMAL -> BigDecimal.valueOf(buffer.getLong(values + 4 + row * 8), buffer.getInt(values));
+                case STRING -> new String(entry(values, row), StandardCharsets.UTF_8);
+                case DECIMAL_TEXT -> new BigDecimal(new String(entry(values, row), StandardCharsets.UTF_8));
+                case OBJECT -> deserialize(entry(values, row));
+            };
+        }
+
+        private byte[] entry(int values, int row) {
+            int code = buffer.getInt(values + row * 4);
+            int index = values + rowCount * 4;
+            int count = buffer.getInt(index);
+            int data = index + 4 + (count + 1) * 4;
+            int start = buffer.getInt(index + 4 + code * 4);
+            int end = buffer.getInt(index + 8 + code * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(data + start, bytes);
+            return bytes;
+        }
+
+        private static Object deserialize(byte[] bytes) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return in.readObject();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } catch (ClassNotFoundException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SqlCompletion.java
+*/
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Table and column completion for an SQL text area, answered from a SchemaCache without going to the server.
+ * A popup opens while a name is being typed (or on Ctrl+Space); Up/Down pick, Enter or Tab insert, Escape
+ * closes. After FROM, JOIN, INTO, UPDATE and TABLE it offers tables; after "name." the columns of that table
+ * or alias; elsewhere the columns of the tables the statement uses, then tables.
+ */
+public final class SqlCompletion {
+    private static final int MAX_SUGGESTIONS = 50;
+
+    // Words that can follow a table name without being its alias
+    private static final Set<String> NOT_ALIASES = Set.of("where", "on", "using", "join", "inner", "left", "right",
+            "cross", "natural", "full", "outer", "straight_join", "group", "order", "having", "limit", "union",
+            "set", "values", "select", "partition", "window", "for", "lock", "into", "use", "ignore", "force",
+            "except", "intersect", "returning");
+
+    private final JTextArea area;
+    private final Supplier<SchemaCache> schema;
+    private final DefaultListModel<String> items = new DefaultListModel<>();
+    private final JList<String> list = new JList<>(items);
+    private final JPopupMenu popup = new JPopupMenu();
+    private int replaceStart;  // Start of the partial name the chosen suggestion replaces
+
+    /**
+     * What to offer at a caret position: names, and where the partial name they replace starts.
+     */
+    record Suggestions(int start, String prefix, boolean qualified, List<String> names) {
+    }
+
+    private SqlCompletion(JTextArea area, Supplier<SchemaCache> schema) {
+        this.area = area;
+        this.schema = schema;
+        list.setFocusable(false);
+        list.setVisibleRowCount(8);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                accept();
+            }
+        });
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+    }
+
+    /**
+     * Adds completion to the text area. schema returns the cache of the current connection, or null when
+     * there is none.
+     */
+    public static void install(JTextArea area, Supplier<SchemaCache> schema) {
+        SqlCompletion completion = new SqlCompletion(area, schema);
+        area.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                // Typing (not pastes or setText); the caret moves after the listeners have run
+                if (e.getLength() == 1) {
+                    SwingUtilities.invokeLater(() -> completion.update(false));
+                }
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                if (completion.popup.isVisible()) {
+                    SwingUtilities.invokeLater(() -> completion.update(false));
+                }
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        area.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                completion.keyPressed(e);
+            }
+        });
+        area.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                completion.popup.setVisible(false);
+            }
+        });
+    }
+
+    private void keyPressed(KeyEvent e) {
+        if (e.getKeyCode() == KeyEvent.VK_SPACE && e.isControlDown()) {
+            update(true);
+            e.consume();
+            return;
+        }
+        if (!popup.isVisible()) {
+            return;
+        }
+        int selected = list.getSelectedIndex();
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_DOWN -> select(Math.min(selected + 1, items.size() - 1));
+            case KeyEvent.VK_UP -> select(Math.max(selected - 1, 0));
+            case KeyEvent.VK_PAGE_DOWN -> select(Math.min(selected + list.getVisibleRowCount(), items.size() - 1));
+            case KeyEvent.VK_PAGE_UP -> select(Math.max(selected - list.getVisibleRowCount(), 0));
+            case KeyEvent.VK_ENTER, KeyEvent.VK_TAB -> accept();
+            case KeyEvent.VK_ESCAPE -> popup.setVisible(false);
+            case KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_HOME, KeyEvent.VK_END -> {
+                popup.setVisible(false);
+                return; // Moves the caret as usual
+            }
+            default -> {
+                return;
+            }
+        }
+        e.consume();
+    }
+
+    private void select(int index) {
+        list.setSelectedIndex(index);
+        list.ensureIndexIsVisible(index);
+    }
+
+    /**
+     * Shows the suggestions for the caret position, or hides the popup if there are none. While typing, the
+     * popup needs a partial name or a qualifier; explicit (Ctrl+Space) also lists everything that fits.
+     */
+    private void update(boolean explicit) {
+        SchemaCache cache = schema.get();
+        if (cache == null || !cache.isLoaded()) {
+            popup.setVisible(false);
+            return;
+        }
+        Suggestions s = suggest(cache, area.getText(), area.getCaretPosition());
+        boolean complete = s.names().size() == 1 && s.names().get(0).equalsIgnoreCase(s.prefix());
+        if (s.names().isEmpty() || (!explicit && ((s.prefix().isEmpty() && !s.qualified()) || complete))) {
+            popup.setVisible(false);
+            return;
+        }
+        replaceStart = s.start();
+        items.clear();
+        items.addAll(s.names());
+        select(0);
+        try {
+            Rectangle2D at = area.modelToView2D(s.start());
+            popup.pack();
+            popup.show(area, (int) at.getX(), (int) at.getMaxY());
+        } catch (BadLocationException ex) {
+            popup.setVisible(false);
+        }
+    }
+
+    private void accept() {
+        String name = list.getSelectedValue();
+        popup.setVisible(false);
+        int caret = area.getCaretPosition();
+        if (name != null && replaceStart <= caret) {
+            area.replaceRange(quoteIfNeeded(name), replaceStart, caret);
+        }
+    }
+
+    /**
+     * Works out what to offer at the caret in text, looking only at the statement around it.
+     */
+    static Suggestions suggest(SchemaCache cache, String text, int caret) {
+        int start = caret;
+        while (start > 0 && isNamePart(text.charAt(start - 1))) {
+            start--;
+        }
+        String prefix = text.substring(start, caret);
+        int statementStart = text.lastIndexOf(';', start - 1) + 1;
+        int statementEnd = text.indexOf(';', caret);
+        String statement = text.substring(statementStart, statementEnd < 0 ? text.length() : statementEnd);
+
+        if (start > 0 && text.charAt(start - 1) == '.') {
+            int qualifierStart = start - 1;
+            while (qualifierStart > statementStart && isNamePart(text.charAt(qualifierStart - 1))) {
+                qualifierStart--;
+            }
+            String qualifier = text.substring(qualifierStart, start - 1).toLowerCase(Locale.ROOT);
+            String table = aliases(statement).getOrDefault(qualifier, qualifier);
+            List<String> names;
+            if (cache.hasTable(table)) {
+                names = cache.columnsStartingWith(List.of(table), prefix, MAX_SUGGESTIONS);
+            } else if (expectsTable(text.substring(statementStart, qualifierStart))) {
+                names = cache.tablesStartingWith(prefix, MAX_SUGGESTIONS);  // Database name: FROM db.
+            } else {
+                names = List.of();
+            }
+            return new Suggestions(start, prefix, true, names);
+        }
+
+        if (expectsTable(text.substring(statementStart, start))) {
+            return new Suggestions(start, prefix, false, cache.tablesStartingWith(prefix, MAX_SUGGESTIONS));
+        }
+        List<String> names = cache.columnsStartingWith(SqlLexer.tables(statement), prefix, MAX_SUGGESTIONS);
+        for (String table : cache.tablesStartingWith(prefix, MAX_SUGGESTIONS - names.size())) {
+            if (!names.contains(table)) {
+                names.add(table);
+            }
+        }
+        return new Suggestions(start, prefix, false, names);
+    }
+
+    /**
+     * True if the text before the partial name ends where a table name goes: after FROM, JOIN, INTO, UPDATE,
+     * TABLE, DESCRIBE, or a comma in a FROM list.
+     */
+    private static boolean expectsTable(String before) {
+        SqlLexer lx = new SqlLexer(before);
+        boolean expect = false;
+        boolean inFromList = false;
+        SqlLexer.Token t;
+        while ((t = lx.next()) != SqlLexer.Token.END) {
+            if (t == SqlLexer.Token.WORD) {
+                if (lx.is("from") || lx.is("table")) {
+                    expect = true;
+                    inFromList = true;
+                } else if (lx.is("join") || lx.is("into") || lx.is("update") || lx.is("describe") || lx.is("desc")) {
+                    expect = true;
+                } else {
+                    if (NOT_ALIASES.contains(lx.text().toLowerCase(Locale.ROOT))) {
+                        inFromList = false;
+                    }
+                    expect = false;
+                }
+            } else {
+                expect = t == SqlLexer.Token.SYMBOL && lx.isSymbol(',') && inFromList;
+            }
+        }
+        return expect;
+    }
+
+    /**
+     * Maps the lower-cased aliases of the statement's tables (FROM t a, JOIN t AS a, UPDATE t a) to the
+     * lower-cased table names.
+     */
+    static Map<String, String> aliases(String statement) {
+        Map<String, String> aliases = new HashMap<>();
+        SqlLexer lx = new SqlLexer(statement);
+        boolean expectTable = false;
+        boolean inFromList = false;
+        String table = null;  // Table just named, whose alias may come next
+        SqlLexer.Token t;
+        while ((t = lx.next()) != SqlLexer.Token.END) {
+            if (t != SqlLexer.Token.WORD && t != SqlLexer.Token.QUOTED_IDENTIFIER) {
+                table = null;
+                expectTable = t == SqlLexer.Token.SYMBOL && lx.isSymbol(',') && inFromList;
+                if (lx.isSymbol('(')) {
+                    inFromList = false;
+                }
+                continue;
+            }
+            String word = lx.text().toLowerCase(Locale.ROOT);
+            if (table != null && t == SqlLexer.Token.WORD && word.equals("as")) {
+                continue;
+            }
+            if (table != null && (t == SqlLexer.Token.QUOTED_IDENTIFIER || !NOT_ALIASES.contains(word))) {
+                aliases.put(word, table);
+                table = null;
+                continue;
+            }
+            table = null;
+            if (expectTable) {
+                // Qualified name: keep only the last part (db.table -> table)
+                while (lx.peek(0) == '.' && lx.peek(1) != -1) {
+                    lx.next();
+                    lx.next();
+                }
+                table = lx.text().toLowerCase(Locale.ROOT);
+                expectTable = false;
+            } else if (t == SqlLexer.Token.WORD) {
+                if (word.equals("from")) {
+                    expectTable = true;
+                    inFromList = true;
+                } else if (word.equals("join") || word.equals("update") || word.equals("into")) {
+                    expectTable = true;
+                } else if (NOT_ALIASES.contains(word)) {
+                    inFromList = false;
+                }
+            }
+        }
+        return aliases;
+    }
+
+    private static boolean isNamePart(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+    }
+
+    /**
+     * Backquotes names that are not plain identifiers.
+     */
+    private static String quoteIfNeeded(String name) {
+        boolean plain = !name.isEmpty() && !Character.isDigit(name.charAt(0));
+        for (int i = 0; i < name.length() && plain; i++) {
+            plain = isNamePart(name.charAt(i));
+        }
+        return plain ? name : '`' + name.replace("`", "``") + '`';
+    }
+}
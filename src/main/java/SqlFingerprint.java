@@ -0,0 +1,394 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SqlFingerprint.java
+*/
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lifts literals out of ad-hoc SQL so that statements differing only in constants share one prepared statement.
+ * "SELECT * FROM bikes WHERE id = 5" and "... id = 7" both become "SELECT * FROM bikes WHERE id = ?"
+ * with the constant kept as a bind parameter.
+ * Literals are only lifted where a parameter is always legal: never in a SELECT list (it would change the column
+ * labels), ORDER BY / GROUP BY positions, aliases, typed literals (DATE '...'), introducers (_utf8'...', X'...')
+ * or strings containing escapes. The fingerprint text replaces every literal, for grouping statements by shape.
+ */
+public final class SqlFingerprint {
+    private final String sql;
+    private final List<Object> parameters;
+    private final String fingerprint;
+
+    /**
+     * Executes JDBC work against a fingerprint.
+     */
+    @FunctionalInterface
+    public interface Action<T> {
+        T run(SqlFingerprint fingerprint) throws SQLException;
+    }
+
+    private SqlFingerprint(String sql, List<Object> parameters, String fingerprint) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * The SQL to prepare (with ? in place of lifted literals).
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Whitespace-normalized text with every literal replaced by ?, identifying the statement's shape.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isParameterized() {
+        return !parameters.isEmpty();
+    }
+
+    /**
+     * Binds the lifted literals to the prepared statement.
+     */
+    public void bind(PreparedStatement pstmt) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object p = parameters.get(i);
+            if (p instanceof Long l) {
+                pstmt.setLong(i + 1, l);
+            } else if (p instanceof BigDecimal d) {
+                pstmt.setBigDecimal(i + 1, d);
+            } else if (p instanceof Double d) {
+                pstmt.setDouble(i + 1, d);
+            } else {
+                pstmt.setString(i + 1, (String) p);
+            }
+        }
+    }
+
+    /**
+     * Runs the action with the parameterized statement; if the server rejects it as a syntax error or as
+     * unsupported by the prepared statement protocol, retries once with the original literal text.
+     */
+    public static <T> T execute(String sql, Action<T> action) throws SQLException {
+        SqlFingerprint fp = of(sql);
+        if (!fp.isParameterized()) {
+            return action.run(fp);
+        }
+        try {
+            return action.run(fp);
+        } catch (SQLException ex) {
+            if (!(ex instanceof SQLSyntaxErrorException) && ex.getErrorCode() != 1295) {
+                throw ex;
+            }
+            return action.run(literal(sql));
+        }
+    }
+
+    /**
+     * A fingerprint that executes the SQL exactly as written.
+     */
+    public static SqlFingerprint literal(String sql) {
+        return new SqlFingerprint(sql, List.of(), of(sql).fingerprint);
+    }
+
+    /**
+     * Parses the statement, lifting literals where it is safe to do so.
+     */
+    public static SqlFingerprint of(String sql) {
+        int n = sql.length();
+        StringBuilder out = new StringBuilder(n);
+        StringBuilder shape = new StringBuilder(n);
+        List<Object> params = new ArrayList<>();
+
+        boolean liftAllowed = startsWithLiftableKeyword(sql) && !containsPlaceholder(sql);
+        String prevWord = "";
+        boolean inOrderOrGroupBy = false;
+        long selectListDepths = 0;  // Bit d set while inside a SELECT list at parenthesis depth d
+        int depth = 0;
+        int typeArgsDepth = -1;     // Depth of the parentheses of a type such as CHAR(10) or DECIMAL(10,2)
+
+        int i = 0;
+        while (i < n) {
+            char ch = sql.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                int start = i;
+                while (i < n && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                out.append(sql, start, i);
+                appendSpace(shape);
+            } else if (ch == '#' || SqlText.isDashComment(sql, i)
+                    || (ch == '/' && i + 1 < n && sql.charAt(i + 1) == '*')) {
+                int end;
+                if (ch == '/') {
+                    end = sql.indexOf("*/", i + 2);
+                    end = end < 0 ? n : end + 2;
+                } else {
+                    end = sql.indexOf('\n', i);
+                    end = end < 0 ? n : end + 1;
+                }
+                out.append(sql, i, end);
+                appendSpace(shape);
+                i = end;
+            } else if (ch == '\'' || ch == '"') {
+                int end = skipQuoted(sql, i);
+                boolean introduced = i > 0 && (Character.isLetterOrDigit(sql.charAt(i - 1)) || sql.charAt(i - 1) == '_');
+                String body = sql.substring(i + 1, Math.max(i + 1, end - 1));
+                boolean lift = liftAllowed && ch == '\'' && end <= n && sql.charAt(end - 1) == '\''
+                        && !introduced && body.indexOf('\\') < 0
+                        && !isInSelectList(selectListDepths, depth) && !isTypedLiteralKeyword(prevWord);
+                if (lift) {
+                    out.append('?');
+                    params.add(body.replace("''", "'"));
+                } else {
+                    out.append(sql, i, end);
+                }
+                shape.append('?');
+                i = end;
+            } else if (ch == '`') {
+                int end = skipQuoted(sql, i);
+                out.append(sql, i, end);
+                shape.append(sql, i, end);
+                prevWord = "";
+                i = end;
+            } else if (Character.isDigit(ch) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+                int end = scanNumber(sql, i);
+                if (end < n && isIdentifierPart(sql.charAt(end))) {
+                    // Identifier that starts with digits, e.g. 2024_sales
+                    end = scanIdentifier(sql, end);
+                    out.append(sql, i, end);
+                    shape.append(sql, i, end);
+                } else {
+                    String literal = sql.substring(i, end);
+                    boolean hex = literal.startsWith("0x") || literal.startsWith("0X") || literal.startsWith("0b");
+                    boolean qualified = i > 0 && sql.charAt(i - 1) == '.';
+                    boolean lift = liftAllowed && !hex && !qualified && !inOrderOrGroupBy && depth != typeArgsDepth
+                            && !isInSelectList(selectListDepths, depth) && !isTypedLiteralKeyword(prevWord);
+                    if (lift) {
+                        out.append('?');
+                        params.add(parseNumber(literal));
+                    } else {
+                        out.append(literal);
+                    }
+                    shape.append('?');
+                }
+                i = end;
+            } else if (isIdentifierStart(ch)) {
+                int end = scanIdentifier(sql, i);
+                String word = sql.substring(i, end).toLowerCase(Locale.ROOT);
+                out.append(sql, i, end);
+                shape.append(sql, i, end);
+                switch (word) {
+                    case "select" -> selectListDepths |= depthBit(depth);
+                    case "from", "into" -> selectListDepths &= ~depthBit(depth);
+                    case "by" -> inOrderOrGroupBy = prevWord.equals("order") || prevWord.equals("group");
+                    case "limit", "having", "where", "union", "window", "for", "lock" -> inOrderOrGroupBy = false;
+                    default -> {
+                        // Other words do not change the clause
+                    }
+                }
+                prevWord = word;
+                i = end;
+                continue;
+            } else {
+                if (ch == '(') {
+                    depth++;
+                    if (isTypeName(prevWord)) {
+                        typeArgsDepth = depth;
+                    }
+                } else if (ch == ')') {
+                    if (depth == typeArgsDepth) {
+                        typeArgsDepth = -1;
+                    }
+                    selectListDepths &= ~depthBit(depth);
+                    depth = Math.max(0, depth - 1);
+                    inOrderOrGroupBy = false;
+                }
+                out.append(ch);
+                shape.append(ch);
+                i++;
+            }
+            if (!Character.isWhitespace(ch)) {
+                prevWord = "";
+            }
+        }
+
+        int end = shape.length();
+        while (end > 0 && (shape.charAt(end - 1) == ' ' || shape.charAt(end - 1) == ';')) {
+            end--;
+        }
+        shape.setLength(end);
+        if (!shape.isEmpty() && shape.charAt(0) == ' ') {
+            shape.deleteCharAt(0);
+        }
+        if (params.isEmpty()) {
+            return new SqlFingerprint(sql, List.of(), shape.toString());
+        }
+        return new SqlFingerprint(out.toString(), List.copyOf(params), shape.toString());
+    }
+
+    private static boolean startsWithLiftableKeyword(String sql) {
+        String first = firstWord(sql);
+        return switch (first) {
+            case "select", "insert", "update", "delete", "replace" -> true;
+            default -> false;
+        };
+    }
+
+    private static String firstWord(String sql) {
+        int i = 0;
+        int n = sql.length();
+        while (i < n && !isIdentifierStart(sql.charAt(i))) {
+            if (sql.charAt(i) == '-' || sql.charAt(i) == '/' || sql.charAt(i) == '#') {
+                return ""; // Leading comment: do not guess
+            }
+            i++;
+        }
+        return sql.substring(i, scanIdentifier(sql, i)).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsPlaceholder(String sql) {
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char ch = sql.charAt(i);
+            if (ch == '\'' || ch == '"' || ch == '`') {
+                i = skipQuoted(sql, i);
+            } else if (ch == '?') {
+                return true;
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTypedLiteralKeyword(String word) {
+        return switch (word) {
+            case "date", "time", "timestamp", "as", "collate", "charset", "character", "binary", "escape" -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isTypeName(String word) {
+        return switch (word) {
+            case "char", "varchar", "binary", "varbinary", "decimal", "numeric", "dec", "float", "double",
+                 "datetime", "time", "timestamp", "int", "integer", "bigint", "bit", "nchar" -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isInSelectList(long selectListDepths, int depth) {
+        return (selectListDepths & depthBit(depth)) != 0;
+    }
+
+    private static long depthBit(int depth) {
+        return depth < 64 ? 1L << depth : 0;
+    }
+
+    private static void appendSpace(StringBuilder shape) {
+        if (!shape.isEmpty() && shape.charAt(shape.length() - 1) != ' ') {
+            shape.append(' ');
+        }
+    }
+
+    private static Object parseNumber(String literal) {
+        if (literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+            return Double.parseDouble(literal);
+        }
+        if (literal.indexOf('.') >= 0) {
+            return new BigDecimal(literal);
+        }
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException ex) {
+            return new BigDecimal(literal);
+        }
+    }
+
+    private static int scanNumber(String sql, int i) {
+        int n = sql.length();
+        if (sql.charAt(i) == '0' && i + 1 < n && "xXb".indexOf(sql.charAt(i + 1)) >= 0) {
+            i += 2;
+            while (i < n && Character.isLetterOrDigit(sql.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+        while (i < n && Character.isDigit(sql.charAt(i))) {
+            i++;
+        }
+        if (i + 1 < n && sql.charAt(i) == '.' && Character.isDigit(sql.charAt(i + 1))) {
+            i++;
+            while (i < n && Character.isDigit(sql.charAt(i))) {
+                i++;
+            }
+        }
+        if (i + 1 < n && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < n && (sql.charAt(j) == '+' || sql.charAt(j) == '-')) {
+                j++;
+            }
+            if (j < n && Character.isDigit(sql.charAt(j))) {
+                i = j;
+                while (i < n && Character.isDigit(sql.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static int skipQuoted(String sql, int i) {
+        char quote = sql.charAt(i);
+        int n = sql.length();
+        i++;
+        while (i < n) {
+            char ch = sql.charAt(i);
+            if (ch == '\\' && quote != '`') {
+                i += 2;
+            } else if (ch == quote) {
+                if (i + 1 < n && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    private static boolean isIdentifierStart(char ch) {
+        return Character.isLetter(ch) || ch == '_' || ch == '$' || ch == '@';
+    }
+
+    private static boolean isIdentifierPart(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '@';
+    }
+
+    private static int scanIdentifier(String sql, int i) {
+        int n = sql.length();
+        while (i < n && isIdentifierPart(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SqlLexer.java
+*/
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single-pass MySQL tokenizer over a CharSequence. The lexer only moves offsets: keywords are compared in place
+ * without case conversion, and token text is materialized only when asked for, so classifying a statement
+ * allocates nothing beyond the lexer itself. Comments and whitespace are skipped; parenthesis depth is tracked.
+ */
+public final class SqlLexer {
+
+    /**
+     * What a statement does, as far as dispatch is concerned.
+     */
+    public enum Kind {
+        READ,         // Returns rows: SELECT, WITH ... SELECT, SHOW, DESCRIBE, EXPLAIN (but see writes())
+        WRITE,        // Changes rows: INSERT, UPDATE, DELETE, REPLACE, LOAD, CALL, SELECT ... INTO OUTFILE
+        DDL,          // Changes schema or privileges: CREATE, ALTER, DROP, TRUNCATE, RENAME, GRANT, REVOKE
+        TRANSACTION,  // START TRANSACTION, BEGIN, COMMIT, ROLLBACK, SAVEPOINT, LOCK TABLES, SET autocommit, ...
+        OTHER         // Anything else (SET, USE, DO, ...) including empty text
+    }
+
+    public enum Token {
+        WORD,               // Keyword or unquoted identifier
+        QUOTED_IDENTIFIER,  // `name`
+        STRING,             // 'text' or "text"
+        NUMBER,
+        VARIABLE,           // @name, @@name
+        SYMBOL,             // Any other single character
+        END
+    }
+
+    private final CharSequence text;
+    private final int length;
+    private int pos;
+    private int depth;
+    private int start;
+    private int end;
+    private int tokenDepth;
+    private Token token;
+
+    public SqlLexer(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Advances to the next token and returns its type.
+     */
+    public Token next() {
+        skipSpaceAndComments();
+        start = pos;
+        tokenDepth = depth;
+        if (pos >= length) {
+            end = pos;
+            return token = Token.END;
+        }
+        char ch = text.charAt(pos);
+        if (isWordStart(ch)) {
+            pos = skipWord(pos);
+            token = Token.WORD;
+        } else if (ch == '`') {
+            pos = skipQuoted(pos);
+            token = Token.QUOTED_IDENTIFIER;
+        } else if (ch == '\'' || ch == '"') {
+            pos = skipQuoted(pos);
+            token = Token.STRING;
+        } else if (isDigit(ch) || (ch == '.' && pos + 1 < length && isDigit(text.charAt(pos + 1)))) {
+            pos++;
+            while (pos < length && (isWordPart(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                pos++;
+            }
+            token = Token.NUMBER;
+        } else if (ch == '@') {
+            pos++;
+            if (pos < length && text.charAt(pos) == '@') {
+                pos++;
+            }
+            if (pos < length && (text.charAt(pos) == '`' || text.charAt(pos) == '\'' || text.charAt(pos) == '"')) {
+                pos = skipQuoted(pos);
+            } else {
+                while (pos < length && (isWordPart(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                    pos++;
+                }
+            }
+            token = Token.VARIABLE;
+        } else {
+            pos++;
+            if (ch == '(') {
+                depth++;
+            } else if (ch == ')' && depth > 0) {
+                depth--;
+                tokenDepth = depth;
+            }
+            token = Token.SYMBOL;
+        }
+        end = pos;
+        return token;
+    }
+
+    public Token token() {
+        return token;
+    }
+
+    /**
+     * Parenthesis nesting of the current token. A bracket has the depth of the text around it.
+     */
+    public int depth() {
+        return tokenDepth;
+    }
+
+    /**
+     * True if the current token is the given keyword (lower-case), ignoring case.
+     */
+    public boolean is(String keyword) {
+        if (token != Token.WORD || end - start != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            char ch = text.charAt(start + i);
+            if (ch != keyword.charAt(i) && (ch | 0x20) != keyword.charAt(i)) {  // Case folds letters only, not _
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isSymbol(char symbol) {
+        return token == Token.SYMBOL && text.charAt(start) == symbol;
+    }
+
+    /**
+     * The character right after the current token (no whitespace skipped), or -1 at the end of the text.
+     */
+    public int peek(int offset) {
+        return end + offset < length ? text.charAt(end + offset) : -1;
+    }
+
+    /**
+     * Text of the current token; quoted identifiers are returned without their backticks.
+     */
+    public String text() {
+        if (token == Token.QUOTED_IDENTIFIER && end - start >= 2) {
+            return text.subSequence(start + 1, end - 1).toString().replace("``", "`");
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * Classifies a statement by its leading keyword, looking past leading comments and parentheses,
+     * through WITH clauses to the statement they introduce, and for INTO OUTFILE / DUMPFILE in queries.
+     * EXPLAIN, DESCRIBE and DESC return rows and are READ; see writes() for EXPLAIN ANALYZE.
+     */
+    public static Kind classify(CharSequence sql) {
+        SqlLexer lx = new SqlLexer(sql);
+        return classify(lx, lx.next());
+    }
+
+    /**
+     * Classifies the statement starting at the current token t.
+     */
+    private static Kind classify(SqlLexer lx, Token t) {
+        while (t == Token.SYMBOL && lx.isSymbol('(')) {
+            t = lx.next();
+        }
+        if (t != Token.WORD) {
+            return Kind.OTHER;
+        }
+        if (lx.is("with")) {
+            // The main statement is the first statement keyword outside the common table expressions
+            while ((t = lx.next()) != Token.END) {
+                if (lx.depth() == 0) {
+                    if (lx.is("select") || lx.is("table") || lx.is("values")) {
+                        return queryKind(lx);
+                    }
+                    if (lx.is("insert") || lx.is("update") || lx.is("delete") || lx.is("replace")) {
+                        return Kind.WRITE;
+                    }
+                }
+            }
+            return Kind.OTHER;
+        }
+        if (lx.is("select") || lx.is("table") || lx.is("values")) {
+            return queryKind(lx);
+        }
+        if (lx.is("show") || lx.is("describe") || lx.is("desc") || lx.is("explain") || lx.is("help")) {
+            return Kind.READ;
+        }
+        if (lx.is("insert") || lx.is("update") || lx.is("delete") || lx.is("replace") || lx.is("load")
+                || lx.is("call") || lx.is("import")) {
+            return Kind.WRITE;
+        }
+        if (lx.is("create") || lx.is("alter") || lx.is("drop") || lx.is("truncate") || lx.is("rename")
+                || lx.is("grant") || lx.is("revoke")) {
+            return Kind.DDL;
+        }
+        if (lx.is("start") || lx.is("begin") || lx.is("commit") || lx.is("rollback") || lx.is("savepoint")
+                || lx.is("release") || lx.is("xa") || lx.is("lock") || lx.is("unlock")) {
+            return Kind.TRANSACTION;
+        }
+        if (lx.is("set")) {
+            // SET [GLOBAL | SESSION | LOCAL] TRANSACTION ... and SET autocommit = ...
+            lx.next();
+            if (lx.is("global") || lx.is("session") || lx.is("local")) {
+                lx.next();
+            }
+            return lx.is("transaction") || lx.is("autocommit") ? Kind.TRANSACTION : Kind.OTHER;
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * A query reads unless it writes its result to a file.
+     */
+    private static Kind queryKind(SqlLexer lx) {
+        boolean into = false;
+        while (lx.next() != Token.END) {
+            if (into && (lx.is("outfile") || lx.is("dumpfile"))) {
+                return Kind.WRITE;
+            }
+            into = lx.is("into");
+        }
+        return Kind.READ;
+    }
+
+    /**
+     * True if running the statement changes data or schema: WRITE and DDL statements, and EXPLAIN ANALYZE of
+     * one, which executes the statement it explains (on MySQL 8 including multi-table UPDATE and DELETE) but
+     * still returns rows. Plain EXPLAIN only plans. Decides read-only checks, replica routing, result cache
+     * invalidation and update counts; classify() decides how a statement is run.
+     */
+    public static boolean writes(CharSequence sql) {
+        SqlLexer lx = new SqlLexer(sql);
+        Token t = lx.next();
+        while (t == Token.SYMBOL && lx.isSymbol('(')) {
+            t = lx.next();
+        }
+        if (lx.is("explain") || lx.is("describe") || lx.is("desc")) {
+            boolean analyze = false;
+            t = lx.next();
+            while (lx.is("analyze") || lx.is("extended") || lx.is("partitions") || lx.is("format")) {
+                analyze |= lx.is("analyze");
+                boolean format = lx.is("format");
+                t = lx.next();
+                if (format && lx.isSymbol('=')) {
+                    lx.next(); // FORMAT = TREE
+                    t = lx.next();
+                }
+            }
+            if (!analyze) {
+                return false;
+            }
+        }
+        Kind kind = classify(lx, t);
+        return kind == Kind.WRITE || kind == Kind.DDL;
+    }
+
+    /**
+     * True for statements that return rows (Kind.READ).
+     */
+    public static boolean isRead(CharSequence sql) {
+        return classify(sql) == Kind.READ;
+    }
+
+    /**
+     * Returns the lower-cased names of the tables a statement reads or writes: the identifiers following
+     * FROM, JOIN, INTO [TABLE], UPDATE and TABLE (including comma-separated FROM and UPDATE lists). Schema
+     * qualifiers are dropped.
+     */
+    public static Set<String> tables(CharSequence sql) {
+        Set<String> tables = new LinkedHashSet<>();
+        SqlLexer lx = new SqlLexer(sql);
+        boolean expectTable = false;  // Previous keyword introduces a table name
+        boolean inFromList = false;   // Inside FROM a, b, c
+        long outerFromLists = 0;      // inFromList of each enclosing parenthesis level, one bit per level
+        boolean afterKey = false;     // Previous word was KEY (ON DUPLICATE KEY UPDATE assigns columns)
+        Token t;
+        while ((t = lx.next()) != Token.END) {
+            switch (t) {
+                case STRING, VARIABLE -> expectTable = false;
+                case WORD, QUOTED_IDENTIFIER -> {
+                    // Qualified name: keep only the last part (db.table -> table)
+                    while (lx.peek(0) == '.' && lx.peek(1) != '*' && lx.peek(1) != -1) {
+                        lx.next();
+                        t = lx.next();
+                    }
+                    boolean key = afterKey;
+                    afterKey = lx.is("key");
+                    if (t != Token.WORD && t != Token.QUOTED_IDENTIFIER) {
+                        expectTable = false;
+                    } else if (expectTable && lx.is("table")) {
+                        // INTO TABLE t (LOAD DATA): the name follows
+                    } else if (expectTable && !(lx.is("select") || lx.is("if") || lx.is("not") || lx.is("exists")
+                            || lx.is("ignore") || lx.is("only") || lx.is("low_priority"))) {
+                        tables.add(lx.text().toLowerCase(Locale.ROOT));
+                        expectTable = false;
+                    } else if (lx.is("from") || lx.is("table") || (lx.is("update") && !key)) {
+                        expectTable = true;
+                        inFromList = true; // Also DROP TABLE a, b and UPDATE a, b SET
+                    } else if (lx.is("join") || lx.is("into")) {
+                        expectTable = true;
+                    } else if (lx.is("where") || lx.is("on") || lx.is("using") || lx.is("group") || lx.is("order")
+                            || lx.is("having") || lx.is("limit") || lx.is("set") || lx.is("values")
+                            || lx.is("union") || lx.is("select")) {
+                        inFromList = false;
+                    }
+                }
+                case SYMBOL -> {
+                    int d = lx.depth();
+                    if (lx.isSymbol(',') && inFromList) {
+                        expectTable = true;
+                    } else if (lx.isSymbol('(')) {
+                        if (d < 64 && inFromList) {
+                            outerFromLists |= 1L << d;
+                        }
+                        inFromList = false;
+                        expectTable = false;
+                    } else if (lx.isSymbol(')')) {
+                        inFromList = d < 64 && (outerFromLists & (1L << d)) != 0;
+                        outerFromLists &= ~(1L << d);
+                    }
+                }
+                default -> {
+                    // Numbers neither introduce nor end a table list
+                }
+            }
+        }
+        return tables;
+    }
+
+    private void skipSpaceAndComments() {
+        while (pos < length) {
+            char ch = text.charAt(pos);
+            if (Character.isWhitespace(ch)) {
+                pos++;
+            } else if (ch == '#' || (ch == '-' && SqlText.isDashComment(text, pos))) {
+                while (pos < length && text.charAt(pos) != '\n') {
+                    pos++;
+                }
+            } else if (ch == '/' && pos + 1 < length && text.charAt(pos + 1) == '*') {
+                pos += 2;
+                while (pos < length && !(text.charAt(pos) == '*' && pos + 1 < length && text.charAt(pos + 1) == '/')) {
+                    pos++;
+                }
+                pos = Math.min(pos + 2, length);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int skipQuoted(int i) {
+        char quote = text.charAt(i);
+        i++;
+        while (i < length) {
+            char ch = text.charAt(i);
+            if (ch == '\\' && quote != '`') {
+                i += 2;
+            } else if (ch == quote) {
+                if (i + 1 < length && text.charAt(i + 1) == quote) {
+                    i += 2; // Doubled quote inside the literal
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private int skipWord(int i) {
+        while (i < length && isWordPart(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordStart(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_' || ch == '$'
+                || (ch > 0x7f && Character.isLetter(ch));
+    }
+
+    private static boolean isWordPart(char ch) {
+        return isWordStart(ch) || isDigit(ch) || (ch > 0x7f && Character.isLetterOrDigit(ch));
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+}
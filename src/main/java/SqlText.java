@@ -0,0 +1,203 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: SqlText.java
+*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Small helpers for looking at SQL text without a full parser: normalization for cache keys
+ * and splitting of multi-statement scripts. Classification and table extraction live in SqlLexer.
+ */
+public final class SqlText {
+
+    private SqlText() {
+    }
+
+    /**
+     * Collapses whitespace and comments outside of quoted text and strips trailing semicolons,
+     * so that trivially different spellings of the same statement compare equal. Executable comments and
+     * optimizer hints (comments opening with /*! and /*+) change what runs, so they are kept.
+     */
+    public static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int i = 0;
+        int n = sql.length();
+        boolean pendingSpace = false;
+        while (i < n) {
+            char ch = sql.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                pendingSpace = true;
+                i++;
+            } else if (isCommentStart(sql, i) && !isExecutableComment(sql, i)) {
+                i = skipComment(sql, i);
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                if (ch == '\'' || ch == '"' || ch == '`') {
+                    int end = skipQuoted(sql, i);
+                    out.append(sql, i, end);
+                    i = end;
+                } else if (isExecutableComment(sql, i)) {
+                    int end = skipComment(sql, i);
+                    out.append(sql, i, end);
+                    i = end;
+                } else {
+                    out.append(ch);
+                    i++;
+                }
+            }
+        }
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ';' || out.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    /**
+     * Splits a script into its statements. Delimiters inside quoted text and comments are ignored,
+     * and mysql-client style DELIMITER lines change the terminator for the statements that follow.
+     * Statements consisting only of comments are dropped.
+     */
+    public static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        String delimiter = ";";
+        int n = script.length();
+        int start = 0;        // Start of the current statement
+        boolean empty = true; // Nothing but whitespace and comments since start
+        int i = 0;
+        while (i < n) {
+            char ch = script.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i++;
+            } else if (isCommentStart(script, i)) {
+                i = skipComment(script, i);
+            } else if (empty && script.regionMatches(true, i, "delimiter", 0, 9)
+                    && i + 9 < n && Character.isWhitespace(script.charAt(i + 9))) {
+                int eol = script.indexOf('\n', i);
+                if (eol < 0) {
+                    eol = n;
+                }
+                String[] parts = script.substring(i + 9, eol).trim().split("\\s+");
+                if (!parts[0].isEmpty()) {
+                    delimiter = parts[0];
+                }
+                i = eol;
+                start = eol;
+            } else if (script.startsWith(delimiter, i)) {
+                if (!empty) {
+                    statements.add(script.substring(start, i).trim());
+                }
+                i += delimiter.length();
+                start = i;
+                empty = true;
+            } else {
+                empty = false;
+                i = ch == '\'' || ch == '"' || ch == '`' ? skipQuoted(script, i) : i + 1;
+            }
+        }
+        if (!empty) {
+            statements.add(script.substring(start).trim());
+        }
+        return statements;
+    }
+
+    /**
+     * Returns the lower-cased first keyword of a statement, skipping leading comments and parentheses.
+     */
+    public static String firstKeyword(String sql) {
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char ch = sql.charAt(i);
+            if (Character.isWhitespace(ch) || ch == '(') {
+                i++;
+            } else if (isCommentStart(sql, i)) {
+                i = skipComment(sql, i);
+            } else {
+                int end = skipIdentifier(sql, i);
+                return sql.substring(i, end).toLowerCase(Locale.ROOT);
+            }
+        }
+        return "";
+    }
+
+    private static boolean isCommentStart(String sql, int i) {
+        char ch = sql.charAt(i);
+        if (ch == '#') {
+            return true;
+        }
+        if (i + 1 >= sql.length()) {
+            return false;
+        }
+        char next = sql.charAt(i + 1);
+        return (ch == '-' && isDashComment(sql, i)) || (ch == '/' && next == '*');
+    }
+
+    /**
+     * True if the text at i is a "-- " comment. MySQL requires whitespace or a control character after the
+     * two dashes, so 5--1 is five minus minus one.
+     */
+    static boolean isDashComment(CharSequence sql, int i) {
+        int n = sql.length();
+        if (i + 1 >= n || sql.charAt(i) != '-' || sql.charAt(i + 1) != '-') {
+            return false;
+        }
+        return i + 2 >= n || sql.charAt(i + 2) <= ' ' || Character.isWhitespace(sql.charAt(i + 2));
+    }
+
+    private static boolean isExecutableComment(String sql, int i) {
+        return sql.startsWith("/*!", i) || sql.startsWith("/*+", i);
+    }
+
+    private static int skipComment(String sql, int i) {
+        if (sql.charAt(i) == '/') {
+            int end = sql.indexOf("*/", i + 2);
+            return end < 0 ? sql.length() : end + 2;
+        }
+        int end = sql.indexOf('\n', i);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    private static int skipQuoted(String sql, int i) {
+        char quote = sql.charAt(i);
+        int n = sql.length();
+        i++;
+        while (i < n) {
+            char ch = sql.charAt(i);
+            if (ch == '\\' && quote != '`') {
+                i += 2;
+            } else if (ch == quote) {
+                if (i + 1 < n && sql.charAt(i + 1) == quote) {
+                    i += 2; // Doubled quote inside the literal
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    private static int skipIdentifier(String sql, int i) {
+        if (sql.charAt(i) == '`') {
+            return skipQuoted(sql, i);
+        }
+        int n = sql.length();
+        while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+            i++;
+        }
+        return i;
+    }
+}
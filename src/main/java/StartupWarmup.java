@@ -0,0 +1,199 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: StartupWarmup.java
+*/
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cold-start work moved off the EDT and run while the window is being built: parsing the config directories,
+ * loading the JDBC drivers they name, opening the connection the user is likely to ask for (TLS, authentication
+ * and the driver's metadata queries) and loading the classes of the first query. The primed connection is left
+ * idle in its pool, so the first Connect borrows it instead of opening one.
+ * <p>
+ * Run on its own (headless) it performs the same steps synchronously plus a build of the Swing components both
+ * clients use and prints how long each took; the cds Maven profile uses that run to record a class data sharing
+ * archive. The clients print their startup timings only when started with -Dstartup.timings=true.
+ */
+public final class StartupWarmup {
+    private static final String DEFAULT_DRIVER = "com.mysql.cj.jdbc.Driver";
+
+    // Classes on the path from Execute to the first rows on screen
+    private static final List<String> QUERY_CLASSES = List.of("SqlLexer", "SqlFingerprint", "SqlText",
+            "StatementCache", "StatementMetrics", "QueryExecutor", "ColumnBatch", "CursorTableModel",
+            "ColumnarTableModel", "ResultCache", "ResultRowSorter", "SortIndex", "FilterIndex", "ReplicaRouter",
+            "SlowQueryLog");
+
+    /**
+     * Where the likely connection's URL (and driver) and its credentials come from: properties files in
+     * ConfigRegistry directories, which may be the same file. defaultUrl is used when the URL file has none.
+     */
+    public record Target(String urlDir, String urlFile, String credentialsDir, String credentialsFile,
+                         String defaultUrl) {
+    }
+
+    private static final Set<String> milestones = ConcurrentHashMap.newKeySet();
+    private static volatile boolean printTimings = Boolean.getBoolean("startup.timings");
+
+    private StartupWarmup() {
+    }
+
+    /**
+     * Starts the warm-up in the background. likelyConnection is asked for the connection to prime once the
+     * config has been parsed; it may return null to skip that step.
+     */
+    public static void start(Supplier<Target> likelyConnection) {
+        Thread.ofVirtual().name("startup-warmup-connection").start(() -> warmConnection(likelyConnection.get()));
+        Thread.ofVirtual().name("startup-warmup-classes").start(StartupWarmup::warmClasses);
+    }
+
+    /**
+     * Prints how long after JVM start a point of the startup was reached, the first time it is reached, if
+     * timings are being printed.
+     */
+    public static void milestone(String name) {
+        if (printTimings && milestones.add(name)) {
+            System.out.printf("Startup: %s after %,d ms%n", name, sinceStartMillis());
+        }
+    }
+
+    private static long sinceStartMillis() {
+        Instant started = ProcessHandle.current().info().startInstant().orElse(null);
+        return started == null ? -1 : System.currentTimeMillis() - started.toEpochMilli();
+    }
+
+    /**
+     * Parses the config, loads every configured driver, then opens and exercises the likely connection.
+     */
+    private static void warmConnection(Target target) {
+        ConfigRegistry registry = ConfigRegistry.shared(); // Scans config/ and starts its watcher
+        Set<String> drivers = new TreeSet<>(Set.of(DEFAULT_DRIVER));
+        for (String dir : List.of(ConfigRegistry.DB, ConfigRegistry.OPS)) {
+            for (String name : registry.list(dir)) {
+                ConfigRegistry.Settings settings = registry.get(dir, name);
+                if (settings != null) {
+                    drivers.add(settings.getProperty("driver", DEFAULT_DRIVER));
+                }
+            }
+        }
+        for (String driver : drivers) {
+            try {
+                Class.forName(driver);
+            } catch (ClassNotFoundException ex) {
+                // Reported when the user connects with it
+            }
+        }
+        DriverManager.getDrivers(); // Runs the driver service scan once, here
+
+        ConfigRegistry.Settings urlSettings = target == null ? null : registry.get(target.urlDir(), target.urlFile());
+        ConfigRegistry.Settings credentials = target == null ? null
+                : registry.get(target.credentialsDir(), target.credentialsFile());
+        String url = urlSettings == null ? null : urlSettings.getProperty("url", target.defaultUrl());
+        if (url == null || credentials == null) {
+            return;
+        }
+        // The same pool key as the client's Connect: URL from one file, credentials from the other
+        ConnectionPool pool = ConnectionPool.forCredentials(url, credentials.getProperty("username", ""),
+                credentials.getProperty("password", ""));
+        long start = System.nanoTime();
+        try (Connection conn = pool.borrow()) { // Opened here, then left idle in the pool
+            conn.getMetaData().getIdentifierQuoteString();
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1");
+                 ResultSet rs = pstmt.executeQuery()) {
+                ColumnBatch.read(rs, 1, null);
+            }
+            if (printTimings) {
+                System.out.printf("Startup: primed a connection to %s in %,d ms%n", pool.getStats().url(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (SQLException ex) {
+            System.err.println("Startup warm-up could not connect: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Loads and initializes the query path's classes and runs the SQL lexer once.
+     */
+    private static void warmClasses() {
+        for (String name : QUERY_CLASSES) {
+            try {
+                Class.forName(name);
+            } catch (ClassNotFoundException ex) {
+                System.err.println("Startup warm-up: missing class " + name);
+            }
+        }
+        String sample = "SELECT name, COUNT(*) FROM t WHERE id IN (1, 2) AND note = 'x' GROUP BY name";
+        SqlLexer.classify(sample);
+        SqlLexer.tables(sample);
+        SqlFingerprint.of(sample);
+    }
+
+    /**
+     * Builds (without showing) the kind of component tree both clients have: a sortable table with a filter,
+     * a command area, dropdowns, spinners and buttons. Must run on the EDT.
+     */
+    private static void buildComponents() {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Warm-up"));
+        GridBagConstraints gbc = new GridBagConstraints();
+        panel.add(new JLabel("Label"), gbc);
+        panel.add(new JTextField(10), gbc);
+        panel.add(new JPasswordField(10), gbc);
+        panel.add(new JComboBox<>(new String[]{"a.properties", "b.properties"}), gbc);
+        panel.add(new JButton("Button"), gbc);
+        panel.add(new JCheckBox("Check"), gbc);
+        panel.add(new JSpinner(new SpinnerNumberModel(60, 0, 3600, 5)), gbc);
+        JTextArea area = new JTextArea(5, 50);
+        area.setLineWrap(true);
+        panel.add(new JScrollPane(area), gbc);
+        DefaultTableModel model = new DefaultTableModel(new Object[][]{{1, "a"}, {2, "b"}}, new Object[]{"id", "name"});
+        JTable table = new JTable(model);
+        ResultRowSorter sorter = new ResultRowSorter(model);
+        table.setRowSorter(sorter);
+        sorter.toggleSortOrder(1);
+        sorter.setFilterText("a");
+        JPanel results = new JPanel(new BorderLayout());
+        results.add(new JScrollPane(table), BorderLayout.CENTER);
+        results.add(new JPanel(new FlowLayout(FlowLayout.LEFT)), BorderLayout.NORTH);
+        panel.add(results, gbc);
+        panel.setSize(panel.getPreferredSize());
+        panel.doLayout();
+    }
+
+    /**
+     * Runs every warm-up step synchronously and reports the time each took. Args: optional urlDir urlFile
+     * credentialsDir credentialsFile of a connection to prime.
+     */
+    public static void main(String[] args) throws Exception {
+        printTimings = true;
+        long start = System.nanoTime();
+        Target target = args.length == 4 ? new Target(args[0], args[1], args[2], args[3], null) : null;
+        warmConnection(target);
+        long connection = System.nanoTime();
+        warmClasses();
+        long classes = System.nanoTime();
+        SwingUtilities.invokeAndWait(StartupWarmup::buildComponents);
+        long components = System.nanoTime();
+        System.out.printf("Config, drivers and connection %,d ms, query classes %,d ms, Swing components %,d ms%n",
+                (connection - start) / 1_000_000, (classes - connection) / 1_000_000,
+                (components - classes) / 1_000_000);
+        milestone("warm-up finished");
+        System.exit(0); // The EDT would otherwise keep the JVM running
+    }
+}
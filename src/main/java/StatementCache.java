@@ -0,0 +1,156 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: StatementCache.java
+*/
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-connection cache of prepared statements keyed by their SQL text, so repeated statements reuse the
+ * server-side prepared plan instead of being parsed again. Statements are checked out while in use
+ * (a SELECT keeps its statement until its cursor is closed) and checked back in afterwards;
+ * the least recently used idle statement is closed once the cache is full.
+ */
+public class StatementCache implements AutoCloseable {
+    private final Connection connection;
+    private final int maxStatements;
+    private final LinkedHashMap<String, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean closed;
+    private boolean connectionLost;  // Since a connection error, until a statement has been prepared again
+    private long hits;
+    private long misses;
+
+    public StatementCache(Connection connection, int maxStatements) {
+        this.connection = connection;
+        this.maxStatements = maxStatements;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing an idle cached one when available.
+     */
+    public PreparedStatement checkout(String sql) throws SQLException {
+        synchronized (this) {
+            PreparedStatement cached = connectionLost ? null : idle.remove(sql);
+            if (cached != null && !cached.isClosed()) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        PreparedStatement pstmt = connection.prepareStatement(sql);
+        synchronized (this) {
+            connectionLost = false;
+        }
+        return pstmt;
+    }
+
+    /**
+     * Gives a statement back for reuse. It is closed instead if the cache is closed or already holds one for the SQL.
+     */
+    public void checkin(String sql, PreparedStatement pstmt) {
+        PreparedStatement toClose = pstmt;
+        synchronized (this) {
+            if (!closed && !connectionLost && !idle.containsKey(sql)) {
+                try {
+                    if (!pstmt.isClosed()) {
+                        pstmt.clearParameters();
+                        pstmt.clearBatch();
+                        idle.put(sql, pstmt);
+                        toClose = null;
+                    }
+                } catch (SQLException ignored) {
+                    // Not reusable; closed below
+                }
+                if (idle.size() > maxStatements) {
+                    Map.Entry<String, PreparedStatement> eldest = idle.entrySet().iterator().next();
+                    idle.remove(eldest.getKey());
+                    closeQuietly(eldest.getValue());
+                }
+            }
+        }
+        if (toClose != null) {
+            closeQuietly(toClose);
+        }
+    }
+
+    /**
+     * Executes a data-changing statement with a cached prepared statement and returns the update count.
+     * The statement is registered with the task for cancellation and its execution is timed in the task's metrics.
+     */
+    public int executeUpdate(SqlFingerprint fp, int timeoutSeconds, QueryExecutor.QueryTask task) throws SQLException {
+        PreparedStatement pstmt = checkout(fp.getSql());
+        try {
+            task.setStatement(pstmt);
+            pstmt.setQueryTimeout(timeoutSeconds);
+            fp.bind(pstmt);
+            long start = System.nanoTime();
+            int count = pstmt.executeUpdate();
+            task.getMetrics().record(StatementMetrics.Phase.EXECUTE, start);
+            return count;
+        } catch (SQLException ex) {
+            throw failed(ex);
+        } finally {
+            checkin(fp.getSql(), pstmt);
+        }
+    }
+
+    /**
+     * Reports a failed statement on this cache's connection and returns ex. After a connection-class error
+     * (SQLState 08xxx) the cached statements belong to a dead connection: they are dropped, statements checked
+     * in are closed until one has been prepared again, and the pooled connection is marked broken so that
+     * the next prepare reconnects.
+     */
+    public SQLException failed(SQLException ex) {
+        if (ex.getSQLState() == null || !ex.getSQLState().startsWith("08")) {
+            return ex;
+        }
+        List<PreparedStatement> dropped;
+        synchronized (this) {
+            connectionLost = true;
+            dropped = new ArrayList<>(idle.values());
+            idle.clear();
+        }
+        dropped.forEach(StatementCache::closeQuietly);
+        ConnectionPool.markBroken(connection);
+        return ex;
+    }
+
+    /**
+     * Short hit-rate summary for the status bar.
+     */
+    public synchronized String describeHitRate() {
+        long lookups = hits + misses;
+        return String.format("stmt cache %.0f%% hits", lookups == 0 ? 0.0 : hits * 100.0 / lookups);
+    }
+
+    /**
+     * Closes every idle statement; statements still checked out are closed when they are checked in.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        idle.values().forEach(StatementCache::closeQuietly);
+        idle.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement pstmt) {
+        try {
+            pstmt.close();
+        } catch (SQLException ignored) {
+            // Statement is being discarded anyway
+        }
+    }
+}
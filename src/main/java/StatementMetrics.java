@@ -0,0 +1,127 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: StatementMetrics.java
+*/
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distributions for each phase of running a statement, plus rows and bytes fetched.
+ * Shown in the metrics panel and exported over JMX under "TwoTierSQL:type=...,app=...".
+ */
+public class StatementMetrics implements StatementMetricsMBean {
+
+    public enum Phase {
+        CONNECT("connect"),
+        EXECUTE("execute"),
+        FETCH("fetch"),
+        MODEL("table model"),
+        AUDIT("audit log"),
+        AUDIT_FLUSH("audit flush");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder bytesFetched = new LongAdder();
+
+    public StatementMetrics() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public LatencyHistogram histogram(Phase phase) {
+        return histograms.get(phase);
+    }
+
+    /**
+     * Records the time elapsed since startNanos (a System.nanoTime() value) for the phase.
+     */
+    public void record(Phase phase, long startNanos) {
+        histograms.get(phase).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records one fetch of rows, with the approximate decoded size of the values read.
+     */
+    public void recordFetch(long startNanos, long rows, long bytes) {
+        record(Phase.FETCH, startNanos);
+        rowsFetched.add(rows);
+        bytesFetched.add(bytes);
+    }
+
+    @Override
+    public long getRowsFetched() {
+        return rowsFetched.sum();
+    }
+
+    @Override
+    public long getBytesFetched() {
+        return bytesFetched.sum();
+    }
+
+    /**
+     * Rows fetched per second of time spent fetching.
+     */
+    @Override
+    public double getRowsPerSecond() {
+        LatencyHistogram fetch = histograms.get(Phase.FETCH);
+        double seconds = fetch.getMeanMillis() * fetch.getCount() / 1000.0;
+        return seconds == 0 ? 0.0 : rowsFetched.sum() / seconds;
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram h = histograms.get(phase);
+            sb.append(String.format("%s: n=%d p50=%.2f ms p99=%.2f ms max=%.2f ms%n", phase.getLabel(),
+                    h.getCount(), h.getP50Millis(), h.getP99Millis(), h.getMaxMillis()));
+        }
+        sb.append(String.format("fetched %,d rows, %.1f MB, %,.0f rows/s", getRowsFetched(),
+                getBytesFetched() / (1024.0 * 1024.0), getRowsPerSecond()));
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        rowsFetched.reset();
+        bytesFetched.reset();
+    }
+
+    /**
+     * Registers this object and one MBean per phase histogram with the platform MBean server.
+     */
+    public void registerMBeans(String app) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName("TwoTierSQL:type=StatementMetrics,app=" + app));
+            for (Phase phase : Phase.values()) {
+                server.registerMBean(histograms.get(phase), new ObjectName(
+                        "TwoTierSQL:type=Latency,app=" + app + ",phase=" + phase.name().toLowerCase()));
+            }
+        } catch (JMException ex) {
+            System.err.println("Failed to register metrics MBeans: " + ex.getMessage());
+        }
+    }
+}
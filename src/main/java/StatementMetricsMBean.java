@@ -0,0 +1,22 @@
+/*
+ Name: Camilo Alvarez-Velez
+ Course: CNT 4714 Spring 2025
+ Assignment title: Project 3 – A Two-tier Client-Server Application
+ Date: March 14, 2025
+ Class: StatementMetricsMBean.java
+*/
+
+/**
+ * JMX view of the fetch throughput counters and a text summary of every phase.
+ */
+public interface StatementMetricsMBean {
+    long getRowsFetched();
+
+    long getBytesFetched();
+
+    double getRowsPerSecond();
+
+    String getSummary();
+
+    void reset();
+}